@@ -2,6 +2,9 @@ package controller;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import exceptions.*;
 import model.*;
 import util.*;
@@ -14,6 +17,14 @@ import persistencia.ControladorPersistencia;
  */
 public class ControladorDomini {
 
+    // ---------- CONSTANTS ----------
+    /** Temps màxim que la màquina pot dedicar a cercar una jugada a les partides a contrarellotge (ms) */
+    private static final long TEMPS_MAQUINA_CONTRARRELLOTGE = 1000;
+    /** Jugades que es calculen com a mínim per cada pista, perquè les consultes de menys jugades surtin de la memòria cau */
+    private static final int JUGADES_PISTA = 10;
+    /** Nombre màxim de posicions guardades a la memòria cau de pistes */
+    private static final int MIDA_CAU_PISTES = 32;
+
         // ---------- ATRIBUTS ----------
     /** Partida actual en curs */
     private Partida partida;
@@ -39,6 +50,20 @@ public class ControladorDomini {
     private CtrlUsuari ctrlUsuari;
     /** Indica si s'està executant en mode test */
     private boolean modeTest = false;
+    /** Generador de jugades de les pistes, amb el diccionari de la partida */
+    private GeneradorJugades generadorPistes;
+    /** Pistes ja calculades per posició (tauler i atril): jugades calculades i les millors jugades, de la menys a la més usada */
+    private final Map<String, Pair<Integer, List<Play>>> cauPistes = Collections.synchronizedMap(
+            new LinkedHashMap<String, Pair<Integer, List<Play>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Pair<Integer, List<Play>>> eldest) {
+                    return size() > MIDA_CAU_PISTES;
+                }
+            });
+    /** Consulta de pistes en curs (null si no n'hi ha cap) */
+    private CompletableFuture<List<Play>> pistaPendent;
+    /** Fil on es calculen les pistes, fora del fil de la interfície (es crea amb la primera pista) */
+    private ExecutorService filPistes;
 
     // ---------- CONSTRUCTOR ----------
     /**
@@ -309,6 +334,7 @@ public class ControladorDomini {
             } catch (Exception e) {
                 // Ignorar errors de pausa si la partida ja està finalitzada
             }
+            this.partida.alliberarDiccionari();
         }
         
         this.partida = null;
@@ -385,6 +411,7 @@ public class ControladorDomini {
      */
     public boolean jugarTorn(){
         passarTorn = 0;
+        cancelarPista();
         if (partida == null) {
             //System.out.println("Cap partida activa.");
             return false;
@@ -421,12 +448,14 @@ public class ControladorDomini {
      * Si i = 0 vol dir que es passa torn de manera involuntària (Jugada invàlida, canvi de fitxes....)
      */
     public void passarTorn(int i) {
+        cancelarPista();
         partida.avançarTorn();
         passarTorn += i;
     }
 
     /**
-     * Importa un diccionari i el seu alfabet des de fitxers.
+     * Importa un diccionari i el seu alfabet.
+     * El diccionari s'obté del registre de diccionaris compartits, que només el carrega si encara no hi és.
      * @param idioma Idioma del diccionari.
      */
     public void importaDiccionari(String idioma) {
@@ -436,11 +465,10 @@ public class ControladorDomini {
             return;
         }
         try {
-            
-            Map<String, Pair<Integer, Integer>> alfabet = cp.importarAlfabet(idioma);
-            List<String> paraules = cp.importarParaulesDiccionari(idioma);
-
-            this.diccionari = new Diccionari(idioma, paraules, alfabet);
+            RegistreDiccionaris registre = RegistreDiccionaris.getInstance();
+            Diccionari nou = registre.obtenir(idioma);
+            if (this.diccionari != null) registre.alliberar(this.diccionari);
+            this.diccionari = nou;
             this.diccionari.mostrarAlfabet();
 
         } catch (Exception e) {
@@ -477,6 +505,7 @@ public class ControladorDomini {
      * Finalitza la partida.
      */
     public void finalitzarPartida() {
+        cancelarPista();
         if (partida != null) {
             partida.finalitzarPartida();
         }
@@ -626,6 +655,7 @@ public class ControladorDomini {
      * @throws JugadaInvalidaException
      */
     public void confirmarJugadaHumana(List<PosicioFitxa> pos) throws JugadaInvalidaException{
+        cancelarPista();
         partida.aplicarMovimentHumà(pos);
         partida.avançarTorn();
     }
@@ -650,9 +680,96 @@ public class ControladorDomini {
      */
     public void canviarFitxes(List<Character> lletres) throws IntercanviFitxesException {
         passarTorn = 0;
+        cancelarPista();
         partida.intercanviFitxes(lletres);
     }
 
+    /**
+     * Calcula, com a pista, les millors jugades que pot fer el jugador del torn actual amb el motor de la màquina.
+     * La posició (tauler i atril) es copia en fer la crida i les jugades es generen en un fil a part, de manera que
+     * el mètode torna de seguida i no bloqueja la interfície. Les pistes de cada posició es guarden a una memòria
+     * cau i, si es tornen a demanar, el futur ja es retorna completat.
+     * <p>
+     * Una consulta nova cancel·la l'anterior si encara no ha acabat, i qualsevol canvi de torn o de partida
+     * cancel·la la consulta en curs. Quan es cancel·la el futur, la generació s'atura.
+     * @param maxim Nombre màxim de jugades a suggerir.
+     * @return Futur amb les jugades de més a menys puntuació (buit si no hi ha partida o no es pot fer cap jugada).
+     */
+    public CompletableFuture<List<Play>> suggerirJugades(int maxim) {
+        cancelarPista();
+        if (partida == null) return CompletableFuture.completedFuture(new ArrayList<>());
+
+        Tauler tauler = partida.getTauler().instantania();
+        Jugador jugador = partida.getJugador(partida.getTornJugador());
+        List<Fitxa> fitxes = jugador == null || jugador.getFitxes() == null ? new ArrayList<>() : new ArrayList<>(jugador.getFitxes());
+        if (generadorPistes == null || generadorPistes.getDiccionari() != partida.getDiccionari()) {
+            generadorPistes = new GeneradorJugades(partida.getDiccionari());
+            cauPistes.clear();
+        }
+
+        String clau = clauPista(tauler, fitxes);
+        Pair<Integer, List<Play>> guardades = cauPistes.get(clau);
+        if (guardades != null && guardades.first >= maxim) {
+            return CompletableFuture.completedFuture(primeresJugades(guardades.second, maxim));
+        }
+
+        GeneradorJugades generador = generadorPistes;
+        int calcular = Math.max(maxim, JUGADES_PISTA);
+        CompletableFuture<List<Play>> futur = new CompletableFuture<>();
+        if (filPistes == null) {
+            filPistes = Executors.newSingleThreadExecutor(r -> {
+                Thread fil = new Thread(r, "pistes");
+                fil.setDaemon(true);
+                return fil;
+            });
+        }
+        filPistes.execute(() -> {
+            if (futur.isDone()) return;
+            try {
+                List<Play> jugades = generador.millors(tauler, fitxes, calcular, futur::isDone);
+                if (futur.isDone()) return;
+                cauPistes.put(clau, new Pair<>(calcular, jugades));
+                futur.complete(primeresJugades(jugades, maxim));
+            } catch (RuntimeException e) {
+                futur.completeExceptionally(e);
+            }
+        });
+        pistaPendent = futur;
+        return futur;
+    }
+
+    /**
+     * Cancel·la la consulta de pistes en curs, si n'hi ha cap.
+     */
+    private void cancelarPista() {
+        if (pistaPendent != null) pistaPendent.cancel(false);
+        pistaPendent = null;
+    }
+
+    /**
+     * Construeix la clau d'una posició per a la memòria cau de pistes: el hash de Zobrist del tauler
+     * ({@link Tauler#getHash()}) i les lletres de l'atril ordenades.
+     * @param tauler Tauler de la posició.
+     * @param fitxes Fitxes de l'atril.
+     * @return Clau de la posició.
+     */
+    private static String clauPista(Tauler tauler, List<Fitxa> fitxes) {
+        char[] atril = new char[fitxes.size()];
+        for (int i = 0; i < atril.length; i++) atril[i] = fitxes.get(i).getLletra();
+        Arrays.sort(atril);
+        return Long.toHexString(tauler.getHash()) + '/' + new String(atril);
+    }
+
+    /**
+     * Retorna una còpia de les primeres jugades d'una llista.
+     * @param jugades Jugades de més a menys puntuació.
+     * @param maxim Nombre màxim de jugades.
+     * @return Còpia de les primeres {@code maxim} jugades.
+     */
+    private static List<Play> primeresJugades(List<Play> jugades, int maxim) {
+        return new ArrayList<>(jugades.subList(0, Math.max(0, Math.min(maxim, jugades.size()))));
+    }
+
     /**
      * Defineix una nova partida amb els paràmetres especificats.
      * @param mode
@@ -664,12 +781,14 @@ public class ControladorDomini {
      */
     public boolean definirPartida(ModeJoc mode, Contrincant contrincant, Dificultat dificultat, String idioma, String Usuari2) {
         this.passarTorn = 0;
+        cancelarPista();
         Boolean ambTemporitzador;
 
         try {
             // MILLORAT: Assegurar que la partida anterior està netejada
             if (this.partida != null) {
                 this.partida.pausarPartida();
+                this.partida.alliberarDiccionari();
                 this.partida = null;
             }
             
@@ -701,6 +820,7 @@ public class ControladorDomini {
 
             maquina = new ControladorMaquina(partida);
             if (ambTemporitzador) {
+                maquina.setTempsMaxim(TEMPS_MAQUINA_CONTRARRELLOTGE);
                 Temporitzador timer = new Temporitzador(20, () -> {
                     partida.finalitzarPartida();
                     acabarPartida(Usuari2);
@@ -740,6 +860,7 @@ public class ControladorDomini {
      * @throws JugadorNoPertanyPartidaException Si l'usuari actiu no pertany a la partida.
      */
     public boolean carregarPartida(String fileName) throws JugadorNoPertanyPartidaException {
+        cancelarPista();
         try {
             Partida p = cp.loadPartida(fileName);
             
@@ -758,7 +879,12 @@ public class ControladorDomini {
                 throw new JugadorNoPertanyPartidaException("L'usuari actiu no pertany a la partida carregada.");
                 
             }
-            this.diccionari = p.getDiccionari();
+            // La partida guardada només conté l'idioma: el diccionari s'obté del registre
+            importaDiccionari(p.getIdiomaDiccionari());
+            if (this.diccionari == null || !this.diccionari.getIdioma().equalsIgnoreCase(p.getIdiomaDiccionari())) {
+                return false;
+            }
+            p.setDiccionari(this.diccionari);
 
 
             if (p.ambTemporitzador()) {
@@ -771,6 +897,8 @@ public class ControladorDomini {
             }
 
             this.maquina = new ControladorMaquina(p);
+            if (p.ambTemporitzador()) this.maquina.setTempsMaxim(TEMPS_MAQUINA_CONTRARRELLOTGE);
+            if (this.partida != null) this.partida.alliberarDiccionari();
             this.partida = p;
             return true;
         } catch (IOException | ClassNotFoundException ex) {
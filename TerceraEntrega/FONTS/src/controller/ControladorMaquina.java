@@ -1,6 +1,10 @@
 package controller;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import model.*;
 import util.*;
 
@@ -12,8 +16,125 @@ import util.*;
  * @author Marc Gil
  */
 public class ControladorMaquina {
+
+    /**
+     * Algorisme de generació de jugades que pot fer servir la màquina.
+     */
+    public enum Generador {
+        /** Parts esquerres i extensió cap a la dreta sobre el DAWG del diccionari */
+        DAWG,
+        /** Creixement en totes dues direccions des de cada ancoratge sobre el GADDAG del diccionari */
+        GADDAG
+    }
+
+    /**
+     * Línia (fila o columna) del tauler on es generen jugades, amb les dades de cada casella buida
+     * que necessita la generació: si és un ancoratge, les lletres permeses i els valors per puntuar.
+     */
+    private static class Linia {
+        /** Caselles de la línia */
+        final List<Casella> caselles;
+        /** Índex de la fila o columna */
+        final int idx;
+        /** True si la línia és una columna (jugades verticals) */
+        final boolean transposed;
+        /** Per cada casella, si és un ancoratge */
+        final boolean[] ancoratges;
+        /** Per cada casella, màscara de codis de lletra permesos per les paraules creuades */
+        final int[] creuats;
+        /** Per cada casella, suma dels valors de la paraula creuada sense la lletra nova (-1 si no se'n forma cap) */
+        final int[] valorsCreuats;
+        /** Per cada casella, multiplicador de lletra */
+        final int[] multLletra;
+        /** Per cada casella, multiplicador de paraula */
+        final int[] multParaula;
+
+        Linia(int idx, boolean transposed, int n) {
+            this.caselles = new ArrayList<>(n);
+            this.idx = idx;
+            this.transposed = transposed;
+            this.ancoratges = new boolean[n];
+            this.creuats = new int[n];
+            this.valorsCreuats = new int[n];
+            this.multLletra = new int[n];
+            this.multParaula = new int[n];
+        }
+
+        /** Indica si la posició és fora de la línia o és una casella buida */
+        boolean buida(int pos) {
+            return pos < 0 || pos >= caselles.size() || !caselles.get(pos).teFitxa();
+        }
+    }
+    
+    /**
+     * Ancoratge d'una línia preparada: la unitat de treball de la generació de jugades.
+     */
+    private static class Ancoratge {
+        /** Línia de l'ancoratge */
+        final Linia linia;
+        /** Posició de l'ancoratge a la línia */
+        final int pos;
+        /** Anchor amb la posició al tauler i les caselles lliures a l'esquerra */
+        final Anchor anchor;
+        /** Estimació de la puntuació que s'hi pot fer, per decidir l'ordre de cerca amb temps limitat */
+        int prioritat;
+
+        Ancoratge(Linia linia, int pos, int maxLeft) {
+            this.linia = linia;
+            this.pos = pos;
+            int fila = linia.transposed ? pos : linia.idx;
+            int columna = linia.transposed ? linia.idx : pos;
+            this.anchor = new Anchor(fila, columna, linia.creuats[pos], maxLeft);
+        }
+    }
+
+    /**
+     * Tasca que genera les jugades d'un rang d'ancoratges en paral·lel. Divideix el rang per la meitat fins que
+     * és prou petit i llavors el genera amb una còpia del controlador (amb el seu propi atril i memòries
+     * intermèdies) cap a un consumidor parcial. Els parcials es combinen en l'ordre dels ancoratges quan les
+     * subtasques acaben, sense cap bloqueig, i el resultat és el mateix que el de la generació seqüencial.
+     */
+    private class TascaAncoratges extends RecursiveTask<ConsumidorJugades> {
+        /** Nombre màxim d'ancoratges que es generen en una sola tasca */
+        private static final int LLINDAR = 4;
+
+        /** Ancoratges del torn, en ordre de cerca */
+        private final List<Ancoratge> ancoratges;
+        /** Primer ancoratge del rang */
+        private final int inici;
+        /** Ancoratge següent a l'últim del rang */
+        private final int fi;
+        /** Consumidor final, que crea els consumidors parcials */
+        private final ConsumidorJugades consumidor;
+
+        TascaAncoratges(List<Ancoratge> ancoratges, int inici, int fi, ConsumidorJugades consumidor) {
+            this.ancoratges = ancoratges;
+            this.inici = inici;
+            this.fi = fi;
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        protected ConsumidorJugades compute() {
+            if (fi - inici <= LLINDAR) {
+                ConsumidorJugades parcial = consumidor.parcial();
+                ControladorMaquina copia = new ControladorMaquina(ControladorMaquina.this);
+                for (int i = inici; i < fi; i++) copia.generaAncoratge(ancoratges.get(i), parcial);
+                return parcial;
+            }
+            int mig = (inici + fi) >>> 1;
+            TascaAncoratges dreta = new TascaAncoratges(ancoratges, mig, fi, consumidor);
+            dreta.fork();
+            ConsumidorJugades resultat = new TascaAncoratges(ancoratges, inici, mig, consumidor).compute();
+            resultat.combina(dreta.join());
+            return resultat;
+        }
+    }
     
     // Atributs
+    /** Lletres que compten com a vocals per valorar les fitxes que queden a l'atril */
+    private static final String VOCALS = "AEIOU";
+
     /** Partida actual on la màquina ha de jugar */
     public Partida partida;
     
@@ -22,15 +143,87 @@ public class ControladorMaquina {
     
     /** Diccionari utilitzat per validar paraules */
     private Diccionari diccionari;
+
+    /** Graf compacte del diccionari, recorregut durant la generació de jugades */
+    private DAWGCompacte graf;
     
     /** Tauler de joc actual */
     private Tauler tauler;
     
-    /** Cross-checks per moviments horitzontals */
-    private int[][] crossChecksAcross;
-    
-    /** Cross-checks per moviments verticals */
-    private int[][] crossChecksDown;
+    /** Memòria cau de lletres possibles per casella, mantinguda per la partida entre torns */
+    private CreuatsTauler creuats;
+
+    /** Memòria cau pròpia quan la màquina genera sobre un tauler que no és el de la partida (simulacions) */
+    private CreuatsTauler creuatsPropis;
+
+    /**
+     * Lletres de la jugada que s'està generant, indexades per posició a la línia.
+     * Només se'n crea un String quan s'afegeix una jugada.
+     */
+    private char[] lletresJugada;
+
+    /** Per cada posició de {@link #lletresJugada}, si la lletra es col·loca amb un comodí */
+    private boolean[] comodiJugada;
+
+    /**
+     * Part esquerra de la jugada, en ordre, mentre es construeix amb fitxes del rack:
+     * codi de lletra de cada fitxa, o {@code -codi - 1} si és un comodí.
+     */
+    private int[] prefixJugada;
+
+    /** Algorisme de generació de jugades */
+    private Generador generador = Generador.DAWG;
+
+    /** Graf del GADDAG, recorregut durant la generació bidireccional */
+    private DAWGCompacte grafGADDAG;
+
+    /**
+     * Codi al graf del diccionari de cada codi de lletra del GADDAG (-1 per al separador). Els codis poden no
+     * coincidir, perquè el separador i les lletres fora de l'A-Z es numeren per ordre de caràcter a cada graf.
+     */
+    private int[] codisGADDAG;
+
+    /** Indica si les línies del tauler es generen en paral·lel */
+    private boolean paralel = true;
+
+    /** Temps màxim de generació de jugades per torn, en mil·lisegons (0 = sense límit) */
+    private long tempsMaxim = 0;
+
+    /** Instant (System.nanoTime) a partir del qual s'atura la generació del torn actual */
+    private long termini = Long.MAX_VALUE;
+
+    /** Crides recursives fetes, per consultar el rellotge només de tant en tant */
+    private int comptadorNodes = 0;
+
+    /** Indica si la generació de l'ancoratge actual s'ha aturat per falta de temps */
+    private boolean aturat = false;
+
+    /** Condició que atura la generació abans d'hora, com si s'esgotés el temps (null si no n'hi ha) */
+    private BooleanSupplier cancellacio;
+
+    /** Generador aleatori per a les decisions no deterministes de la màquina */
+    private Random random = new Random();
+
+    /** Ancoratges de l'última generació */
+    private int ancoratgesTotals = 0;
+
+    /** Ancoratges de l'última generació que s'han explorat sencers (compartit amb les tasques paral·leles) */
+    private AtomicInteger ancoratgesExplorats = new AtomicInteger();
+
+    /** Partides simulades per triar l'última jugada (0 si no s'ha simulat el final) */
+    private int simulacions = 0;
+
+    /**
+     * Fitxes del rack com a multiconjunt: nombre de fitxes per codi de lletra del graf i, a l'última posició,
+     * nombre de comodins. La generació el modifica i el restaura a cada pas.
+     */
+    private int[] atril;
+
+    /** Posició dels comodins a {@link #atril} */
+    private int comodins;
+
+    /** Valor de cada lletra de l'alfabet per codi de lletra del graf */
+    private int[] valorCodi;
 
     /**
      * Constructor del controlador de la màquina.
@@ -40,9 +233,206 @@ public class ControladorMaquina {
      * @param partida La partida actual on la màquina ha de jugar
      */
     public ControladorMaquina(Partida partida) {
+        this(partida.getDiccionari(), partida.getTauler());
         this.partida = partida;
-        this.diccionari = partida.getDiccionari();
-        this.tauler = partida.getTauler();
+    }
+
+    /**
+     * Inicialitza el controlador amb el diccionari i el tauler on generarà les jugades.
+     * 
+     * @param diccionari Diccionari de les jugades
+     * @param tauler Tauler de les jugades
+     */
+    private ControladorMaquina(Diccionari diccionari, Tauler tauler) {
+        this.diccionari = diccionari;
+        this.graf = diccionari.getGraf();
+        this.tauler = tauler;
+        this.lletresJugada = new char[tauler.getMida()];
+        this.comodiJugada = new boolean[tauler.getMida()];
+        this.prefixJugada = new int[tauler.getMida()];
+        this.comodins = graf.getNumLletres();
+        this.atril = new int[comodins + 1];
+        this.valorCodi = new int[comodins];
+        Map<String, Pair<Integer, Integer>> alfabet = diccionari.getAlfabet();
+        for (int codi = 0; codi < comodins; codi++) {
+            Pair<Integer, Integer> lletra = alfabet.get(String.valueOf(graf.getLletra(codi)));
+            valorCodi[codi] = lletra == null ? 0 : lletra.second;
+        }
+    }
+
+    /**
+     * Crea una còpia del controlador per generar jugades en una tasca paral·lela. Comparteix els grafs,
+     * el tauler i els valors de les lletres, que no es modifiquen durant la generació, i té una còpia
+     * pròpia de l'atril i de les memòries intermèdies de la jugada.
+     * 
+     * @param original Controlador que reparteix la generació
+     */
+    private ControladorMaquina(ControladorMaquina original) {
+        this.partida = original.partida;
+        this.jugador = original.jugador;
+        this.diccionari = original.diccionari;
+        this.graf = original.graf;
+        this.tauler = original.tauler;
+        this.creuats = original.creuats;
+        this.generador = original.generador;
+        this.grafGADDAG = original.grafGADDAG;
+        this.codisGADDAG = original.codisGADDAG;
+        this.termini = original.termini;
+        this.cancellacio = original.cancellacio;
+        this.ancoratgesExplorats = original.ancoratgesExplorats;
+        this.lletresJugada = new char[tauler.getMida()];
+        this.comodiJugada = new boolean[tauler.getMida()];
+        this.prefixJugada = new int[tauler.getMida()];
+        this.comodins = original.comodins;
+        this.atril = original.atril.clone();
+        this.valorCodi = original.valorCodi;
+    }
+
+    /**
+     * Crea una còpia del controlador que genera jugades sobre un altre tauler, per simular jugades.
+     * Genera de manera seqüencial, no té jugador (l'atril es passa a {@link #generarJugades(int[], ConsumidorJugades)})
+     * i manté la seva pròpia memòria cau de lletres possibles, que segueix els canvis del tauler.
+     * 
+     * @param original Controlador de la partida
+     * @param tauler Tauler on es generen les jugades, normalment una còpia en escriptura del de la partida
+     */
+    ControladorMaquina(ControladorMaquina original, Tauler tauler) {
+        this(original.diccionari, tauler, original.generador);
+        this.partida = original.partida;
+    }
+
+    /**
+     * Crea un controlador que només genera jugades sobre un tauler, sense partida ni jugador
+     * (vegeu {@link GeneradorJugades}). Genera de manera seqüencial i manté la seva pròpia memòria cau
+     * de lletres possibles, que segueix els canvis del tauler.
+     * 
+     * @param diccionari Diccionari de les jugades
+     * @param tauler Tauler on es generen les jugades
+     * @param generador Algorisme de generació de jugades
+     */
+    ControladorMaquina(Diccionari diccionari, Tauler tauler, Generador generador) {
+        this(diccionari, tauler);
+        this.generador = generador;
+        this.creuatsPropis = new CreuatsTauler(tauler, diccionari);
+        this.paralel = false;
+    }
+
+    /**
+     * Constructor del controlador de la màquina amb un algorisme de generació concret.
+     * 
+     * @param partida La partida actual on la màquina ha de jugar
+     * @param generador Algorisme de generació de jugades
+     */
+    public ControladorMaquina(Partida partida, Generador generador) {
+        this(partida);
+        this.generador = generador;
+    }
+
+    /**
+     * Retorna l'algorisme de generació de jugades de la màquina.
+     * 
+     * @return Generador de jugades actual
+     */
+    public Generador getGenerador() {
+        return generador;
+    }
+
+    /**
+     * Canvia l'algorisme de generació de jugades de la màquina.
+     * El GADDAG es construeix (una sola vegada per diccionari) el primer cop que es fa servir.
+     * 
+     * @param generador Algorisme de generació de jugades
+     */
+    public void setGenerador(Generador generador) {
+        this.generador = generador;
+    }
+
+    /**
+     * Indica si la màquina genera les jugades de les files i columnes en paral·lel.
+     * 
+     * @return True si la generació és paral·lela
+     */
+    public boolean isParalel() {
+        return paralel;
+    }
+
+    /**
+     * Tria entre la generació paral·lela (per defecte), que reparteix les files i columnes entre els fils del
+     * {@link ForkJoinPool} comú, i la seqüencial, que les recorre una darrere l'altra al fil que crida.
+     * Totes dues generen les mateixes jugades i les passen al consumidor en el mateix ordre.
+     * 
+     * @param paralel True per generar en paral·lel
+     */
+    public void setParalel(boolean paralel) {
+        this.paralel = paralel;
+    }
+
+    /**
+     * Retorna el temps màxim de generació de jugades per torn.
+     * 
+     * @return Temps en mil·lisegons, o 0 si no hi ha límit
+     */
+    public long getTempsMaxim() {
+        return tempsMaxim;
+    }
+
+    /**
+     * Limita el temps de generació de jugades de cada torn, per exemple a les partides a contrarellotge.
+     * Amb límit, els ancoratges es recorren dels més prometedors (caselles amb multiplicador i lletres de
+     * més valor) als que menys, i quan s'esgota el temps la màquina juga la millor jugada trobada fins llavors.
+     * 
+     * @param tempsMaxim Temps en mil·lisegons, o 0 per no limitar-lo
+     */
+    public void setTempsMaxim(long tempsMaxim) {
+        this.tempsMaxim = Math.max(0, tempsMaxim);
+    }
+
+    /**
+     * Fixa una condició que atura la generació de jugades quan es compleix, igual que quan s'esgota el temps.
+     * Es consulta amb la mateixa freqüència que el rellotge.
+     * 
+     * @param cancellacio Condició de cancel·lació, o null per no fer-ne servir cap
+     */
+    void setCancellacio(BooleanSupplier cancellacio) {
+        this.cancellacio = cancellacio;
+    }
+
+    /**
+     * Retorna el nombre d'ancoratges de l'última generació de jugades.
+     * 
+     * @return Nombre d'ancoratges
+     */
+    public int getAncoratgesTotals() {
+        return ancoratgesTotals;
+    }
+
+    /**
+     * Retorna el nombre d'ancoratges que l'última generació ha explorat sencers abans d'esgotar el temps.
+     * 
+     * @return Nombre d'ancoratges explorats
+     */
+    public int getAncoratgesExplorats() {
+        return ancoratgesExplorats.get();
+    }
+
+    /**
+     * Retorna la part de l'espai de cerca que ha cobert l'última generació de jugades, com la fracció
+     * d'ancoratges explorats sencers. Sense límit de temps sempre és 1.
+     * 
+     * @return Valor entre 0 i 1
+     */
+    public double getCobertura() {
+        return ancoratgesTotals == 0 ? 1.0 : (double) ancoratgesExplorats.get() / ancoratgesTotals;
+    }
+
+    /**
+     * Retorna el nombre de partides simulades per triar l'última jugada. Només se'n simulen a les dificultats
+     * que ho indiquen i quan a la bossa queden poques fitxes.
+     * 
+     * @return Nombre de simulacions, o 0 si l'última jugada no s'ha triat simulant
+     */
+    public int getSimulacions() {
+        return simulacions;
     }
 
     /**
@@ -58,58 +448,108 @@ public class ControladorMaquina {
     }
 
     /**
-     * Genera i executa la millor jugada possible per la màquina.
-     * Si és la primera jugada (centre buit), utilitza un algorisme específic.
-     * Altrament, calcula cross-checks i genera jugades per totes les files i columnes.
-     * Si no pot generar cap jugada, intercanvia fitxes aleatòriament.
-     * @return Retorna si ha pogut generar una jugada o no
+     * Genera les jugades possibles d'un jugador amb l'estat actual del tauler, sense fer-ne cap.
+     * Cada jugada vàlida es passa al consumidor a mesura que es troba.
+     * 
+     * @param nomJugador Nom del jugador de qui s'agafen les fitxes
+     * @param consumidor Destí de les jugades (per exemple {@link MillorsJugades} o {@link TotesLesJugades})
      */
-    private boolean generateMove() {
-        int mida = tauler.getMida();
-        List<Play> totesJugades = new ArrayList<>();
+    public void generarJugades(String nomJugador, ConsumidorJugades consumidor) {
+        this.jugador = partida.getJugador(nomJugador);
+        generaJugades(consumidor);
+    }
 
-        if (tauler.getCasella(7, 7) != null && !tauler.getCasella(7, 7).teFitxa()) {
-            this.crossChecksAcross = new int[mida][mida];
-            this.crossChecksDown = new int[mida][mida];
-            int allLettersMask = (1 << 26) - 1;
-            Anchor primerAnchor = new Anchor(7, 7, allLettersMask, 7);
+    /**
+     * Genera les jugades d'un atril qualsevol sobre el tauler del controlador, de manera seqüencial i sense
+     * límit de temps. Per a les simulacions, amb una còpia creada amb {@link #ControladorMaquina(ControladorMaquina, Tauler)}.
+     * 
+     * @param atril Fitxes per codi de lletra del graf i, a l'última posició, nombre de comodins
+     * @param consumidor Destí de les jugades
+     */
+    void generarJugades(int[] atril, ConsumidorJugades consumidor) {
+        System.arraycopy(atril, 0, this.atril, 0, this.atril.length);
+        generaJugades(consumidor);
+    }
 
-            List<Casella> linea = new ArrayList<>();
-            for (int i = 0; i < mida; i++) {
-                linea.add(tauler.getCasella(7, i));
-            }
+    /**
+     * Genera les jugades d'unes fitxes qualssevol sobre el tauler del controlador, sense límit de temps.
+     * Per als controladors sense jugador de {@link GeneradorJugades}.
+     * 
+     * @param fitxes Fitxes de l'atril
+     * @param consumidor Destí de les jugades
+     */
+    void generarJugades(List<Fitxa> fitxes, ConsumidorJugades consumidor) {
+        carregaAtril(fitxes);
+        generaJugades(consumidor);
+    }
 
-            Node node = diccionari.getArrel();
+    /**
+     * Retorna les fitxes del jugador de l'últim torn com a multiconjunt (vegeu {@link #atril}).
+     * 
+     * @return Còpia de l'atril
+     */
+    int[] getAtril() {
+        return atril.clone();
+    }
 
-            List<Fitxa> rack = new ArrayList<>(jugador.getFitxes());
-            leftPart("", diccionari.getArrel(), primerAnchor, linea, totesJugades, primerAnchor.getMaxLeft(), 0, false, rack);
-            leftPart("", diccionari.getArrel(), primerAnchor, linea, totesJugades, primerAnchor.getMaxLeft(), 0, true, rack);
-        } 
-        else {
-            computeCrossChecks();
-            for (int fila = 0; fila < mida; fila++) {
-                totesJugades.addAll(generateMoveRow(fila, false));
-            }
-            for (int columna = 0; columna < mida; columna++) {
-                totesJugades.addAll(generateMoveRow(columna, true));
-            }
-        }
+    /**
+     * Retorna el jugador de l'últim torn.
+     * 
+     * @return Jugador màquina
+     */
+    Jugador getJugador() {
+        return jugador;
+    }
 
-        if (!totesJugades.isEmpty()) {
-            Play millorJugada = totesJugades.get(0);
-            for (Play jugada : totesJugades) {
-                if (jugada.getScore() > millorJugada.getScore()) {
-                    millorJugada = jugada;
-                }
-            }
+    /**
+     * Retorna el valor d'una lletra.
+     * 
+     * @param codi Codi de la lletra al graf del diccionari
+     * @return Punts de la lletra
+     */
+    int getValorCodi(int codi) {
+        return valorCodi[codi];
+    }
+
+    /**
+     * Fixa la llavor del generador aleatori de la màquina, per reproduir les seves decisions.
+     * 
+     * @param llavor Llavor del generador
+     */
+    public void setLlavor(long llavor) {
+        this.random = new Random(llavor);
+    }
 
+    /**
+     * Genera i executa una jugada per la màquina segons el perfil de la dificultat de la partida.
+     * Es queda només amb les jugades candidates de més puntuació i en tria una; si la dificultat ho indica
+     * i a la bossa queden poques fitxes, la tria simulant el final de la partida ({@link SimuladorFinal}).
+     * Si no n'hi ha cap, intercanvia fitxes aleatòriament.
+     * @return Retorna si ha pogut generar una jugada o no
+     */
+    private boolean generateMove() {
+        Dificultat dificultat = partida.getDificultat() != null ? partida.getDificultat() : Dificultat.NORMAL;
+        MillorsJugades millors = new MillorsJugades(dificultat.getJugadesCandidates());
+        generaJugades(millors, dificultat.getFraccioAncoratges());
+
+        Play millorJugada = null;
+        simulacions = 0;
+        if (dificultat.isSimulaFinal() && partida.getBossa().size() <= SimuladorFinal.FITXES_BOSSA
+                && millors.getJugades().size() > 1) {
+            long termini = tempsMaxim > 0 ? this.termini : System.nanoTime() + SimuladorFinal.TEMPS_MAXIM * 1_000_000;
+            SimuladorFinal simulador = new SimuladorFinal(this, termini, random.nextLong());
+            millorJugada = simulador.tria(ordenaPerValor(millors.getJugades(), SimuladorFinal.CANDIDATES));
+            simulacions = simulador.getSimulacions();
+        }
+        if (millorJugada == null) millorJugada = triaJugada(millors.getJugades(), dificultat);
+        if (millorJugada != null) {
             String paraula = millorJugada.getWord();
             int filaInicial = millorJugada.getFila();
             int columnaInicial = millorJugada.getColumna();
             boolean horitzontal = millorJugada.isHorizontal();
             int puntuacioJugada = millorJugada.getScore();
 
-            List<Fitxa> fichasColocar = stringToFitxa(paraula, filaInicial, columnaInicial, horitzontal);
+            List<Fitxa> fichasColocar = stringToFitxa(paraula, filaInicial, columnaInicial, horitzontal, millorJugada.getComodins());
             Pair<List<Pair<Integer, Integer>>, Integer> resultat = tauler.colocarParaula(fichasColocar, paraula, filaInicial, columnaInicial, horitzontal);
             if (!resultat.first.isEmpty()) {
                 for (Fitxa f : fichasColocar) {
@@ -127,12 +567,10 @@ public class ControladorMaquina {
             List<Fitxa> rack = new ArrayList<>(jugador.getFitxes());
 
             if (fichasEnBolsa > 0) {
-                Random rnd = new Random();
-
-                int numFitxesCanviar = rnd.nextInt(rack.size()) + 1;
+                int numFitxesCanviar = random.nextInt(rack.size()) + 1;
 
                 int fitesACanviar = Math.min(fichasEnBolsa, numFitxesCanviar);
-                Collections.shuffle(rack);
+                Collections.shuffle(rack, random);
                 List<Fitxa> aIntercanviar = rack.subList(0, numFitxesCanviar);
 
                 for(Fitxa f : aIntercanviar) {
@@ -147,195 +585,342 @@ public class ControladorMaquina {
     }
 
     /**
-     * Genera jugades possibles per una fila o columna específica.
+     * Tria la jugada a fer d'entre les candidates, ordenades de més a menys puntuació, segons la dificultat:
+     * la de més puntuació més el valor de les fitxes que queden si la dificultat avalua la resta,
+     * una a l'atzar de la zona mitjana si n'hi ha diverses candidates, o la primera.
      * 
-     * @param idx Índex de la fila o columna
-     * @param transposed True si es tracta d'una columna (transposada), false per fila
-     * @return Llista de jugades possibles per aquesta línia
+     * @param candidates Jugades candidates, de més a menys puntuació
+     * @param dificultat Dificultat de la partida
+     * @return La jugada triada, o null si no n'hi ha cap
      */
-    private List<Play> generateMoveRow(int idx, boolean transposed) {
-        List<Play> jugades = new ArrayList<>();
-        List<Casella> linea = new ArrayList<>();
-        int n = tauler.getMida();
+    private Play triaJugada(List<Play> candidates, Dificultat dificultat) {
+        if (candidates.isEmpty()) return null;
+        if (dificultat.isAvaluaResta()) return ordenaPerValor(candidates, 1).get(0);
+        return candidates.get(dificultat.triaCandidata(candidates.size(), random));
+    }
 
-        for (int i = 0; i < n; i++) {
-            Casella c = transposed ? tauler.getCasella(i, idx) : tauler.getCasella(idx, i);
-            linea.add(c);
-        }
+    /**
+     * Ordena les jugades candidates per la seva puntuació més el valor de les fitxes que es queda el jugador.
+     * A igualtat de valor es manté l'ordre de les candidates.
+     * 
+     * @param candidates Jugades candidates
+     * @param maxim Nombre màxim de jugades a retornar
+     * @return Les {@code maxim} jugades de més valor, de més a menys
+     */
+    private List<Play> ordenaPerValor(List<Play> candidates, int maxim) {
+        Map<Play, Integer> valors = new IdentityHashMap<>();
+        for (Play jugada : candidates) valors.put(jugada, 2 * jugada.getScore() + valorResta(jugada));
+        List<Play> ordenades = new ArrayList<>(candidates);
+        ordenades.sort((a, b) -> Integer.compare(valors.get(b), valors.get(a)));
+        return ordenades.subList(0, Math.min(maxim, ordenades.size()));
+    }
 
-        List<Anchor> anchors = getAnchors(linea, idx, transposed);
-        for (Anchor a : anchors) {
-            List<Fitxa> atril = new ArrayList<>(jugador.getFitxes());
-            leftPart("", diccionari.getArrel(), a, linea, jugades, a.getMaxLeft(), 0, transposed, atril);
+    /**
+     * Estima el valor de les fitxes que es queda el jugador després d'una jugada. Si el diccionari té
+     * taula de valors de resta es consulta directament; si no, els comodins sumen i les lletres repetides
+     * i el desequilibri entre vocals i consonants resten.
+     * 
+     * @param jugada Jugada generada amb l'atril actual
+     * @return Valor de la resta, en mitjos punts
+     */
+    private int valorResta(Play jugada) {
+        int[] resta = atril.clone();
+        String paraula = jugada.getWord();
+        for (int i = 0; i < paraula.length(); i++) {
+            int fila = jugada.isHorizontal() ? jugada.getFila() : jugada.getFila() + i;
+            int columna = jugada.isHorizontal() ? jugada.getColumna() + i : jugada.getColumna();
+            if (tauler.getCasella(fila, columna).teFitxa()) continue;
+            if ((jugada.getComodins() >> i & 1) != 0) resta[comodins]--;
+            else resta[graf.getCodi(paraula.charAt(i))]--;
         }
+        ValorsResta taula = diccionari.getValorsResta();
+        if (taula != null) return taula.getValor(resta);
+
+        int valor = 10 * resta[comodins];
+        int vocals = 0, consonants = 0;
+        for (int codi = 0; codi < comodins; codi++) {
+            if (resta[codi] == 0) continue;
+            valor -= 3 * (resta[codi] - 1);
+            if (VOCALS.indexOf(graf.getLletra(codi)) >= 0) vocals += resta[codi];
+            else consonants += resta[codi];
+        }
+        valor -= 2 * Math.max(0, Math.abs(vocals - consonants) - 1);
+        return 2 * valor;
+    }
 
-        Iterator<Play> it = jugades.iterator();
-        while(it.hasNext()) {
-            Play jugada = it.next();
-            boolean todasValidas = true;
-
-            List<Fitxa> fichasColocar = stringToFitxa(jugada.getWord(), jugada.getFila(), jugada.getColumna(), jugada.isHorizontal());
-            for (int i = 0; i < fichasColocar.size(); i++) {
-                Fitxa f = fichasColocar.get(i);
-                int fila = jugada.isHorizontal() ? jugada.getFila() : jugada.getFila() + i;
-                int columna = jugada.isHorizontal() ? jugada.getColumna() + i : jugada.getColumna();
-
-                if (f == null) {
-                    continue;
-                }
+    /**
+     * Genera totes les jugades possibles amb les fitxes del jugador actual i les passa al consumidor.
+     * 
+     * @param consumidor Destí de les jugades generades
+     */
+    private void generaJugades(ConsumidorJugades consumidor) {
+        generaJugades(consumidor, 1.0f);
+    }
 
-                String cruzada = construirParaulaCreuada(fila, columna, jugada.isHorizontal(), f.getLletra());
-                if(cruzada.length() > 1 && !diccionari.validarParaula(cruzada)) {
-                    todasValidas = false;
-                    break;
-                } 
+    /**
+     * Genera les jugades possibles amb les fitxes del jugador actual i les passa al consumidor.
+     * Prepara cada fila i columna amb els seus anchors, cross-checks i multiplicadors i hi aplica
+     * l'algorisme de generació triat a cada anchor. A la primera jugada l'únic anchor és el centre del tauler.
+     * <p>
+     * Les línies es preparen sempre al fil que crida, perquè la memòria cau de cross-checks de la partida
+     * no és segura entre fils; després cada anchor és independent i es pot generar en paral·lel.
+     * Amb temps limitat, els anchors es recorren per ordre de prioritat i els que no han començat
+     * quan s'esgota el temps no s'exploren. Amb una fracció d'ancoratges menor que 1 només s'explora
+     * una mostra aleatòria dels ancoratges, i la resta compten com a no explorats.
+     * 
+     * @param consumidor Destí de les jugades generades
+     * @param fraccioAncoratges Fracció dels ancoratges a explorar (1 = tots)
+     */
+    private void generaJugades(ConsumidorJugades consumidor, float fraccioAncoratges) {
+        int mida = tauler.getMida();
+        carregaAtril();
+        boolean primeraJugada = tauler.getCasella(7, 7) != null && !tauler.getCasella(7, 7).teFitxa();
+        if (!primeraJugada) this.creuats = creuatsPropis != null ? creuatsPropis : partida.getCreuats();
+        if (generador == Generador.GADDAG) {
+            this.grafGADDAG = diccionari.getGADDAG().getGraf();
+            this.codisGADDAG = new int[grafGADDAG.getNumLletres()];
+            for (int codi = 0; codi < codisGADDAG.length; codi++) {
+                char lletra = grafGADDAG.getLletra(codi);
+                codisGADDAG[codi] = lletra == GADDAG.SEPARADOR ? -1 : graf.getCodi(lletra);
             }
-
-            if(!todasValidas) {
-                it.remove();
+        }
+        this.termini = tempsMaxim > 0 ? System.nanoTime() + tempsMaxim * 1_000_000 : Long.MAX_VALUE;
+
+        List<Ancoratge> ancoratges = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            boolean transposed = t == 1;
+            for (int idx = 0; idx < mida; idx++) {
+                Linia linia = construirLinia(idx, transposed, primeraJugada);
+                if (linia != null) afegirAncoratges(linia, ancoratges);
             }
+        }
+        this.ancoratgesTotals = ancoratges.size();
+        if (fraccioAncoratges < 1) {
+            int mostra = Math.max(1, Math.round(ancoratges.size() * fraccioAncoratges));
+            Collections.shuffle(ancoratges, random);
+            ancoratges.subList(Math.min(mostra, ancoratges.size()), ancoratges.size()).clear();
+        }
+        if (tempsMaxim > 0) {
+            for (Ancoratge a : ancoratges) a.prioritat = prioritat(a);
+            ancoratges.sort((a, b) -> Integer.compare(b.prioritat, a.prioritat));
+        }
+        this.ancoratgesExplorats = new AtomicInteger();
+
+        if (paralel && ancoratges.size() > TascaAncoratges.LLINDAR) {
+            consumidor.combina(ForkJoinPool.commonPool().invoke(new TascaAncoratges(ancoratges, 0, ancoratges.size(), consumidor)));
+        } else {
+            for (Ancoratge a : ancoratges) generaAncoratge(a, consumidor);
+        }
+    }
 
+    /**
+     * Genera les jugades d'un anchor amb l'algorisme triat, si encara hi ha temps.
+     * Només el compta com a explorat si la cerca no s'ha aturat a mitges.
+     * 
+     * @param a Anchor a explorar
+     * @param consumidor Destí de les jugades de l'anchor
+     */
+    private void generaAncoratge(Ancoratge a, ConsumidorJugades consumidor) {
+        if (fiDeTemps()) return;
+        aturat = false;
+        if (generador == Generador.GADDAG) {
+            gaddagGen(a.linia, a.pos, a.pos, a.pos, grafGADDAG.getArrel(), 0, 1, 0, consumidor);
+        } else {
+            generateMoveAnchor(a.linia, a.anchor, consumidor);
         }
+        if (!aturat) ancoratgesExplorats.incrementAndGet();
+    }
+
+    /**
+     * Indica si s'ha esgotat el temps de generació. Per no penalitzar la cerca, el rellotge només
+     * es consulta cada 256 crides.
+     * 
+     * @return True si la generació s'ha d'aturar
+     */
+    private boolean esgotat() {
+        if (!aturat && (++comptadorNodes & 0xFF) == 0 && fiDeTemps()) aturat = true;
+        return aturat;
+    }
 
-        return jugades;
+    /**
+     * Consulta el rellotge i la condició de cancel·lació.
+     * 
+     * @return True si s'ha passat el termini o s'ha cancel·lat la generació
+     */
+    private boolean fiDeTemps() {
+        return System.nanoTime() > termini || (cancellacio != null && cancellacio.getAsBoolean());
     }
 
     /**
-     * Identifica i retorna els anchors (punts d'ancoratge) d'una línia.
-     * Un anchor és una casella buida adjacent a una fitxa col·locada.
+     * Prepara una fila o columna per generar-hi jugades: anchors, cross-checks, multiplicadors
+     * i valor de les paraules creuades de cada casella buida.
+     * Els anchors surten de les màscares d'ocupació del tauler, i les línies sense cap anchor ni es recorren.
+     * Les màscares i els valors de les paraules creuades els manté la partida entre torns i només
+     * es recalculen les caselles afectades per les últimes jugades.
      * 
-     * @param linea Línia de caselles a analitzar
      * @param idx Índex de la fila o columna
-     * @param transposed True si la línia és transposada (columna)
-     * @return Llista d'anchors trobats
+     * @param transposed True si es tracta d'una columna (jugades verticals)
+     * @param primeraJugada True si el tauler és buit
+     * @return La línia preparada, o null si no té cap anchor
      */
-    private List<Anchor> getAnchors(List<Casella> linea, int idx, boolean transposed) {
-        List<Anchor> anchors = new ArrayList<>();
-        int n = linea.size();
+    private Linia construirLinia(int idx, boolean transposed, boolean primeraJugada) {
+        long ancoratges = primeraJugada ? (idx == 7 ? 1L << 7 : 0) : tauler.getAncoratges(idx, transposed);
+        if (ancoratges == 0) return null;
 
+        int n = tauler.getMida();
+        Linia linia = new Linia(idx, transposed, n);
         for (int i = 0; i < n; i++) {
-            Casella c = linea.get(i);
-            if (!c.teFitxa()) {
-                boolean esAnchor = false;
-                if ((i > 0 && linea.get(i - 1).teFitxa()) || (i < n - 1 && linea.get(i + 1).teFitxa())) {
-                    esAnchor = true;
-                }
-
-                int fila = transposed ? i : idx;
-                int columna = transposed ? idx : i;
-
-                if (esAnchor) {
-                    int maxLeft = 0;
-                    int j = i - 1;
-                    int crossCheck = transposed ? crossChecksDown[fila][columna] : crossChecksAcross[fila][columna];
+            int fila = transposed ? i : idx;
+            int columna = transposed ? idx : i;
+            Casella c = tauler.getCasella(fila, columna);
+            linia.caselles.add(c);
+            if (c.teFitxa()) continue;
+
+            linia.ancoratges[i] = (ancoratges >>> i & 1) != 0;
+            if (primeraJugada) {
+                linia.creuats[i] = -1;
+                linia.valorsCreuats[i] = -1;
+            } else {
+                // Les lletres possibles de la paraula perpendicular: la de la fila per a jugades verticals i a l'inrevés
+                linia.valorsCreuats[i] = creuats.getValorCreuat(fila, columna, transposed);
+                linia.creuats[i] = linia.valorsCreuats[i] < 0 ? -1 : creuats.getLletresPossibles(fila, columna, transposed);
+            }
 
-                    while (j > 0 && !linea.get(j).teFitxa() && !linea.get(j - 1).teFitxa()) {
-                        j--;
-                        maxLeft++;
-                    }
-                    if (j == 0 && !linea.get(0).teFitxa()) {
-                        maxLeft++;
-                    }
-                    anchors.add(new Anchor(fila, columna, crossCheck, maxLeft));
-                }
+            linia.multLletra[i] = 1;
+            linia.multParaula[i] = 1;
+            switch (c.getMultiplicador()) {
+                case "DL" -> linia.multLletra[i] = 2;
+                case "TL" -> linia.multLletra[i] = 3;
+                case "DP", "C" -> linia.multParaula[i] = 2;
+                case "TP" -> linia.multParaula[i] = 3;
             }
         }
-        return anchors;
+        return linia;
     }
 
     /**
-     * Calcula els cross-checks per totes les caselles buides del tauler.
-     * Un cross-check determina quines lletres són vàlides en una posició
-     * basant-se en les paraules perpendiculars que es formarien.
+     * Genera les jugades possibles a partir d'un anchor.
+     * Si l'anchor té fitxes just a l'esquerra, aquestes fitxes són la part esquerra de la paraula;
+     * si no, la part esquerra es construeix amb fitxes del rack.
+     * 
+     * @param linia Fila o columna preparada
+     * @param a Anchor de la línia
+     * @param consumidor Destí de les jugades d'aquest anchor
      */
-    private void computeCrossChecks() {
-        int n = tauler.getMida();
-        this.crossChecksAcross = new int [n][n];
-        this.crossChecksDown = new int [n][n];
-
-        for (int i = 0; i < n; i++) {
-            for (int j = 0; j < n; j++) {
-                Casella c = tauler.getCasella(i, j);
-                if (!c.teFitxa()) {
-                    crossChecksAcross[i][j] = calcularCrossCheck(i, j, false);
-                    crossChecksDown[i][j] = calcularCrossCheck(i, j, true);
-                }
+    private void generateMoveAnchor(Linia linia, Anchor a, ConsumidorJugades consumidor) {
+        int pos = linia.transposed ? a.getFila() : a.getColumna();
+        if (!linia.buida(pos - 1)) {
+            int inici = pos - 1;
+            while (!linia.buida(inici - 1)) inici--;
+            int node = graf.getArrel();
+            int suma = 0;
+            for (int i = inici; i < pos && node >= 0; i++) {
+                Fitxa f = linia.caselles.get(i).getFitxa();
+                lletresJugada[i] = f.getLletra();
+                comodiJugada[i] = false;
+                suma += f.getValor();
+                node = graf.getFill(node, f.getLletra());
             }
+            if (node >= 0) extendRight(node, a, pos, pos - inici, linia, suma, 1, 0, consumidor);
+        } else {
+            leftPart(graf.getArrel(), a, linia, consumidor, a.getMaxLeft(), 0);
         }
     }
 
     /**
-     * Calcula el cross-check per una casella específica.
-     * Determina quines lletres produirien paraules vàlides en direcció perpendicular.
+     * Afegeix els anchors (punts d'ancoratge) d'una línia, en ordre.
+     * Un anchor és una casella buida adjacent (en qualsevol direcció) a una fitxa col·locada,
+     * o el centre del tauler a la primera jugada. La part esquerra d'un anchor només pot ocupar
+     * les caselles buides anteriors que no són anchors, que no tenen fitxes perpendiculars.
      * 
-     * @param fila Fila de la casella
-     * @param columna Columna de la casella
-     * @param transposed True per direcció vertical, false per horitzontal
-     * @return Màscara de bits amb les lletres vàlides
+     * @param linia Fila o columna preparada
+     * @param ancoratges Llista on s'afegeixen els anchors trobats
      */
-    private int calcularCrossCheck(int fila, int columna, boolean transposed) {
-        String prefix = "", sufix = "";
-        int n = tauler.getMida();
-
-        if (transposed) {
-            for (int r = fila - 1; r >= 0 && tauler.getCasella(r, columna).teFitxa(); r--) {
-                prefix = tauler.getCasella(r, columna).getFitxa().getLletra() + prefix;
-            }
-            for (int r = fila + 1; r < n && tauler.getCasella(r, columna).teFitxa(); r++) {
-                sufix = sufix + tauler.getCasella(r, columna).getFitxa().getLletra();
-            }
-        } 
-        else {
-            for (int c = columna - 1; c >= 0 && tauler.getCasella(fila, c).teFitxa(); c--) {
-                prefix = tauler.getCasella(fila, c).getFitxa().getLletra() + prefix;
-            }
-            for (int c = columna + 1; c < n && tauler.getCasella(fila, c).teFitxa(); c++) {
-                sufix = sufix + tauler.getCasella(fila, c).getFitxa().getLletra();
-            }
+    private void afegirAncoratges(Linia linia, List<Ancoratge> ancoratges) {
+        int n = linia.caselles.size();
+        int maxLeft = 0;
+        for (int i = 0; i < n; i++) {
+            if (linia.ancoratges[i]) ancoratges.add(new Ancoratge(linia, i, maxLeft));
+            maxLeft = !linia.buida(i) || linia.ancoratges[i] ? 0 : maxLeft + 1;
         }
+    }
 
-        int mask = 0;
-        for (char L = 'A'; L <= 'Z'; L++) {
-            if (diccionari.validarParaula(prefix + L + sufix)) {
-                mask |= 1 << (L - 'A');
+    /**
+     * Estima com de prometedor és un anchor: el valor de la millor lletra del rack que hi pot anar, amb
+     * els multiplicadors de la casella i la paraula creuada que forma, més un extra per cada casella amb
+     * multiplicador que una jugada des de l'anchor pot arribar a ocupar.
+     * 
+     * @param a Anchor a valorar
+     * @return Prioritat (més gran, més prometedor)
+     */
+    private int prioritat(Ancoratge a) {
+        Linia linia = a.linia;
+        int millorLletra = 0;
+        int cc = linia.creuats[a.pos];
+        for (int codi = 0; codi < comodins; codi++) {
+            if (atril[codi] > 0 && ((cc >>> codi) & 1) != 0) millorLletra = Math.max(millorLletra, valorCodi[codi]);
+        }
+        int prioritat = (millorLletra * linia.multLletra[a.pos] + Math.max(0, linia.valorsCreuats[a.pos])) * linia.multParaula[a.pos];
+
+        int fitxes = 0;
+        for (int n : atril) fitxes += n;
+        for (int sentit = -1; sentit <= 1; sentit += 2) {
+            int lliures = 0;
+            for (int i = a.pos + sentit; i >= 0 && i < linia.caselles.size() && lliures < fitxes - 1; i += sentit) {
+                if (!linia.buida(i)) continue;
+                lliures++;
+                prioritat += (linia.multLletra[i] - 1) + 3 * (linia.multParaula[i] - 1);
             }
         }
-        return mask;
+        return prioritat;
     }
 
     /**
      * Genera la part esquerra d'una paraula a partir d'un anchor.
-     * Aquesta funció recursiva construeix prefixos vàlids abans de l'anchor.
+     * Aquesta funció recursiva construeix prefixos vàlids abans de l'anchor, amb fitxes del rack.
+     * El prefix es guarda a {@link #prefixJugada} i es copia a {@link #lletresJugada}, just abans de l'anchor,
+     * quan s'estén cap a la dreta. Com que el prefix es desplaça a cada lletra nova, la seva puntuació es
+     * calcula en aquest moment; les caselles que ocupa no formen paraules creuades.
      * 
-     * @param soFar Paraula construïda fins ara
-     * @param node Node actual del trie del diccionari
+     * @param node Node actual del graf del diccionari
      * @param anchor Punt d'ancoratge actual
-     * @param linea Línia de caselles
-     * @param jugades Llista on afegir jugades vàlides
+     * @param linia Fila o columna preparada
+     * @param consumidor Destí de les jugades vàlides
      * @param limit Límit màxim de lletres a l'esquerra
      * @param usedLeft Nombre de lletres usades a l'esquerra
-     * @param transposed True si la direcció és transposada
-     * @param rack Fitxes disponibles al rack
      */
-    private void leftPart(String soFar, Node node, Anchor anchor, List<Casella> linea, List<Play> jugades, int limit, int usedLeft, boolean transposed, List<Fitxa> rack) {
-        int pos = transposed ? anchor.getFila() : anchor.getColumna();
-
-        extendRight(soFar, node, anchor, pos, usedLeft, linea, jugades, transposed, rack);
+    private void leftPart(int node, Anchor anchor, Linia linia, ConsumidorJugades consumidor, int limit, int usedLeft) {
+        if (esgotat()) return;
+        int pos = linia.transposed ? anchor.getFila() : anchor.getColumna();
+
+        int suma = 0, mult = 1;
+        for (int i = 0; i < usedLeft; i++) {
+            int p = pos - usedLeft + i;
+            int codi = prefixJugada[i];
+            boolean comodi = codi < 0;
+            if (comodi) codi = -codi - 1;
+            lletresJugada[p] = graf.getLletra(codi);
+            comodiJugada[p] = comodi;
+            suma += (comodi ? 0 : valorCodi[codi]) * linia.multLletra[p];
+            mult *= linia.multParaula[p];
+        }
+        extendRight(node, anchor, pos, usedLeft, linia, suma, mult, 0, consumidor);
 
         if (limit > 0) {
-            for (int i = 0; i < rack.size(); i++) {
-                Fitxa f = rack.get(i);
-                char L = f.getLletra();
-                Node child = node.getFill(L);
-
-                if (child != null) {
-                    List<Fitxa> novaRack = new ArrayList<>(rack);
-                    novaRack.remove(i);
-                    String nouSoFar = L + soFar;
-                    int newUsedLeft = usedLeft + 1;
-                    int newLimit = limit - 1;
-
-                    leftPart(nouSoFar, child, anchor, linea, jugades, newLimit, newUsedLeft, transposed, novaRack);
+            for (int fills = graf.getMascaraFills(node); fills != 0; fills &= fills - 1) {
+                int codi = Integer.numberOfTrailingZeros(fills);
+                int child = graf.getFillPerCodi(node, codi);
+
+                if (atril[codi] > 0) {
+                    prefixJugada[usedLeft] = codi;
+                    atril[codi]--;
+                    leftPart(child, anchor, linia, consumidor, limit - 1, usedLeft + 1);
+                    atril[codi]++;
+                } else if (atril[comodins] > 0) {
+                    prefixJugada[usedLeft] = -codi - 1;
+                    atril[comodins]--;
+                    leftPart(child, anchor, linia, consumidor, limit - 1, usedLeft + 1);
+                    atril[comodins]++;
                 }
             }
         }
@@ -343,215 +928,262 @@ public class ControladorMaquina {
 
     /**
      * Estén una paraula cap a la dreta a partir d'una posició.
-     * Aquesta funció recursiva col·loca fitxes cap a la dreta de l'anchor.
+     * Aquesta funció recursiva col·loca fitxes cap a la dreta de l'anchor. Només s'hi col·loquen lletres
+     * permeses pel cross-check de cada casella, de manera que totes les paraules creuades són vàlides.
+     * La paraula construïda fins ara és a {@link #lletresJugada}, de la posició {@code anchor - usedLeft} a {@code pos},
+     * i la seva puntuació es porta acumulada: la jugada val {@code suma * mult + creuades}.
      * 
-     * @param soFar Paraula construïda fins ara
-     * @param node Node actual del trie del diccionari
+     * @param node Node actual del graf del diccionari
      * @param anchor Punt d'ancoratge actual
      * @param pos Posició actual a la línia
      * @param usedLeft Nombre de lletres usades a l'esquerra
-     * @param linea Línia de caselles
-     * @param jugades Llista on afegir jugades vàlides
-     * @param transposed True si la direcció és transposada
-     * @param rack Fitxes disponibles al rack
-     */
-    private void extendRight(String soFar, Node node, Anchor anchor, int pos, int usedLeft, List<Casella> linea, List<Play> jugades, boolean transposed, List<Fitxa> rack) {
-        if (pos >= linea.size()) return;
-
-        Casella c = linea.get(pos);
-        int fila = transposed ? pos : anchor.getFila();
-        int col = transposed ? anchor.getColumna() : pos;
-
-        if (!c.teFitxa()) {
-            int placedRight = soFar.length() - usedLeft;
-            if (placedRight > 0 && diccionari.validarParaula(soFar)) {
-                int filaInici = transposed ? anchor.getFila() - usedLeft : anchor.getFila();
-                int columnaInici = transposed ? anchor.getColumna() : anchor.getColumna() - usedLeft;
-                int score = getPuntuacioJugada(soFar, filaInici, columnaInici, transposed);
-                jugades.add(new Play(soFar, filaInici, columnaInici, transposed, score));
-            }
-
-            int cc;
-            if (fila == anchor.getFila() && col == anchor.getColumna()) {
-                cc = anchor.getCrossCheck();
-            }
-            else {
-                cc = transposed ? crossChecksDown[fila][col] : crossChecksAcross[fila][col];
+     * @param linia Fila o columna preparada
+     * @param suma Suma dels valors de les lletres de la paraula, amb els multiplicadors de lletra
+     * @param mult Producte dels multiplicadors de paraula de les caselles noves
+     * @param creuades Puntuació de les paraules creuades formades
+     * @param consumidor Destí de les jugades vàlides
+     */
+    private void extendRight(int node, Anchor anchor, int pos, int usedLeft, Linia linia, int suma, int mult, int creuades, ConsumidorJugades consumidor) {
+        if (esgotat()) return;
+        int posAnchor = linia.transposed ? anchor.getFila() : anchor.getColumna();
+        int n = linia.caselles.size();
+
+        if (linia.buida(pos)) {
+            if (pos > posAnchor && graf.esFinal(node)) {
+                registraJugada(linia, posAnchor - usedLeft, pos, suma * mult + creuades, mult, consumidor);
             }
-
-            for (int i = 0; i < rack.size(); i++) {
-                Fitxa f = rack.get(i);
-                if (!f.esComodin()) {
-                    char L = f.getLletra();
-                    if (((cc >> (L - 'A')) & 1) == 1 && node.getFill(L) != null) {
-                        List<Fitxa> novaRack = new ArrayList<>(rack);
-                        novaRack.remove(i);
-                        extendRight(soFar + L, node.getFill(L), anchor, pos + 1, usedLeft, linea, jugades, transposed, novaRack);
-                    }
-                } else {
-                    for (char L = 'A'; L <= 'Z'; L++) {
-                        if (((cc >> (L - 'A')) & 1) == 1 && node.getFill(L) != null) {
-                            f.setLletra(L);
-                            List<Fitxa> novaRack = new ArrayList<>(rack);
-                            novaRack.remove(i);
-                            extendRight(soFar + L, node.getFill(L), anchor, pos + 1, usedLeft, linea, jugades, transposed, novaRack);
-                            f.setLletra('#');
-                        }
-                    }
+            if (pos >= n) return;
+
+            int cc = linia.creuats[pos];
+            int ml = linia.multLletra[pos];
+            int mp = linia.multParaula[pos];
+            int vc = linia.valorsCreuats[pos];
+            for (int possibles = cc & graf.getMascaraFills(node); possibles != 0; possibles &= possibles - 1) {
+                int codi = Integer.numberOfTrailingZeros(possibles);
+                int fill = graf.getFillPerCodi(node, codi);
+                lletresJugada[pos] = graf.getLletra(codi);
+
+                if (atril[codi] > 0) {
+                    int valor = valorCodi[codi] * ml;
+                    comodiJugada[pos] = false;
+                    atril[codi]--;
+                    extendRight(fill, anchor, pos + 1, usedLeft, linia, suma + valor, mult * mp,
+                            vc < 0 ? creuades : creuades + (vc + valor) * mp, consumidor);
+                    atril[codi]++;
+                } else if (atril[comodins] > 0) {
+                    comodiJugada[pos] = true;
+                    atril[comodins]--;
+                    extendRight(fill, anchor, pos + 1, usedLeft, linia, suma, mult * mp,
+                            vc < 0 ? creuades : creuades + vc * mp, consumidor);
+                    atril[comodins]++;
                 }
             }
         } else {
-            char L = c.getFitxa().getLletra();
-            if (node.getFill(L) != null) {
-                extendRight(soFar + L, node.getFill(L), anchor, pos + 1, usedLeft, linea, jugades, transposed, rack);
+            Fitxa f = linia.caselles.get(pos).getFitxa();
+            int fill = graf.getFill(node, f.getLletra());
+            if (fill >= 0) {
+                lletresJugada[pos] = f.getLletra();
+                comodiJugada[pos] = false;
+                extendRight(fill, anchor, pos + 1, usedLeft, linia, suma + f.getValor(), mult, creuades, consumidor);
             }
         }
     }
 
     /**
-     * Calcula la puntuació total d'una jugada específica.
-     * Inclou multiplicadors de caselles i puntuació de paraules creuades.
-     * 
-     * @param paraula Paraula a col·locar
-     * @param fila Fila inicial
-     * @param columna Columna inicial
-     * @param transposed True si la paraula és vertical
-     * @return Puntuació total de la jugada
+     * Col·loca una lletra a la posició indicada de la línia, ja sigui la fitxa del tauler o una fitxa del rack,
+     * i n'acumula la puntuació. A una casella buida només es proven les lletres que tenen fill al node del GADDAG
+     * i que permet el cross-check, i un comodí només fa les lletres de les quals no queda cap fitxa.
+     *
+     * @param linia Línia on es genera la jugada
+     * @param ancoratge Posició de l'ancoratge
+     * @param pos Posició actual
+     * @param inici Primera posició de la paraula (només es fa servir un cop passat el separador)
+     * @param node Node actual del GADDAG
+     * @param suma Suma dels valors de les lletres de la paraula, amb els multiplicadors de lletra
+     * @param mult Producte dels multiplicadors de paraula de les caselles noves
+     * @param creuades Puntuació de les paraules creuades formades
+     * @param consumidor Destí de les jugades vàlides
      */
-    private int getPuntuacioJugada(String paraula, int fila, int columna, boolean transposed) {
-        int puntuacio = 0;
-        int puntuacioParaulaCreuada = 0;
-        int multiplicadorParaula = 1;
-        Map<String, Pair<Integer, Integer>> alfabet = diccionari.getAlfabet();
-
-        for (int i = 0; i < paraula.length(); i++) {
-            char lletra = paraula.charAt(i);
-            int f = transposed ? fila + i : fila;
-            int c = transposed ? columna : columna + i;
-            Casella casella = tauler.getCasella(f, c);
-            if (casella == null) continue;
-
-            int valorLletra = alfabet.get(Character.toString(lletra)).second;
-
-            if (!casella.teFitxa()) {
-                String mult = casella.getMultiplicador();
-                switch (mult) {
-                    case "DL" -> valorLletra *= 2;
-                    case "TL" -> valorLletra *= 3;
-                    case "DP" -> multiplicadorParaula *= 2;
-                    case "TP" -> multiplicadorParaula *= 3;
-                    case "C" -> multiplicadorParaula *= 2;
-                }
+    private void gaddagGen(Linia linia, int ancoratge, int pos, int inici, int node, int suma, int mult, int creuades, ConsumidorJugades consumidor) {
+        if (esgotat()) return;
+        if (!linia.buida(pos)) {
+            Fitxa f = linia.caselles.get(pos).getFitxa();
+            comodiJugada[pos] = false;
+            gaddagContinua(linia, ancoratge, pos, f.getLletra(), inici, grafGADDAG.getFill(node, f.getLletra()),
+                    suma + f.getValor(), mult, creuades, consumidor);
+            return;
+        }
 
-                String paraulaCreuada = construirParaulaCreuada(f, c, !transposed, lletra);
-                if (paraulaCreuada.length() > 1 && diccionari.validarParaula(paraulaCreuada)) {
-                    puntuacioParaulaCreuada += calcularPuntuacioPalabra(paraulaCreuada, f, c, transposed);
-                }
+        int creuats = linia.creuats[pos];
+        int ml = linia.multLletra[pos];
+        int mp = linia.multParaula[pos];
+        int vc = linia.valorsCreuats[pos];
+        for (int fills = grafGADDAG.getMascaraFills(node); fills != 0; fills &= fills - 1) {
+            int codiGADDAG = Integer.numberOfTrailingZeros(fills);
+            int codi = codisGADDAG[codiGADDAG];
+            if (codi < 0 || ((creuats >>> codi) & 1) == 0) continue;
+            int fill = grafGADDAG.getFillPerCodi(node, codiGADDAG);
+            char L = graf.getLletra(codi);
+
+            if (atril[codi] > 0) {
+                int valor = valorCodi[codi] * ml;
+                comodiJugada[pos] = false;
+                atril[codi]--;
+                gaddagContinua(linia, ancoratge, pos, L, inici, fill, suma + valor, mult * mp,
+                        vc < 0 ? creuades : creuades + (vc + valor) * mp, consumidor);
+                atril[codi]++;
+            } else if (atril[comodins] > 0) {
+                comodiJugada[pos] = true;
+                atril[comodins]--;
+                gaddagContinua(linia, ancoratge, pos, L, inici, fill, suma, mult * mp,
+                        vc < 0 ? creuades : creuades + vc * mp, consumidor);
+                atril[comodins]++;
             }
-
-            puntuacio += valorLletra;
         }
-
-        puntuacio *= multiplicadorParaula;
-
-        return puntuacio + puntuacioParaulaCreuada;
     }
 
     /**
-     * Calcula la puntuació d'una paraula específica considerant multiplicadors.
-     * 
-     * @param paraula Paraula de la qual calcular la puntuació
-     * @param fila Fila inicial de la paraula
-     * @param columna Columna inicial de la paraula
-     * @param transposed True si la paraula és vertical
-     * @return Puntuació calculada de la paraula
+     * Afegeix la lletra col·locada a la paraula, registra la jugada si és completa i continua el creixement:
+     * cap a l'esquerra mentre no s'hagi passat el separador, i cap a la dreta després.
+     * La paraula es construeix a {@link #lletresJugada}: abans del separador va de {@code pos} a l'ancoratge,
+     * i després, de {@code inici} a {@code pos}.
+     *
+     * @param linia Línia on es genera la jugada
+     * @param ancoratge Posició de l'ancoratge
+     * @param pos Posició de la lletra col·locada
+     * @param L Lletra col·locada
+     * @param inici Primera posició de la paraula (només es fa servir un cop passat el separador)
+     * @param nouNode Node del GADDAG després de llegir la lletra (-1 si no n'hi ha)
+     * @param suma Suma dels valors de les lletres de la paraula, amb els multiplicadors de lletra
+     * @param mult Producte dels multiplicadors de paraula de les caselles noves
+     * @param creuades Puntuació de les paraules creuades formades
+     * @param consumidor Destí de les jugades vàlides
      */
-    private int calcularPuntuacioPalabra(String paraula, int fila, int columna, boolean transposed) {
-        int puntuacio = 0;
-        int multiplicadorParaula = 1;
-        Map<String, Pair<Integer, Integer>> alfabet = diccionari.getAlfabet();
-
-        for (int i = 0; i < paraula.length(); i++) {
-            char lletra = paraula.charAt(i);
-            int f = transposed ? fila + i : fila;
-            int c = transposed ? columna : columna + i;
-            Casella casella = tauler.getCasella(f, c);
-            int valorLletra = alfabet.get(Character.toString(lletra)).second;
-
-            if (!casella.teFitxa()) {
-                String mult = casella.getMultiplicador();
-                switch (mult) {
-                    case "DL" -> valorLletra *= 2;
-                    case "TL" -> valorLletra *= 3;
-                    case "DP" -> multiplicadorParaula *= 2;
-                    case "TP" -> multiplicadorParaula *= 3;
-                }
+    private void gaddagContinua(Linia linia, int ancoratge, int pos, char L, int inici, int nouNode, int suma, int mult, int creuades, ConsumidorJugades consumidor) {
+        if (nouNode < 0) return;
+        int n = linia.caselles.size();
+        lletresJugada[pos] = L;
+
+        if (pos <= ancoratge) {
+            if (grafGADDAG.esFinal(nouNode) && linia.buida(pos - 1) && linia.buida(ancoratge + 1)) {
+                registraJugada(linia, pos, ancoratge + 1, suma * mult + creuades, mult, consumidor);
+            }
+            // Cap a l'esquerra només es poden ocupar caselles que no siguin d'un altre ancoratge
+            if (pos > 0 && (!linia.buida(pos - 1) || !linia.ancoratges[pos - 1])) {
+                gaddagGen(linia, ancoratge, pos - 1, pos - 1, nouNode, suma, mult, creuades, consumidor);
+            }
+            int separador = grafGADDAG.getFill(nouNode, GADDAG.SEPARADOR);
+            if (separador >= 0 && linia.buida(pos - 1) && ancoratge + 1 < n) {
+                gaddagGen(linia, ancoratge, ancoratge + 1, pos, separador, suma, mult, creuades, consumidor);
+            }
+        } else {
+            if (grafGADDAG.esFinal(nouNode) && linia.buida(pos + 1)) {
+                registraJugada(linia, inici, pos + 1, suma * mult + creuades, mult, consumidor);
+            }
+            if (pos + 1 < n) {
+                gaddagGen(linia, ancoratge, pos + 1, inici, nouNode, suma, mult, creuades, consumidor);
             }
-
-            puntuacio += valorLletra;
         }
-
-        return puntuacio * multiplicadorParaula;
     }
 
     /**
-     * Construeix la paraula creuada que passaria per (fila, columna)
-     * si col·loquem 'letra' en aquesta casella, donat que la paraula
-     * principal és horitzontal o vertical.
+     * Retorna els punts que aporta la fitxa real d'una casella nova d'una jugada: el valor de la lletra amb el
+     * multiplicador de lletra, a la paraula principal i, si se'n forma, a la paraula creuada.
      *
-     * @param fila Fila de la casella nova
-     * @param columna Columna de la casella nova
-     * @param horizontal True si la paraula principal és horitzontal
-     * @param letra La lletra que estem provant en aquesta casella
-     * @return La paraula perpendicular formada (incloent 'letra')
+     * @param linia Línia de la jugada
+     * @param pos Posició de la casella
+     * @param mult Producte dels multiplicadors de paraula de les caselles noves
+     * @return Punts que es perden si la lletra es fa amb un comodí
      */
-    private String construirParaulaCreuada(int fila, int columna, boolean horizontal, char letra) {
-        int n = tauler.getMida();
-        int f = fila, c = columna;
-        int dfBack = horizontal ? -1 : 0;
-        int dcBack = horizontal ? 0 : -1;
+    private int aportacio(Linia linia, int pos, int mult) {
+        int valor = valorCodi[graf.getCodi(lletresJugada[pos])] * linia.multLletra[pos];
+        return valor * (mult + (linia.valorsCreuats[pos] < 0 ? 0 : linia.multParaula[pos]));
+    }
 
-        // Retrocede hasta el inicio de la palabra cruzada
-        while (f + dfBack >= 0 && c + dcBack >= 0 && tauler.getCasella(f + dfBack, c + dcBack).teFitxa()) {
-            f += dfBack;
-            c += dcBack;
+    /**
+     * Passa una jugada generada al consumidor. La jugada (paraula, posició i comodins) només es crea
+     * si el consumidor n'admet la puntuació.
+     * <p>
+     * La generació només fa servir un comodí per una lletra quan no en queda cap fitxa a l'atril, de manera
+     * que no genera la mateixa jugada amb el comodí i la fitxa intercanviats. Aquí es tria on va cada comodí:
+     * si la paraula té la mateixa lletra en una altra casella nova on aporta menys punts, el comodí hi passa
+     * i la fitxa real ocupa la casella de més valor.
+     *
+     * @param linia Línia de la jugada
+     * @param inici Posició de la primera lletra a la línia
+     * @param fi Posició següent a l'última lletra
+     * @param puntuacio Puntuació de la jugada amb els comodins on els ha col·locat la generació
+     * @param mult Producte dels multiplicadors de paraula de les caselles noves
+     * @param consumidor Destí de la jugada
+     */
+    private void registraJugada(Linia linia, int inici, int fi, int puntuacio, int mult, ConsumidorJugades consumidor) {
+        int mascaraComodins = 0;
+        for (int i = inici; i < fi; i++) {
+            if (comodiJugada[i]) mascaraComodins |= 1 << (i - inici);
         }
-
-        StringBuilder sb = new StringBuilder();
-        int stepF = horizontal ? 1 : 0;
-        int stepC = horizontal ? 0 : 1;
-        boolean hayVecino = false;
-
-        int ff = f, cc = c;
-        while (ff < n && cc < n && tauler.getCasella(ff, cc).teFitxa()) {
-            if (ff != fila || cc != columna) hayVecino = true;
-            sb.append(tauler.getCasella(ff, cc).getFitxa().getLletra());
-            ff += stepF;
-            cc += stepC;
+        for (int comodinsGenerats = mascaraComodins; comodinsGenerats != 0; comodinsGenerats &= comodinsGenerats - 1) {
+            int i = inici + Integer.numberOfTrailingZeros(comodinsGenerats);
+            int aportacio = aportacio(linia, i, mult);
+            int desti = i, aportacioDesti = aportacio;
+            for (int j = inici; j < fi; j++) {
+                if ((mascaraComodins >> (j - inici) & 1) != 0 || !linia.buida(j) || lletresJugada[j] != lletresJugada[i]) continue;
+                int a = aportacio(linia, j, mult);
+                if (a < aportacioDesti) {
+                    desti = j;
+                    aportacioDesti = a;
+                }
+            }
+            if (desti != i) {
+                mascaraComodins ^= 1 << (i - inici) | 1 << (desti - inici);
+                puntuacio += aportacio - aportacioDesti;
+            }
         }
+        if (!consumidor.admet(puntuacio)) return;
+        int filaInici = linia.transposed ? inici : linia.idx;
+        int columnaInici = linia.transposed ? linia.idx : inici;
+        consumidor.accepta(new Play(new String(lletresJugada, inici, fi - inici), filaInici, columnaInici,
+                linia.transposed, puntuacio, mascaraComodins));
+    }
 
-        // Inserta la letra nueva en su sitio si la casilla está vacía
-        int posNueva = (horizontal ? fila : columna) - (horizontal ? f : c);
-        if (!tauler.getCasella(fila, columna).teFitxa()) {
-            sb.insert(posNueva, letra);
-            hayVecino = hayVecino || sb.length() > 1;
-        }
+    /**
+     * Omple el multiconjunt {@link #atril} amb les fitxes del jugador.
+     * Les còpies per simular no tenen jugador: l'atril el fixa qui les fa servir.
+     */
+    private void carregaAtril() {
+        if (jugador != null) carregaAtril(jugador.getFitxes());
+    }
 
-        // Si solo hay una letra y no tiene vecino, no hay palabra cruzada real
-        return hayVecino ? sb.toString() : "";
+    /**
+     * Omple el multiconjunt {@link #atril} amb unes fitxes.
+     * Les fitxes amb lletres que no són a l'alfabet del diccionari no poden formar cap paraula i no s'hi compten.
+     * 
+     * @param fitxes Fitxes de l'atril
+     */
+    private void carregaAtril(List<Fitxa> fitxes) {
+        Arrays.fill(atril, 0);
+        for (Fitxa f : fitxes) {
+            if (f.esComodin()) {
+                atril[comodins]++;
+            } else {
+                int codi = graf.getCodi(f.getLletra());
+                if (codi >= 0) atril[codi]++;
+            }
+        }
     }
 
     /**
      * Converteix una cadena de text en una llista de fitxes del rack del jugador.
-     * Assigna fitxes del rack per formar la paraula, incloent comodins si cal.
+     * Assigna fitxes del rack per formar la paraula: comodins a les posicions indicades i, a la resta,
+     * fitxes amb la lletra (o un comodí si no n'hi ha cap).
      * 
      * @param paraula Paraula a formar
      * @param fila Fila inicial de col·locació
      * @param columna Columna inicial de col·locació
      * @param horitzontal True si la col·locació és horitzontal
+     * @param comodinsJugada Màscara de les posicions de la paraula que es fan amb un comodí
      * @return Llista de fitxes necessàries per formar la paraula
      */
-    private List<Fitxa> stringToFitxa(String paraula, int fila, int columna, boolean horitzontal) {
+    private List<Fitxa> stringToFitxa(String paraula, int fila, int columna, boolean horitzontal, int comodinsJugada) {
         List<Fitxa> fichasColocar = new ArrayList<>();
         List<Fitxa> atrilDisponible = new ArrayList<>(jugador.getFitxes());
 
@@ -565,7 +1197,7 @@ public class ControladorMaquina {
 
             Fitxa enAtril = null;
             for (Fitxa ftx : atrilDisponible) {
-                if (!ftx.esComodin() && ftx.getLletra() == lletra) {
+                if ((comodinsJugada >> i & 1) == 0 && !ftx.esComodin() && ftx.getLletra() == lletra) {
                     enAtril = ftx;
                     break;
                 }
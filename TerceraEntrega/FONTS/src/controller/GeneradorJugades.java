@@ -0,0 +1,112 @@
+package controller;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import model.*;
+import util.*;
+
+/**
+ * Classe GeneradorJugades.
+ * Genera les jugades possibles d'unes fitxes sobre un tauler amb el motor de la màquina, sense partida ni jugador.
+ * Pensada per analitzar posicions, donar pistes o avaluar moltes posicions seguides.
+ * <p>
+ * No té efectes sobre el tauler ni sobre les fitxes que rep: cada crida treballa sobre una instantània del tauler
+ * ({@link Tauler#instantania()}) amb un controlador i una memòria cau de lletres possibles propis. Com que el
+ * generador no guarda cap estat entre crides, es pot fer servir alhora des de diversos fils, sempre que el tauler
+ * no es modifiqui mentre se'n fa la instantània. El diccionari l'ha de mantenir carregat qui crea el generador.
+ */
+public class GeneradorJugades {
+
+    // ---------- ATRIBUTS ----------
+    /** Diccionari de les jugades */
+    private final Diccionari diccionari;
+    /** Algorisme de generació de jugades */
+    private final ControladorMaquina.Generador generador;
+    /** Indica si cada crida reparteix els ancoratges entre els fils del ForkJoinPool comú */
+    private final boolean paralel;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Crea un generador amb l'algorisme per defecte que reparteix cada crida entre diversos fils.
+     * @param diccionari Diccionari de les jugades.
+     */
+    public GeneradorJugades(Diccionari diccionari) {
+        this(diccionari, ControladorMaquina.Generador.DAWG, true);
+    }
+
+    /**
+     * Crea un generador.
+     * @param diccionari Diccionari de les jugades.
+     * @param generador Algorisme de generació de jugades.
+     * @param paralel Si cada crida reparteix els ancoratges entre diversos fils (millor per a una sola consulta
+     *                ràpida) o els genera al fil que crida (millor per avaluar moltes posicions en paral·lel).
+     */
+    public GeneradorJugades(Diccionari diccionari, ControladorMaquina.Generador generador, boolean paralel) {
+        this.diccionari = diccionari;
+        this.generador = generador;
+        this.paralel = paralel;
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Retorna el diccionari del generador.
+     * @return Diccionari de les jugades.
+     */
+    public Diccionari getDiccionari() {
+        return diccionari;
+    }
+
+    // ---------- MÈTODES ----------
+    /**
+     * Genera totes les jugades possibles de les fitxes sobre el tauler i les passa al consumidor a mesura
+     * que es troben.
+     * @param tauler Tauler de la posició, que no es modifica.
+     * @param fitxes Fitxes de l'atril, que no es modifiquen.
+     * @param consumidor Destí de les jugades (per exemple {@link MillorsJugades} o {@link TotesLesJugades}).
+     */
+    public void generar(Tauler tauler, List<Fitxa> fitxes, ConsumidorJugades consumidor) {
+        generar(tauler, fitxes, consumidor, null);
+    }
+
+    /**
+     * Genera les jugades possibles de les fitxes sobre el tauler fins que es compleix una condició de
+     * cancel·lació. Si es cancel·la, el consumidor només n'ha rebut una part.
+     * @param tauler Tauler de la posició, que no es modifica.
+     * @param fitxes Fitxes de l'atril, que no es modifiquen.
+     * @param consumidor Destí de les jugades.
+     * @param cancellacio Condició que atura la generació, consultada de tant en tant des dels fils que generen
+     *                    (null per no aturar-la mai).
+     */
+    public void generar(Tauler tauler, List<Fitxa> fitxes, ConsumidorJugades consumidor, BooleanSupplier cancellacio) {
+        ControladorMaquina motor = new ControladorMaquina(diccionari, tauler.instantania(), generador);
+        motor.setParalel(paralel);
+        motor.setCancellacio(cancellacio);
+        motor.generarJugades(fitxes, consumidor);
+    }
+
+    /**
+     * Retorna les jugades de més puntuació de les fitxes sobre el tauler.
+     * @param tauler Tauler de la posició, que no es modifica.
+     * @param fitxes Fitxes de l'atril, que no es modifiquen.
+     * @param maxim Nombre màxim de jugades a retornar (com a mínim 1).
+     * @return Les millors jugades, de més a menys puntuació.
+     */
+    public List<Play> millors(Tauler tauler, List<Fitxa> fitxes, int maxim) {
+        return millors(tauler, fitxes, maxim, null);
+    }
+
+    /**
+     * Retorna les jugades de més puntuació de les fitxes sobre el tauler, fins que es compleix una condició
+     * de cancel·lació.
+     * @param tauler Tauler de la posició, que no es modifica.
+     * @param fitxes Fitxes de l'atril, que no es modifiquen.
+     * @param maxim Nombre màxim de jugades a retornar (com a mínim 1).
+     * @param cancellacio Condició que atura la generació (null per no aturar-la mai).
+     * @return Les millors jugades trobades, de més a menys puntuació (no són les millors de totes si s'ha cancel·lat).
+     */
+    public List<Play> millors(Tauler tauler, List<Fitxa> fitxes, int maxim, BooleanSupplier cancellacio) {
+        MillorsJugades millors = new MillorsJugades(maxim);
+        generar(tauler, fitxes, millors, cancellacio);
+        return millors.getJugades();
+    }
+}
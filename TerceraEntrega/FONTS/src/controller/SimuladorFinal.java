@@ -0,0 +1,314 @@
+package controller;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import model.*;
+import util.*;
+
+/**
+ * Classe SimuladorFinal.
+ * Tria la jugada de la màquina quan a la bossa queden poques fitxes, on la jugada de més puntuació pot
+ * obrir el tauler al contrari o fer perdre l'ocasió de tancar la partida.
+ * <p>
+ * Per cada jugada candidata es fan simulacions de Montecarlo: es reparteixen a l'atzar les fitxes que la
+ * màquina no veu (les de la bossa i les dels atrils dels contraris) entre els contraris i la bossa, es fa la
+ * candidata i es juguen uns quants torns més amb la jugada de més puntuació de cada jugador. Al final de cada
+ * simulació es resten a cada jugador els punts de les fitxes que li queden i, si algú ha tancat la partida, se
+ * li sumen els de tots els altres, com al final d'una partida real. Guanya la candidata amb més diferència
+ * mitjana de punts respecte als contraris. Totes les candidates es simulen amb
+ * els mateixos repartiments, de manera que la comparació entre elles no depèn de la sort de cada repartiment.
+ * <p>
+ * Les simulacions es reparteixen entre els fils del {@link ForkJoinPool} comú. Cada fil treballa sobre una còpia
+ * en escriptura del tauler de la partida ({@link Tauler#copiaEnEscriptura()}) que restaura després de cada
+ * simulació, i no en comença cap de nova quan s'acaba el temps.
+ */
+class SimuladorFinal {
+
+    // ---------- CONSTANTS ----------
+    /** Fitxes a la bossa a partir de les quals es simula el final de la partida */
+    static final int FITXES_BOSSA = 7;
+    /** Nombre màxim de jugades candidates que es simulen */
+    static final int CANDIDATES = 8;
+    /** Temps de simulació per torn quan la màquina no té límit de temps, en mil·lisegons */
+    static final long TEMPS_MAXIM = 1000;
+    /** Nombre màxim de repartiments que es simulen per candidata */
+    private static final int MAX_REPARTIMENTS = 64;
+    /** Torns que es juguen després de la jugada candidata */
+    private static final int TORNS = 4;
+
+    // ---------- ATRIBUTS ----------
+    /** Controlador de la màquina que ha generat les candidates */
+    private final ControladorMaquina maquina;
+    /** Tauler de la partida, que no canvia durant la simulació */
+    private final Tauler tauler;
+    /** Graf del diccionari */
+    private final DAWGCompacte graf;
+    /** Posició dels comodins als atrils */
+    private final int comodins;
+    /** Atril de la màquina com a multiconjunt */
+    private final int[] atril;
+    /** Codi de cada fitxa que la màquina no veu (comodins inclosos) */
+    private final int[] noVistes;
+    /** Nombre de fitxes de l'atril de cada contrari */
+    private final int[] midesContraris;
+    /** Instant (System.nanoTime) a partir del qual no es comencen més simulacions */
+    private final long termini;
+    /** Llavor dels repartiments */
+    private final long llavor;
+    /** Simulacions completades */
+    private int simulacions = 0;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Prepara la simulació del torn actual de la màquina.
+     * @param maquina Controlador de la màquina, just després de generar les candidates.
+     * @param termini Instant (System.nanoTime) a partir del qual no es comencen més simulacions.
+     * @param llavor Llavor dels repartiments aleatoris.
+     */
+    SimuladorFinal(ControladorMaquina maquina, long termini, long llavor) {
+        this.maquina = maquina;
+        this.tauler = maquina.partida.getTauler();
+        this.graf = maquina.partida.getDiccionari().getGraf();
+        this.comodins = graf.getNumLletres();
+        this.atril = maquina.getAtril();
+        this.termini = termini;
+        this.llavor = llavor;
+
+        List<Integer> fitxes = new ArrayList<>();
+        for (Fitxa f : maquina.partida.getBossa()) afegirCodi(f, fitxes);
+        List<Integer> mides = new ArrayList<>();
+        for (Jugador j : maquina.partida.getJugadors()) {
+            if (j == maquina.getJugador()) continue;
+            int mida = 0;
+            for (Fitxa f : j.getFitxes()) mida += afegirCodi(f, fitxes);
+            mides.add(mida);
+        }
+        this.noVistes = fitxes.stream().mapToInt(Integer::intValue).toArray();
+        this.midesContraris = mides.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Retorna el nombre de simulacions completades a l'última crida a {@link #tria(List)}.
+     * @return Nombre de simulacions.
+     */
+    int getSimulacions() {
+        return simulacions;
+    }
+
+    // ---------- MÈTODES ----------
+    /**
+     * Simula les candidates fins que s'acaba el temps o s'arriba al màxim de repartiments, i tria la de més
+     * diferència mitjana. Les simulacions s'ordenen per repartiment, de manera que quan s'acaba el temps
+     * totes les candidates n'han fet gairebé les mateixes.
+     * @param candidates Jugades candidates de la màquina, de més a menys preferides.
+     * @return La candidata triada, o null si no s'ha pogut completar cap simulació.
+     */
+    Play tria(List<Play> candidates) {
+        int k = candidates.size();
+        AtomicInteger seguent = new AtomicInteger();
+        int fils = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+        List<Callable<double[]>> tasques = new ArrayList<>();
+        for (int i = 0; i < fils; i++) tasques.add(() -> new Simulacio().simula(candidates, seguent));
+
+        double[] suma = new double[k];
+        int[] mostres = new int[k];
+        try {
+            for (Future<double[]> resultat : ForkJoinPool.commonPool().invokeAll(tasques)) {
+                double[] parcial = resultat.get();
+                for (int c = 0; c < k; c++) {
+                    suma[c] += parcial[2 * c];
+                    mostres[c] += (int) parcial[2 * c + 1];
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error simulant el final de la partida", e.getCause());
+        }
+
+        Play millor = null;
+        double millorMitjana = Double.NEGATIVE_INFINITY;
+        simulacions = 0;
+        for (int c = 0; c < k; c++) {
+            simulacions += mostres[c];
+            if (mostres[c] == 0) continue;
+            double mitjana = suma[c] / mostres[c];
+            if (mitjana > millorMitjana) {
+                millor = candidates.get(c);
+                millorMitjana = mitjana;
+            }
+        }
+        return millor;
+    }
+
+    /**
+     * Afegeix el codi d'una fitxa a una llista. Les fitxes amb lletres que no són a l'alfabet del diccionari
+     * no es poden jugar i no s'hi afegeixen.
+     * @param f Fitxa.
+     * @param codis Llista de codis.
+     * @return 1 si s'ha afegit la fitxa, 0 si no.
+     */
+    private int afegirCodi(Fitxa f, List<Integer> codis) {
+        int codi = f.esComodin() ? comodins : graf.getCodi(f.getLletra());
+        if (codi < 0) return 0;
+        codis.add(codi);
+        return 1;
+    }
+
+    // ---------- CLASSES INTERNES ----------
+    /**
+     * Estat de les simulacions d'un fil: una còpia en escriptura del tauler, un generador de jugades sobre
+     * aquesta còpia i els atrils, la bossa i els punts de la simulació en curs.
+     */
+    private class Simulacio {
+        /** Còpia en escriptura del tauler de la partida */
+        private final Tauler copia = tauler.copiaEnEscriptura();
+        /** Generador de jugades sobre la còpia */
+        private final ControladorMaquina generador = new ControladorMaquina(maquina, copia);
+        /** Atrils de la simulació: el 0 és el de la màquina i els següents els dels contraris */
+        private final int[][] atrils = new int[midesContraris.length + 1][comodins + 1];
+        /** Punts de cada jugador durant la simulació */
+        private final int[] punts = new int[atrils.length];
+        /** Codis de les fitxes de la bossa, en l'ordre en què es roben */
+        private final int[] bossa = new int[noVistes.length];
+        /** Fitxes a la bossa */
+        private int numBossa;
+        /** Posició de la següent fitxa que es roba */
+        private int posBossa;
+
+        /**
+         * Fa simulacions fins que s'acaba el temps o la feina compartida entre els fils.
+         * @param candidates Jugades candidates.
+         * @param seguent Índex de la següent simulació a fer (compartit entre els fils).
+         * @return Per cada candidata, la suma de diferències i el nombre de simulacions.
+         */
+        double[] simula(List<Play> candidates, AtomicInteger seguent) {
+            int k = candidates.size();
+            double[] resultat = new double[2 * k];
+            for (int i = seguent.getAndIncrement(); i < k * MAX_REPARTIMENTS; i = seguent.getAndIncrement()) {
+                if (System.nanoTime() > termini) break;
+                int c = i % k;
+                reparteix(i / k);
+                boolean completa = juga(candidates.get(c));
+                copia.restaurar();
+                if (!completa) break;
+                double contraris = 0;
+                for (int j = 1; j < punts.length; j++) contraris += punts[j];
+                resultat[2 * c] += punts[0] - contraris / Math.max(1, punts.length - 1);
+                resultat[2 * c + 1]++;
+            }
+            return resultat;
+        }
+
+        /**
+         * Reparteix les fitxes no vistes entre els atrils dels contraris i la bossa, sempre igual per al
+         * mateix repartiment, i posa l'atril de la màquina.
+         * @param repartiment Índex del repartiment.
+         */
+        private void reparteix(int repartiment) {
+            Random random = new Random(llavor + repartiment * 0x9E3779B97F4A7C15L);
+            System.arraycopy(noVistes, 0, bossa, 0, noVistes.length);
+            for (int i = bossa.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = bossa[i]; bossa[i] = bossa[j]; bossa[j] = t;
+            }
+            System.arraycopy(atril, 0, atrils[0], 0, atril.length);
+            posBossa = 0;
+            for (int j = 0; j < midesContraris.length; j++) {
+                Arrays.fill(atrils[j + 1], 0);
+                for (int i = 0; i < midesContraris[j]; i++) atrils[j + 1][bossa[posBossa++]]++;
+            }
+            numBossa = bossa.length;
+        }
+
+        /**
+         * Fa la jugada candidata i juga els torns següents amb la jugada de més puntuació de cada jugador,
+         * fins que un jugador es queda sense fitxes amb la bossa buida, ningú no pot jugar o s'arriba al màxim
+         * de torns. Llavors aplica les fitxes que queden als atrils com si la partida s'acabés: qui ha tancat
+         * suma el valor de les fitxes dels altres, i cada jugador resta el de les seves.
+         * @param candidata Jugada de la màquina.
+         * @return True si la simulació s'ha completat abans d'acabar-se el temps.
+         */
+        private boolean juga(Play candidata) {
+            Arrays.fill(punts, 0);
+            aplica(candidata, 0);
+            int actual = 0, passades = 0;
+            for (int torn = 0; torn < TORNS && !haTancat(actual) && passades < atrils.length; torn++) {
+                if (System.nanoTime() > termini) return false;
+                actual = (actual + 1) % atrils.length;
+                MillorsJugades millor = new MillorsJugades(1);
+                generador.generarJugades(atrils[actual], millor);
+                if (millor.getMillor() == null) {
+                    passades++;
+                } else {
+                    passades = 0;
+                    aplica(millor.getMillor(), actual);
+                }
+            }
+            boolean tancada = haTancat(actual);
+            for (int j = 0; j < atrils.length; j++) {
+                int valor = valorAtril(j);
+                punts[j] -= valor;
+                if (tancada) punts[actual] += valor;
+            }
+            return true;
+        }
+
+        /**
+         * Retorna el valor de les fitxes que queden a l'atril d'un jugador (els comodins no valen res).
+         * @param jugador Índex del jugador.
+         * @return Suma dels valors de les fitxes.
+         */
+        private int valorAtril(int jugador) {
+            int valor = 0;
+            for (int codi = 0; codi < comodins; codi++) valor += atrils[jugador][codi] * maquina.getValorCodi(codi);
+            return valor;
+        }
+
+        /**
+         * Indica si un jugador ha tancat la partida: s'ha quedat sense fitxes i la bossa és buida.
+         * @param jugador Índex del jugador.
+         * @return True si la partida s'ha acabat.
+         */
+        private boolean haTancat(int jugador) {
+            if (posBossa < numBossa) return false;
+            for (int n : atrils[jugador]) if (n > 0) return false;
+            return true;
+        }
+
+        /**
+         * Col·loca una jugada a la còpia del tauler, treu les fitxes de l'atril del jugador, li suma els punts
+         * i li fa robar de la bossa.
+         * @param jugada Jugada generada amb l'atril del jugador.
+         * @param jugador Índex del jugador.
+         */
+        private void aplica(Play jugada, int jugador) {
+            String paraula = jugada.getWord();
+            List<Fitxa> fitxes = new ArrayList<>();
+            for (int i = 0; i < paraula.length(); i++) {
+                int fila = jugada.isHorizontal() ? jugada.getFila() : jugada.getFila() + i;
+                int columna = jugada.isHorizontal() ? jugada.getColumna() + i : jugada.getColumna();
+                if (copia.getCasella(fila, columna).teFitxa()) continue;
+                char lletra = paraula.charAt(i);
+                if ((jugada.getComodins() >> i & 1) != 0) {
+                    atrils[jugador][comodins]--;
+                    fitxes.add(new Fitxa(lletra, 0));
+                } else {
+                    int codi = graf.getCodi(lletra);
+                    atrils[jugador][codi]--;
+                    fitxes.add(new Fitxa(lletra, maquina.getValorCodi(codi)));
+                }
+            }
+            copia.confirmar(copia.colocarParaula(fitxes, paraula, jugada.getFila(), jugada.getColumna(),
+                    jugada.isHorizontal()).first);
+            punts[jugador] += jugada.getScore();
+            for (int i = 0; i < fitxes.size() && posBossa < numBossa; i++) atrils[jugador][bossa[posBossa++]]++;
+        }
+    }
+}
@@ -33,6 +33,17 @@ public class Casella implements Serializable {
         this.fitxa = null;
     }
 
+    /**
+     * Constructora de còpia: una casella nova amb la mateixa posició, multiplicador i fitxa.
+     * @param altra Casella a copiar.
+     */
+    public Casella(Casella altra) {
+        this.fila = altra.fila;
+        this.columna = altra.columna;
+        this.multiplicador = altra.multiplicador;
+        this.fitxa = altra.fitxa;
+    }
+
     // ---------- GETTERS ----------
     /**
      * Retorna el número de columna.
@@ -0,0 +1,172 @@
+package model;
+
+/**
+ * Classe CreuatsTauler.
+ * Memòria cau de les lletres que poden anar a cada casella buida del tauler segons les fitxes contigües
+ * en cada direcció (vegeu {@link Diccionari#lletresPossibles(Tauler, int, int, boolean)}), i de la suma
+ * dels valors d'aquestes fitxes, que és la base de la puntuació de la paraula creuada.
+ * <p>
+ * Observa el tauler: quan una casella guanya o perd una fitxa només s'invaliden les caselles buides
+ * que fan de límit de les tirades de fitxes que la toquen, en la fila i en la columna, que són les úniques
+ * on canvia la paraula que es formaria. Les màscares invalidades es tornen a calcular quan es consulten,
+ * de manera que el cost de cada torn és proporcional a l'última jugada i no a la mida del tauler.
+ * <p>
+ * Els canvis fets directament a les caselles (sense passar pel {@link Tauler}) no es detecten;
+ * en aquest cas cal cridar {@link #invalidarTot()}.
+ */
+public class CreuatsTauler implements Tauler.ObservadorTauler {
+
+    // ---------- ATRIBUTS ----------
+    /** Tauler observat */
+    private final Tauler tauler;
+    /** Diccionari amb què es calculen les màscares */
+    private final Diccionari diccionari;
+    /** Mida del tauler */
+    private final int mida;
+    /** Màscares per direcció (0 = paraula de la fila, 1 = paraula de la columna), fila i columna */
+    private final int[][][] mascares;
+    /** Suma dels valors de les fitxes contigües per direcció, fila i columna (-1 si no n'hi ha cap) */
+    private final int[][][] valors;
+    /** Indica si cada màscara (i el seu valor) està calculada i al dia */
+    private final boolean[][][] valides;
+    /** Nombre de màscares calculades des de la creació (per mesurar l'efecte de la memòria cau) */
+    private long numCalculs = 0;
+
+    // ---------- CONSTRUCTORES ----------
+    /**
+     * Crea la memòria cau d'un tauler i la registra com a observadora. Inicialment totes les màscares estan
+     * per calcular.
+     * @param tauler Tauler de joc.
+     * @param diccionari Diccionari de la partida.
+     */
+    public CreuatsTauler(Tauler tauler, Diccionari diccionari) {
+        this.tauler = tauler;
+        this.diccionari = diccionari;
+        this.mida = tauler.getMida();
+        this.mascares = new int[2][mida][mida];
+        this.valors = new int[2][mida][mida];
+        this.valides = new boolean[2][mida][mida];
+        tauler.afegirObservador(this);
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Retorna les lletres que poden anar a una casella buida formant paraula amb les fitxes contigües
+     * en una direcció. Si no n'hi ha cap de contigua, són les lletres que formen una paraula d'una lletra.
+     * @param fila Fila de la casella.
+     * @param columna Columna de la casella.
+     * @param horitzontal true per la paraula de la fila, false per la de la columna.
+     * @return Màscara de codis de lletra del graf del diccionari.
+     */
+    public int getLletresPossibles(int fila, int columna, boolean horitzontal) {
+        int d = horitzontal ? 0 : 1;
+        if (!valides[d][fila][columna]) calcular(fila, columna, d);
+        return mascares[d][fila][columna];
+    }
+
+    /**
+     * Retorna la suma dels valors de les fitxes contigües a una casella buida en una direcció, és a dir,
+     * la puntuació de la paraula que s'hi formaria sense comptar la lletra de la casella ni els multiplicadors.
+     * @param fila Fila de la casella.
+     * @param columna Columna de la casella.
+     * @param horitzontal true per la paraula de la fila, false per la de la columna.
+     * @return Suma dels valors, o -1 si no hi ha cap fitxa contigua (no es forma cap paraula).
+     */
+    public int getValorCreuat(int fila, int columna, boolean horitzontal) {
+        int d = horitzontal ? 0 : 1;
+        if (!valides[d][fila][columna]) calcular(fila, columna, d);
+        return valors[d][fila][columna];
+    }
+
+    /**
+     * Retorna el diccionari amb què es calculen les màscares.
+     * @return Diccionari.
+     */
+    public Diccionari getDiccionari() {
+        return diccionari;
+    }
+
+    /**
+     * Retorna el nombre de màscares calculades (no servides de la memòria cau) des de la creació.
+     * @return Nombre de càlculs.
+     */
+    public long getNumCalculs() {
+        return numCalculs;
+    }
+
+    // ---------- MÈTODES PÚBLICS ----------
+    /**
+     * Invalida les màscares afectades pel canvi d'una casella: la mateixa casella i, en cada direcció,
+     * les primeres caselles buides a banda i banda de la tirada de fitxes que la conté.
+     * @param fila Fila de la casella canviada.
+     * @param columna Columna de la casella canviada.
+     */
+    @Override
+    public void casellaCanviada(int fila, int columna) {
+        valides[0][fila][columna] = false;
+        valides[1][fila][columna] = false;
+        invalidarExtrem(fila, columna, 0, -1, 0);
+        invalidarExtrem(fila, columna, 0, 1, 0);
+        invalidarExtrem(fila, columna, -1, 0, 1);
+        invalidarExtrem(fila, columna, 1, 0, 1);
+    }
+
+    /**
+     * Invalida totes les màscares.
+     */
+    public void invalidarTot() {
+        for (boolean[][] direccio : valides) {
+            for (boolean[] fila : direccio) java.util.Arrays.fill(fila, false);
+        }
+    }
+
+    /**
+     * Deixa d'observar el tauler.
+     */
+    public void desconnectar() {
+        tauler.eliminarObservador(this);
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Calcula la màscara i el valor de les fitxes contigües d'una casella en una direcció.
+     * @param fila Fila de la casella.
+     * @param columna Columna de la casella.
+     * @param direccio Direcció (0 = fila, 1 = columna).
+     */
+    private void calcular(int fila, int columna, int direccio) {
+        mascares[direccio][fila][columna] = diccionari.lletresPossibles(tauler, fila, columna, direccio == 0);
+        int df = direccio == 0 ? 0 : 1, dc = direccio == 0 ? 1 : 0;
+        int suma = 0;
+        boolean teVeines = false;
+        for (int sentit = -1; sentit <= 1; sentit += 2) {
+            int f = fila + sentit * df, c = columna + sentit * dc;
+            while (f >= 0 && f < mida && c >= 0 && c < mida && tauler.getCasella(f, c).teFitxa()) {
+                suma += tauler.getCasella(f, c).getFitxa().getValor();
+                teVeines = true;
+                f += sentit * df;
+                c += sentit * dc;
+            }
+        }
+        valors[direccio][fila][columna] = teVeines ? suma : -1;
+        valides[direccio][fila][columna] = true;
+        numCalculs++;
+    }
+
+    /**
+     * Avança des d'una casella per les fitxes contigües en un sentit i invalida la primera casella buida.
+     * @param fila Fila d'inici.
+     * @param columna Columna d'inici.
+     * @param df Increment de fila.
+     * @param dc Increment de columna.
+     * @param direccio Direcció de la màscara a invalidar (0 = fila, 1 = columna).
+     */
+    private void invalidarExtrem(int fila, int columna, int df, int dc, int direccio) {
+        int f = fila + df, c = columna + dc;
+        while (f >= 0 && f < mida && c >= 0 && c < mida && tauler.getCasella(f, c).teFitxa()) {
+            f += df;
+            c += dc;
+        }
+        if (f >= 0 && f < mida && c >= 0 && c < mida) valides[direccio][f][c] = false;
+    }
+}
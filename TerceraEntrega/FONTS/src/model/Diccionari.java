@@ -2,28 +2,40 @@ package model;
 
 import util.Pair;
 import java.util.*;
-import util.Node;
+import java.util.concurrent.ForkJoinPool;
+import util.ConstructorDAWG;
+import util.DAWGCompacte;
+import util.GADDAG;
+import util.ValorsResta;
 import java.io.Serializable;
 
 /**
  * Classe Diccionari.java
  * Conté tots els mots d'un diccionari d'Scrabble.
  * Implementat fent servir un DAWG (Directed Acyclic Word Graph) construït a partir d'una llista de paraules ordenades.
+ * El DAWG es construeix i es minimitza amb un {@link ConstructorDAWG} i es guarda congelat en un {@link DAWGCompacte}.
+ * Un cop creat, el diccionari és immutable i es pot compartir entre fils i partides (vegeu {@link RegistreDiccionaris}).
  * @author Pau Serrano Sanz | pau.serrano.sanz@estudiantat.upc.edu
  */
 public class Diccionari implements Serializable {
 
+        // ---------- CONSTANTS ----------
+    /** Nombre mínim de paraules a partir del qual el DAWG es construeix en paral·lel */
+    private static final int MIDA_MINIMA_PARALLEL = 50_000;
+    /** Nombre de lletres inicials que defineixen cada partició de la construcció en paral·lel */
+    private static final int LONGITUD_CLAU_PARALLEL = 2;
+
         // ---------- ATRIBUTS ----------
     /** Nom de l'idioma del diccionari (per exemple: "catalan", "castellano", "english") */
-    private String idioma;
+    private final String idioma;
     /** Mapa de l'alfabet amb cada lletra i la seva quantitat i puntuació: lletra -> (quantitat, puntuació) */
-    private Map<String, Pair<Integer, Integer>> alfabet;
-    /** Node arrel del DAWG (Directed Acyclic Word Graph) utilitzat per emmagatzemar les paraules */
-    private Node arrel;
-    /** Registre de nodes compartits per optimitzar l'estructura del DAWG */
-    private Map<Node, Node> registre;
-    /** Última paraula afegida al diccionari, utilitzada per mantenir l'ordre lexicogràfic */
-    private String ultimaParaulaAfegida;
+    private final Map<String, Pair<Integer, Integer>> alfabet;
+    /** DAWG congelat en format compacte, utilitzat per a totes les consultes */
+    private final DAWGCompacte graf;
+    /** Índex GADDAG per a la generació de jugades, construït només si algú el demana */
+    private transient volatile GADDAG gaddag;
+    /** Taula de valors de les fitxes que queden a l'atril, si n'hi ha una de generada per l'idioma */
+    private final transient ValorsResta valorsResta;
 
         // ---------- CONSTRUCTORES ----------
     /**
@@ -34,11 +46,37 @@ public class Diccionari implements Serializable {
      */
     public Diccionari(String idioma, List<String> paraulesOrdenades, Map<String, Pair<Integer, Integer>> alfabet) {
         this.idioma = idioma;
-        this.arrel = new Node();
-        this.registre = new HashMap<>();
-        this.ultimaParaulaAfegida = "";
         this.alfabet = alfabet;
-        construirDAWG(paraulesOrdenades);
+        this.graf = construirDAWG(paraulesOrdenades);
+        this.valorsResta = null;
+    }
+
+    /**
+     * Constructora a partir d'un DAWG compacte ja construït (per exemple, obert des d'una imatge binària).
+     * @param idioma Nom de l'idioma del diccionari.
+     * @param graf DAWG compacte amb les paraules del diccionari.
+     * @param alfabet Mapa de lletres amb la seva quantitat i puntuació.
+     */
+    public Diccionari(String idioma, DAWGCompacte graf, Map<String, Pair<Integer, Integer>> alfabet) {
+        this(idioma, graf, alfabet, null);
+    }
+
+    /**
+     * Constructora a partir d'un DAWG compacte ja construït i de la taula de valors de resta de l'idioma.
+     * @param idioma Nom de l'idioma del diccionari.
+     * @param graf DAWG compacte amb les paraules del diccionari.
+     * @param alfabet Mapa de lletres amb la seva quantitat i puntuació.
+     * @param valorsResta Taula de valors compatible amb el graf, o null si l'idioma no en té.
+     * @throws IllegalArgumentException si la taula no correspon a les lletres del graf.
+     */
+    public Diccionari(String idioma, DAWGCompacte graf, Map<String, Pair<Integer, Integer>> alfabet, ValorsResta valorsResta) {
+        if (valorsResta != null && !valorsResta.esCompatible(graf)) {
+            throw new IllegalArgumentException("La taula de valors de resta no correspon a l'alfabet del diccionari");
+        }
+        this.idioma = idioma;
+        this.alfabet = alfabet;
+        this.graf = graf;
+        this.valorsResta = valorsResta;
     }
 
     // ---------- GETTERS ----------
@@ -52,11 +90,46 @@ public class Diccionari implements Serializable {
     }
 
     /**
-     * Retorna el node arrel del DAWG utilitzat pel diccionari.
-     * @return El node arrel del graf acíclic de paraules.
+     * Retorna el DAWG compacte utilitzat pel diccionari.
+     * @return El graf acíclic de paraules congelat.
      */
-    public Node getArrel() {
-        return arrel;
+    public DAWGCompacte getGraf() {
+        return graf;
+    }
+
+    /**
+     * Retorna l'índex GADDAG del diccionari, construint-lo la primera vegada que es demana.
+     * Com que el diccionari és immutable, el GADDAG es comparteix entre totes les partides que el fan servir.
+     * @return GADDAG amb les mateixes paraules que el DAWG.
+     */
+    public GADDAG getGADDAG() {
+        GADDAG resultat = gaddag;
+        if (resultat == null) {
+            synchronized (this) {
+                resultat = gaddag;
+                if (resultat == null) {
+                    resultat = GADDAG.construir(getParaules());
+                    gaddag = resultat;
+                }
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Indica si el GADDAG del diccionari ja s'ha construït.
+     * @return Cert si el GADDAG està en memòria.
+     */
+    public boolean teGADDAG() {
+        return gaddag != null;
+    }
+
+    /**
+     * Retorna la taula de valors de les fitxes que queden a l'atril després d'una jugada.
+     * @return Taula de valors, o null si l'idioma no en té.
+     */
+    public ValorsResta getValorsResta() {
+        return valorsResta;
     }
 
     /**
@@ -73,10 +146,21 @@ public class Diccionari implements Serializable {
      */
     public List<String> getParaules() {
         List<String> resultat = new ArrayList<>();
-        recorre(arrel, "", resultat);
+        graf.recorre(resultat);
         return resultat;
     }
 
+    /**
+     * Retorna una estimació de la memòria que ocupa el diccionari.
+     * @return Bytes ocupats pel graf, el GADDAG (si s'ha construït), la taula de valors de resta i l'alfabet.
+     */
+    public long getMidaBytes() {
+        GADDAG g = gaddag;
+        return graf.getMidaBytes() + (g == null ? 0 : g.getGraf().getMidaBytes())
+                + (valorsResta == null ? 0 : valorsResta.getMidaBytes())
+                + 64L * alfabet.size();
+    }
+
     /**
      * Retorna el nom del diccionari (idioma).
      * @return Idioma del diccionari.
@@ -102,113 +186,200 @@ public class Diccionari implements Serializable {
 
     /**
      * Comprova si una paraula existeix al diccionari.
-     * @param paraula Paraula a validar.
+     * Recorre el graf directament sobre la seqüència, sense copiar-la ni crear cap String.
+     * @param paraula Paraula a validar (String, StringBuilder o qualsevol seqüència de caràcters).
      * @return true si la paraula existeix, false altrament.
      */
-    public boolean validarParaula(String paraula) {
-        Node node = arrel;
-        for (char c : paraula.toCharArray()) {
-            node = node.getFill(c);
-            if (node == null) return false;
+    public boolean validarParaula(CharSequence paraula) {
+        int node = graf.getArrel();
+        for (int i = 0; i < paraula.length(); i++) {
+            node = graf.getFill(node, paraula.charAt(i));
+            if (node < 0) return false;
         }
-        return node.isFinalDeParaula();
+        return graf.esFinal(node);
     }
 
-    // ---------- MODIFICADORS ----------
     /**
-     * Afegeix una nova paraula al diccionari. Ha d'estar en ordre lexicogràfic.
-     * @param paraula Paraula nova a afegir.
-     * @throws IllegalArgumentException si la paraula està desordenada.
+     * Comprova si un fragment d'un vector de caràcters és una paraula del diccionari.
+     * @param lletres Vector amb les lletres.
+     * @param inici Posició de la primera lletra (inclosa).
+     * @param fi Posició final (exclosa).
+     * @return true si la paraula lletres[inici..fi) existeix, false altrament.
      */
-    public void afegirParaula(String paraula) {
-        if (validarParaula(paraula)) return;
-        // La paraula ja hi és, no cal fer res
-
-        if (!ultimaParaulaAfegida.isEmpty() && paraula.compareTo(ultimaParaulaAfegida) < 0) {
-            throw new IllegalArgumentException("Les paraules han d'estar ordenades alfabèticament.");
+    public boolean validarParaula(char[] lletres, int inici, int fi) {
+        int node = graf.getArrel();
+        for (int i = inici; i < fi; i++) {
+            node = graf.getFill(node, lletres[i]);
+            if (node < 0) return false;
         }
+        return graf.esFinal(node);
+    }
 
-        afegirParaulaIncremental(paraula);
+    /**
+     * Comprova si les lletres d'una tirada de caselles del tauler formen una paraula del diccionari.
+     * Totes les caselles han de tenir fitxa.
+     * @param tauler Tauler de joc.
+     * @param fila Fila de la primera casella.
+     * @param columna Columna de la primera casella.
+     * @param horitzontal true si la tirada avança per columnes, false si avança per files.
+     * @param longitud Nombre de caselles de la tirada.
+     * @return true si la paraula existeix, false altrament (o si alguna casella és buida).
+     */
+    public boolean validarParaula(Tauler tauler, int fila, int columna, boolean horitzontal, int longitud) {
+        return validarParaula(tauler, fila, columna, horitzontal, longitud, '\0');
     }
 
-    // ---------- MÈTODES PRIVATS ----------
     /**
-     * Construeix el DAWG a partir d'una llista de paraules ordenades.
-     * @param paraulesOrdenades Llista de paraules ordenades.
+     * Comprova si una tirada de caselles del tauler forma una paraula del diccionari, llegint les caselles
+     * buides com si tinguessin una lletra concreta. Serveix per provar una lletra en una casella buida
+     * sense col·locar-hi cap fitxa.
+     * @param tauler Tauler de joc.
+     * @param fila Fila de la primera casella.
+     * @param columna Columna de la primera casella.
+     * @param horitzontal true si la tirada avança per columnes, false si avança per files.
+     * @param longitud Nombre de caselles de la tirada.
+     * @param lletraBuida Lletra que es llegeix a les caselles buides ('\0' si no n'hi pot haver cap).
+     * @return true si la paraula existeix, false altrament.
      */
-    private void construirDAWG(List<String> paraulesOrdenades) {
-        for (String paraula : paraulesOrdenades) {
-            afegirParaulaIncremental(paraula);
+    public boolean validarParaula(Tauler tauler, int fila, int columna, boolean horitzontal, int longitud, char lletraBuida) {
+        int node = graf.getArrel();
+        for (int i = 0; i < longitud; i++) {
+            Casella casella = horitzontal ? tauler.getCasella(fila, columna + i) : tauler.getCasella(fila + i, columna);
+            if (casella == null) return false;
+            char lletra = casella.teFitxa() ? casella.getFitxa().getLletra() : lletraBuida;
+            node = graf.getFill(node, lletra);
+            if (node < 0) return false;
         }
-        reemplaçarORegistrar(arrel);
+        return graf.esFinal(node);
     }
 
     /**
-     * Afegeix una paraula de manera incremental al DAWG.
-     * @param paraula Paraula a afegir.
+     * Retorna les lletres que poden omplir el forat entre un prefix i un sufix formant una paraula del diccionari.
+     * El prefix es recorre una sola vegada; després, per cada fill del node on acaba, es comprova si el sufix
+     * s'hi pot completar.
+     * @param prefix Lletres abans del forat (pot ser buit).
+     * @param sufix Lletres després del forat (pot ser buit).
+     * @return Màscara de codis de lletra del graf (bit i = la lletra amb codi i és possible; per l'A-Z, el codi és L - 'A').
      */
-    private void afegirParaulaIncremental(String paraula) {
-        int prefixComu = prefixComu(paraula, ultimaParaulaAfegida);
-        Node nodeActual = arrel;
-
-        for (int i = 0; i < prefixComu; i++) {
-            nodeActual = nodeActual.getFill(paraula.charAt(i));
+    public int lletresPossibles(CharSequence prefix, CharSequence sufix) {
+        int node = graf.getArrel();
+        for (int i = 0; i < prefix.length() && node >= 0; i++) {
+            node = graf.getFill(node, prefix.charAt(i));
         }
+        if (node < 0) return 0;
 
-        reemplaçarORegistrar(nodeActual);
-
-        for (int i = prefixComu; i < paraula.length(); i++) {
-            Node nou = new Node();
-            nodeActual.afegirFill(paraula.charAt(i), nou);
-            nodeActual = nou;
+        int resultat = 0;
+        int fills = graf.getMascaraFills(node);
+        while (fills != 0) {
+            int codi = Integer.numberOfTrailingZeros(fills);
+            fills &= fills - 1;
+            int actual = graf.getFillPerCodi(node, codi);
+            for (int i = 0; i < sufix.length() && actual >= 0; i++) {
+                actual = graf.getFill(actual, sufix.charAt(i));
+            }
+            if (actual >= 0 && graf.esFinal(actual)) resultat |= 1 << codi;
         }
-
-        nodeActual.setFinalDeParaula(true);
-        ultimaParaulaAfegida = paraula;
+        return resultat;
     }
 
     /**
-     * Registra un node al DAWG o el reemplaça per un node ja existent equivalent.
-     * @param node Node a processar.
+     * Retorna les lletres que poden omplir una casella buida del tauler formant una paraula amb les fitxes
+     * contigües en una direcció. Equival a {@link #lletresPossibles(CharSequence, CharSequence)} amb les fitxes
+     * d'abans i de després de la casella, però llegint-les directament del tauler.
+     * @param tauler Tauler de joc.
+     * @param fila Fila de la casella buida.
+     * @param columna Columna de la casella buida.
+     * @param horitzontal true per la paraula de la fila, false per la de la columna.
+     * @return Màscara de codis de lletra del graf.
      */
-    private void reemplaçarORegistrar(Node node) {
-        for (Map.Entry<Character, Node> entrada : node.getFills().entrySet()) {
-            reemplaçarORegistrar(entrada.getValue());
+    public int lletresPossibles(Tauler tauler, int fila, int columna, boolean horitzontal) {
+        int df = horitzontal ? 0 : 1;
+        int dc = horitzontal ? 1 : 0;
+        int inici = 0;
+        while (ocupada(tauler, fila - (inici + 1) * df, columna - (inici + 1) * dc)) inici++;
+
+        int node = graf.getArrel();
+        for (int i = inici; i > 0 && node >= 0; i--) {
+            node = graf.getFill(node, tauler.getCasella(fila - i * df, columna - i * dc).getFitxa().getLletra());
         }
+        if (node < 0) return 0;
 
-        for (Map.Entry<Character, Node> entrada : node.getFills().entrySet()) {
-            Node fill = entrada.getValue();
-            Node existent = registre.get(fill);
-            if (existent != null) {
-                entrada.setValue(existent);
-            } else {
-                registre.put(fill, fill);
+        int resultat = 0;
+        int fills = graf.getMascaraFills(node);
+        while (fills != 0) {
+            int codi = Integer.numberOfTrailingZeros(fills);
+            fills &= fills - 1;
+            int actual = graf.getFillPerCodi(node, codi);
+            for (int i = 1; actual >= 0 && ocupada(tauler, fila + i * df, columna + i * dc); i++) {
+                actual = graf.getFill(actual, tauler.getCasella(fila + i * df, columna + i * dc).getFitxa().getLletra());
             }
+            if (actual >= 0 && graf.esFinal(actual)) resultat |= 1 << codi;
         }
+        return resultat;
     }
 
+    // ---------- MODIFICADORS ----------
+    /**
+     * Retorna un diccionari nou amb una paraula afegida. El diccionari actual no es modifica,
+     * ja que pot estar compartit entre diverses partides.
+     * @param paraula Paraula nova a afegir.
+     * @return Un diccionari amb la paraula, o aquest mateix si ja la conté.
+     */
+    public Diccionari ambParaula(String paraula) {
+        if (validarParaula(paraula)) return this;
+        // La paraula ja hi és, no cal fer res
+
+        DAWGCompacte nouGraf = ConstructorDAWG.unir(graf, Collections.singletonList(paraula));
+        // La taula de valors de resta no depèn de les paraules, es conserva si encara és compatible
+        ValorsResta taula = valorsResta != null && valorsResta.esCompatible(nouGraf) ? valorsResta : null;
+        return new Diccionari(idioma, nouGraf, alfabet, taula);
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
     /**
-     * Recorre el DAWG i afegeix paraules completes a una llista de resultats.
-     * @param node Node actual.
-     * @param prefix Prefix actual construït.
-     * @param resultat Llista on s'afegeixen les paraules trobades.
+     * Indica si una posició és dins del tauler i té fitxa.
+     * @param tauler Tauler de joc.
+     * @param fila Fila.
+     * @param columna Columna.
+     * @return Cert si la casella existeix i està ocupada.
      */
-    private void recorre(Node node, String prefix, List<String> resultat) {
-        if (node.isFinalDeParaula()) resultat.add(prefix);
-        for (Map.Entry<Character, Node> entrada : node.getFills().entrySet()) {
-            recorre(entrada.getValue(), prefix + entrada.getKey(), resultat);
+    private static boolean ocupada(Tauler tauler, int fila, int columna) {
+        Casella casella = tauler.getCasella(fila, columna);
+        return casella != null && casella.teFitxa();
+    }
+
+    /**
+     * Construeix el DAWG mínim a partir d'una llista de paraules i el congela en format compacte.
+     * Si la llista no està ordenada (per exemple, perquè la conversió de dígrafs ha alterat l'ordre),
+     * es construeix a partir d'una còpia ordenada. Les llistes grans es construeixen en paral·lel
+     * per particions de les primeres lletres quan hi ha més d'un processador disponible.
+     * @param paraulesOrdenades Llista de paraules ordenades.
+     * @return El DAWG compacte.
+     */
+    private static DAWGCompacte construirDAWG(List<String> paraulesOrdenades) {
+        List<String> paraules = estaOrdenada(paraulesOrdenades) ? paraulesOrdenades : new ArrayList<>(new TreeSet<>(paraulesOrdenades));
+
+        if (paraules.size() >= MIDA_MINIMA_PARALLEL && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return ConstructorDAWG.construirEnParallel(paraules, LONGITUD_CLAU_PARALLEL, ForkJoinPool.commonPool());
         }
+        ConstructorDAWG constructor = new ConstructorDAWG();
+        for (String paraula : paraules) {
+            constructor.afegirParaula(paraula);
+        }
+        return constructor.construir();
     }
 
     /**
-     * Calcula la longitud del prefix comú entre dues cadenes.
-     * @param a Primera cadena.
-     * @param b Segona cadena.
-     * @return Nombre de caràcters iguals des de l'inici.
+     * Comprova si una llista de paraules està en ordre lexicogràfic (admet repeticions).
+     * @param paraules Llista de paraules.
+     * @return Cert si cada paraula és igual o posterior a l'anterior.
      */
-    private int prefixComu(String a, String b) {
-        int i = 0;
-        while (i < a.length() && i < b.length() && a.charAt(i) == b.charAt(i)) i++;
-        return i;
+    private static boolean estaOrdenada(List<String> paraules) {
+        String anterior = "";
+        for (String paraula : paraules) {
+            if (paraula.compareTo(anterior) < 0) return false;
+            anterior = paraula;
+        }
+        return true;
     }
 }
@@ -19,8 +19,14 @@ public class Partida implements Serializable {
     private List<Jugador> jugadors;
     /** Tauler de joc on es col·loquen les fitxes */
     private Tauler tauler;
-    /** Diccionari utilitzat per validar les paraules */
-    private Diccionari diccionari;
+    /** Memòria cau de les lletres possibles a cada casella, mantinguda pels canvis del tauler (no es guarda) */
+    private transient CreuatsTauler creuats;
+    /** Diccionari utilitzat per validar les paraules (no es guarda amb la partida, s'obté del registre) */
+    private transient Diccionari diccionari;
+    /** Idioma del diccionari, que és el que es guarda per recuperar-lo del registre */
+    private String idiomaDiccionari;
+    /** Indica si la partida ha obtingut ella mateixa el diccionari del registre i l'ha d'alliberar */
+    private transient boolean diccionariDelRegistre;
     /** Bossa de fitxes disponibles per repartir */
     private List<Fitxa> bossa;
     /** Estat de la partida: "enCurs", "pausada", "finalitzada" */
@@ -53,6 +59,7 @@ public class Partida implements Serializable {
         this.jugadors = jugadors;
         this.tauler = tauler;
         this.diccionari = diccionari;
+        this.idiomaDiccionari = diccionari.getIdioma();
         this.estat = "enCurs";
         this.tornActual = 0;
         this.contrarellotge = contrarellotge;
@@ -85,9 +92,22 @@ public class Partida implements Serializable {
      * @return Diccionari.
      */
     public Diccionari getDiccionari() {
+        if (diccionari == null && idiomaDiccionari != null) {
+            // Partida carregada des de fitxer: es recupera el diccionari compartit
+            diccionari = RegistreDiccionaris.getInstance().obtenir(idiomaDiccionari);
+            diccionariDelRegistre = true;
+        }
         return diccionari;
     }
 
+    /**
+     * Retorna l'idioma del diccionari de la partida, sense haver de carregar el diccionari.
+     * @return Idioma del diccionari.
+     */
+    public String getIdiomaDiccionari() {
+        return idiomaDiccionari;
+    }
+
     /**
      * Retorna la dificultat de la partida.
      * @return Dificultat.
@@ -173,6 +193,21 @@ public class Partida implements Serializable {
         return tauler;
     }
 
+    /**
+     * Retorna la memòria cau de lletres possibles per casella del tauler de la partida.
+     * Es crea la primera vegada que es demana (o si ha canviat el diccionari) i a partir d'aquí
+     * s'actualitza sola amb les jugades col·locades i desfetes al tauler.
+     * @return Memòria cau de paraules creuades.
+     */
+    public CreuatsTauler getCreuats() {
+        Diccionari d = getDiccionari();
+        if (creuats == null || creuats.getDiccionari() != d) {
+            if (creuats != null) creuats.desconnectar();
+            creuats = new CreuatsTauler(tauler, d);
+        }
+        return creuats;
+    }
+
     /**
      * Retorna el temps restant del temporitzador en format llegible.
      * @return Temps restant com a String.
@@ -229,7 +264,9 @@ public class Partida implements Serializable {
      * @param diccionari Diccionari a assignar.
      */
     public void setDiccionari(Diccionari diccionari) {
+        alliberarDiccionari();
         this.diccionari = diccionari;
+        this.idiomaDiccionari = diccionari.getIdioma();
     }
 
     /**
@@ -241,13 +278,25 @@ public class Partida implements Serializable {
     }
 
     // ---------- MÈTODES PÚBLICS ----------
+    /**
+     * Allibera el diccionari si la partida l'havia obtingut del registre en carregar-se des de fitxer.
+     * S'ha de cridar quan la partida es descarta.
+     */
+    public void alliberarDiccionari() {
+        if (diccionariDelRegistre && diccionari != null) {
+            RegistreDiccionaris.getInstance().alliberar(diccionari);
+            diccionari = null;
+            diccionariDelRegistre = false;
+        }
+    }
+
     /**
      * Inicialitza la bossa de fitxes amb les lletres i puntuacions indicades a l'alfabet del diccionari.
      * Omple i barreja aleatòriament la llista de fitxes.
      */
     public void inicialitzarBossa() {
         bossa = new ArrayList<>();
-        Map<String, Pair<Integer, Integer>> alfabet = diccionari.getAlfabet();
+        Map<String, Pair<Integer, Integer>> alfabet = getDiccionari().getAlfabet();
 
         for (Map.Entry<String, Pair<Integer, Integer>> entrada : alfabet.entrySet()) {
             String lletra = entrada.getKey();
@@ -515,7 +564,7 @@ public class Partida implements Serializable {
             String motPrincipal = tauler.construirParaula(
                     filaIni, colIni, horitz, coords, fitxesNoves);
 
-            String motPrincipalConvertit = DigrafMapper.desferConversioParaula(motPrincipal, diccionari.getIdioma());
+            String motPrincipalConvertit = DigrafMapper.desferConversioParaula(motPrincipal, getDiccionari().getIdioma());
             //System.out.println("DEBUG: motPrincipal = " + motPrincipalConvertit);
 
             Pair<List<Pair<Integer,Integer>>,Integer> res =
@@ -543,8 +592,8 @@ public class Partida implements Serializable {
                     }
                     //else System.out.println("DEBUG: Paraula amb comodí vàlida: " + w);
                 } else {
-                    if (!diccionari.validarParaula(w)) {
-                        String wConvertit = DigrafMapper.desferConversioParaula(w, diccionari.getIdioma());
+                    if (!getDiccionari().validarParaula(w)) {
+                        String wConvertit = DigrafMapper.desferConversioParaula(w, getDiccionari().getIdioma());
                         throw new JugadaInvalidaException("«" + wConvertit + "» no és al diccionari");
                     }
                 }
@@ -565,7 +614,7 @@ public class Partida implements Serializable {
                 ex.printStackTrace();
             }
             
-            String motPrincipalConv = DigrafMapper.desferConversioParaula(motPrincipal, diccionari.getIdioma());
+            String motPrincipalConv = DigrafMapper.desferConversioParaula(motPrincipal, getDiccionari().getIdioma());
             afegirjugadaRealitzada(motPrincipalConv, puntsMov);
             primeraJugada = false;
             
@@ -651,9 +700,13 @@ public class Partida implements Serializable {
      * @return true si alguna substitució és vàlida, false altrament.
      */
     private boolean validarPalabraConComodin(String paraula) {
+        // Es reutilitza el mateix vector per a totes les substitucions en lloc de crear una paraula nova per lletra
+        char[] possible = paraula.toCharArray();
         for (char c = 'A'; c <= 'Z'; c++) {
-            String possible = paraula.replace('#', c);
-            if (diccionari.validarParaula(possible)) {
+            for (int i = 0; i < possible.length; i++) {
+                if (paraula.charAt(i) == '#') possible[i] = c;
+            }
+            if (getDiccionari().validarParaula(possible, 0, possible.length)) {
                 return true;
             }
         }
@@ -0,0 +1,300 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Classe RegistreDiccionaris.
+ * Registre únic per tot el procés dels diccionaris carregats, compartits entre partides i controladors.
+ * <p>
+ * Cada entrada s'identifica per l'idioma i la signatura del fitxer de paraules, de manera que si el fitxer canvia
+ * es carrega una versió nova sense afectar les partides que encara fan servir l'anterior. Els diccionaris es
+ * carreguen la primera vegada que es demanen (un sol cop encara que es demanin des de diversos fils), i es
+ * compten les referències: cada {@link #obtenir(String)} s'ha de correspondre amb un {@link #alliberar(Diccionari)}.
+ * Els diccionaris sense referències es queden en memòria com a memòria cau i s'eliminen per ordre d'ús
+ * (LRU) quan la mida total supera el pressupost configurat.
+ * <p>
+ * El registre no sap llegir fitxers: la capa de persistència li proporciona una {@link Font}.
+ */
+public class RegistreDiccionaris {
+
+    /**
+     * Origen dels diccionaris del registre.
+     */
+    public interface Font {
+        /**
+         * Retorna la signatura de la versió actual del diccionari d'un idioma.
+         * @param idioma Idioma del diccionari (en minúscules).
+         * @return Signatura del fitxer de paraules.
+         * @throws IOException si no es pot llegir el fitxer.
+         */
+        long signatura(String idioma) throws IOException;
+
+        /**
+         * Carrega el diccionari d'un idioma.
+         * @param idioma Idioma del diccionari (en minúscules).
+         * @return El diccionari carregat.
+         * @throws IOException si no es pot llegir el fitxer.
+         */
+        Diccionari carregar(String idioma) throws IOException;
+    }
+
+    /**
+     * Entrada del registre: un diccionari d'un idioma i una signatura concrets.
+     */
+    private static class Entrada {
+        /** Idioma del diccionari */
+        final String idioma;
+        /** Signatura del fitxer de paraules */
+        final long signatura;
+        /** Càrrega del diccionari, executada una sola vegada */
+        final FutureTask<Diccionari> carrega;
+        /** Nombre de referències actives */
+        int referencies = 0;
+        /** Mida estimada del diccionari en bytes (0 mentre es carrega) */
+        long mida = 0;
+        /** Indica si hi ha una versió més nova i l'entrada s'ha d'eliminar quan no tingui referències */
+        boolean obsoleta = false;
+
+        Entrada(String idioma, long signatura, FutureTask<Diccionari> carrega) {
+            this.idioma = idioma;
+            this.signatura = signatura;
+            this.carrega = carrega;
+        }
+    }
+
+    // ---------- CONSTANTS ----------
+    /** Pressupost de memòria per defecte: 64 MB */
+    public static final long PRESSUPOST_PER_DEFECTE = 64L * 1024 * 1024;
+
+    // ---------- ATRIBUTS ----------
+    /** Instància única del registre */
+    private static final RegistreDiccionaris INSTANCE = new RegistreDiccionaris();
+
+    /** Entrades per clau "idioma#signatura", en ordre d'ús (la primera és la menys usada) */
+    private final LinkedHashMap<String, Entrada> entrades = new LinkedHashMap<>(16, 0.75f, true);
+    /** Origen dels diccionaris */
+    private Font font;
+    /** Pressupost de memòria per als diccionaris carregats */
+    private long pressupostBytes = PRESSUPOST_PER_DEFECTE;
+
+    // ---------- CONSTRUCTORES ----------
+    /**
+     * Constructora del registre. Fora del singleton només s'utilitza per fer proves aïllades.
+     */
+    public RegistreDiccionaris() {
+    }
+
+    /**
+     * Retorna la instància única del registre.
+     * @return Registre de diccionaris.
+     */
+    public static RegistreDiccionaris getInstance() {
+        return INSTANCE;
+    }
+
+    // ---------- CONFIGURACIÓ ----------
+    /**
+     * Assigna l'origen dels diccionaris.
+     * @param font Font que sap calcular signatures i carregar diccionaris.
+     */
+    public synchronized void setFont(Font font) {
+        this.font = font;
+    }
+
+    /**
+     * Assigna el pressupost de memòria i elimina els diccionaris sense referències que hi sobrin.
+     * Els diccionaris amb referències no s'eliminen mai, encara que se superi el pressupost.
+     * @param pressupostBytes Bytes màxims ocupats pels diccionaris en memòria cau.
+     */
+    public synchronized void setPressupostBytes(long pressupostBytes) {
+        this.pressupostBytes = pressupostBytes;
+        ajustarAlPressupost();
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Retorna la mida total dels diccionaris carregats al registre.
+     * @return Mida en bytes.
+     */
+    public synchronized long getMidaBytes() {
+        long total = 0;
+        for (Entrada e : entrades.values()) total += e.mida;
+        return total;
+    }
+
+    /**
+     * Retorna el nombre de diccionaris (versions) presents al registre.
+     * @return Nombre d'entrades.
+     */
+    public synchronized int getNumDiccionaris() {
+        return entrades.size();
+    }
+
+    /**
+     * Retorna el nombre de referències actives d'un diccionari del registre.
+     * @param diccionari Diccionari obtingut del registre.
+     * @return Nombre de referències, o 0 si no és al registre.
+     */
+    public synchronized int getReferencies(Diccionari diccionari) {
+        Entrada e = cercaEntrada(diccionari);
+        return e == null ? 0 : e.referencies;
+    }
+
+    // ---------- MÈTODES PÚBLICS ----------
+    /**
+     * Obté el diccionari d'un idioma, carregant-lo si encara no és al registre, i n'incrementa les referències.
+     * Si el fitxer de paraules ha canviat des de l'última càrrega, es carrega la versió nova.
+     * @param idioma Idioma del diccionari.
+     * @return El diccionari compartit (no s'ha de modificar).
+     * @throws IllegalArgumentException si l'idioma no existeix.
+     * @throws UncheckedIOException si hi ha un error llegint el diccionari.
+     * @throws IllegalStateException si el registre no té cap font configurada.
+     */
+    public Diccionari obtenir(String idioma) {
+        String nom = idioma.toLowerCase();
+        Font origen;
+        synchronized (this) {
+            origen = font;
+        }
+        if (origen == null) throw new IllegalStateException("El registre de diccionaris no té cap font configurada");
+
+        long signatura;
+        try {
+            signatura = origen.signatura(nom);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Entrada entrada;
+        boolean carregar = false;
+        synchronized (this) {
+            String clau = nom + "#" + signatura;
+            entrada = entrades.get(clau);
+            if (entrada == null) {
+                entrada = new Entrada(nom, signatura, new FutureTask<>(() -> origen.carregar(nom)));
+                entrades.put(clau, entrada);
+                marcarObsoletes(nom, signatura);
+                carregar = true;
+            }
+            entrada.referencies++;
+        }
+
+        // La càrrega es fa fora del bloqueig: els altres idiomes es poden obtenir mentrestant,
+        // i qui demani el mateix diccionari espera el resultat d'aquesta càrrega
+        if (carregar) entrada.carrega.run();
+        Diccionari diccionari;
+        try {
+            diccionari = entrada.carrega.get();
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                entrada.referencies--;
+                entrades.values().remove(entrada);
+            }
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException io) throw new UncheckedIOException(io);
+            if (causa instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(causa);
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                entrada.referencies--;
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Càrrega del diccionari interrompuda", e);
+        }
+
+        synchronized (this) {
+            if (entrada.mida == 0) {
+                entrada.mida = diccionari.getMidaBytes();
+                ajustarAlPressupost();
+            }
+        }
+        return diccionari;
+    }
+
+    /**
+     * Allibera una referència a un diccionari obtingut amb {@link #obtenir(String)}.
+     * Si el diccionari es queda sense referències es manté a la memòria cau, tret que sigui obsolet
+     * o que se superi el pressupost de memòria.
+     * @param diccionari Diccionari a alliberar. Els diccionaris que no són del registre s'ignoren.
+     */
+    public synchronized void alliberar(Diccionari diccionari) {
+        Entrada e = cercaEntrada(diccionari);
+        if (e == null || e.referencies == 0) return;
+        e.referencies--;
+        if (e.referencies == 0 && e.obsoleta) {
+            entrades.values().remove(e);
+        }
+        ajustarAlPressupost();
+    }
+
+    /**
+     * Marca com a obsoletes totes les versions carregades d'un idioma (per exemple, perquè s'ha eliminat o
+     * modificat el fitxer). Les que no tenen referències s'eliminen immediatament.
+     * @param idioma Idioma dels diccionaris a invalidar.
+     */
+    public synchronized void invalidar(String idioma) {
+        String nom = idioma.toLowerCase();
+        Iterator<Entrada> it = entrades.values().iterator();
+        while (it.hasNext()) {
+            Entrada e = it.next();
+            if (!e.idioma.equals(nom)) continue;
+            e.obsoleta = true;
+            if (e.referencies == 0 && e.carrega.isDone()) it.remove();
+        }
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Marca com a obsoletes les altres versions d'un idioma quan se'n carrega una de nova.
+     * @param idioma Idioma del diccionari.
+     * @param signatura Signatura de la versió actual.
+     */
+    private void marcarObsoletes(String idioma, long signatura) {
+        Iterator<Entrada> it = entrades.values().iterator();
+        while (it.hasNext()) {
+            Entrada e = it.next();
+            if (!e.idioma.equals(idioma) || e.signatura == signatura) continue;
+            e.obsoleta = true;
+            if (e.referencies == 0 && e.carrega.isDone()) it.remove();
+        }
+    }
+
+    /**
+     * Elimina diccionaris sense referències, començant pels menys usats, fins que la mida total
+     * torna a estar dins del pressupost.
+     */
+    private void ajustarAlPressupost() {
+        long total = 0;
+        for (Entrada e : entrades.values()) total += e.mida;
+        Iterator<Entrada> it = entrades.values().iterator();
+        while (total > pressupostBytes && it.hasNext()) {
+            Entrada e = it.next();
+            if (e.referencies == 0 && e.carrega.isDone()) {
+                total -= e.mida;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Cerca l'entrada que conté un diccionari concret.
+     * @param diccionari Diccionari a cercar.
+     * @return L'entrada, o null si el diccionari no és al registre.
+     */
+    private Entrada cercaEntrada(Diccionari diccionari) {
+        for (Entrada e : entrades.values()) {
+            if (e.carrega.isDone() && !e.carrega.isCancelled()) {
+                try {
+                    if (e.carrega.get() == diccionari) return e;
+                } catch (InterruptedException | ExecutionException ex) {
+                    // Una càrrega fallida no conté cap diccionari
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -4,15 +4,37 @@ import util.Pair;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 /**
  * Classe Tauler - Representa el tauler de joc d'Scrabble.
  * Gestiona les caselles, la mida i les operacions principals sobre el tauler.
+ * A més de les caselles, manté l'ocupació en màscares de bits (una per fila, una per columna i una de tot el tauler),
+ * de manera que les consultes d'ocupació, veïnes i ancoratges no recorren les caselles. Per això la mida màxima
+ * és 64 i les fitxes només s'han de col·locar o treure amb els mètodes del tauler.
  * @author Alexander de Jong
  */
 public class Tauler implements Serializable {
 
+    /**
+     * Observador dels canvis de fitxes del tauler.
+     */
+    public interface ObservadorTauler {
+        /**
+         * S'invoca quan una casella guanya o perd una fitxa de manera definitiva
+         * (les col·locacions provisionals que es desfan dins d'una mateixa operació no es notifiquen).
+         * @param fila Fila de la casella
+         * @param columna Columna de la casella
+         */
+        void casellaCanviada(int fila, int columna);
+    }
+
+    // ---------- CONSTANTS ----------
+    /** Llavor de les claus de Zobrist de cada fitxa a cada casella */
+    private static final long LLAVOR_ZOBRIST = 0x2545F4914F6CDD1DL;
+
     // ---------- ATRIBUTS ----------
     /** Matriu de caselles que formen el tauler */
     private Casella[][] caselles;
@@ -20,6 +42,22 @@ public class Tauler implements Serializable {
     private int mida;
     /** Indica si s'ha col·locat la primera paraula al tauler */
     private boolean primeraParaulaColocada = false; // Indica si s'ha col·locat la primera paraula
+    /** Observadors dels canvis de fitxes (no es guarden amb la partida) */
+    private transient List<ObservadorTauler> observadors;
+    /** Tauler amb què una còpia en escriptura comparteix les caselles que no ha modificat (null si no és una còpia) */
+    private transient Tauler original;
+    /** En una còpia en escriptura, indica quines caselles ja s'han copiat per modificar-les */
+    private transient boolean[][] propies;
+    /** En una còpia en escriptura, posicions ({@code fila * mida + columna}) de les caselles copiades */
+    private transient List<Integer> copiades;
+    /** Hash de Zobrist de les fitxes del tauler, mantingut a cada canvi (es recalcula en llegir el tauler) */
+    private transient long hash;
+    /** Ocupació de cada fila: el bit {@code c} de {@code ocupacioFiles[f]} indica si hi ha fitxa a (f, c) */
+    private transient long[] ocupacioFiles;
+    /** Ocupació de cada columna: el bit {@code f} de {@code ocupacioColumnes[c]} indica si hi ha fitxa a (f, c) */
+    private transient long[] ocupacioColumnes;
+    /** Caselles ocupades de tot el tauler: el bit {@code fila * mida + columna} */
+    private transient long[] ocupades;
 
     // ---------- CONSTRUCTOR ----------
     /**
@@ -30,6 +68,25 @@ public class Tauler implements Serializable {
         this.mida = mida;
         this.caselles = new Casella[mida][mida];
         inicialitzarTauler();
+        inicialitzarOcupacio();
+    }
+
+    /**
+     * Constructora d'una còpia en escriptura (vegeu {@link #copiaEnEscriptura()}).
+     * @param original Tauler original
+     */
+    private Tauler(Tauler original) {
+        this.mida = original.mida;
+        this.caselles = new Casella[mida][];
+        for (int i = 0; i < mida; i++) caselles[i] = original.caselles[i].clone();
+        this.primeraParaulaColocada = original.primeraParaulaColocada;
+        this.hash = original.hash;
+        this.ocupacioFiles = original.ocupacioFiles.clone();
+        this.ocupacioColumnes = original.ocupacioColumnes.clone();
+        this.ocupades = original.ocupades.clone();
+        this.original = original;
+        this.propies = new boolean[mida][mida];
+        this.copiades = new ArrayList<>();
     }
 
     // ---------- GETTERS ----------
@@ -54,6 +111,19 @@ public class Tauler implements Serializable {
         return mida;
     }
 
+    /**
+     * Obté el hash de Zobrist de la posició: la combinació (XOR) d'una clau pseudoaleatòria de 64 bits per cada
+     * fitxa del tauler, segons la casella, la lletra i si és un comodí (una fitxa de 0 punts). Dos taulers amb
+     * les mateixes fitxes tenen el mateix hash, i es manté a cada col·locació o retirada de fitxes sense
+     * recórrer el tauler (només els canvis fets amb els mètodes del tauler, no les fitxes posades directament a una
+     * casella). Serveix de clau per a memòries cau de posicions. Els multiplicadors no hi compten:
+     * només es cremen on ja hi ha fitxa i llavors ja no afecten cap jugada.
+     * @return Hash de la posició (0 amb el tauler buit)
+     */
+    public long getHash() {
+        return hash;
+    }
+
     // ---------- SETTERS ----------
     /**
      * Substitueix una casella del tauler per una de nova.
@@ -62,10 +132,77 @@ public class Tauler implements Serializable {
      * @param novaCasella Nova casella a col·locar
      */
     public void substituirCasella(int fila, int columna, Casella novaCasella) {
+        modificable(fila, columna);
+        if (caselles[fila][columna].teFitxa()) commutarFitxa(fila, columna, caselles[fila][columna].getFitxa());
+        if (novaCasella.teFitxa()) commutarFitxa(fila, columna, novaCasella.getFitxa());
         this.caselles[fila][columna] = novaCasella;
+        notificar(fila, columna);
+    }
+
+    /**
+     * Afegeix un observador dels canvis de fitxes del tauler.
+     * @param observador Observador a afegir
+     */
+    public void afegirObservador(ObservadorTauler observador) {
+        if (observadors == null) observadors = new ArrayList<>();
+        observadors.add(observador);
+    }
+
+    /**
+     * Elimina un observador dels canvis de fitxes del tauler.
+     * @param observador Observador a eliminar
+     */
+    public void eliminarObservador(ObservadorTauler observador) {
+        if (observadors != null) observadors.remove(observador);
     }
 
     // ---------- MÈTODES PÚBLICS ----------
+    /**
+     * Crea una còpia en escriptura del tauler: comparteix les caselles amb aquest i només copia una casella
+     * quan la còpia la modifica, de manera que crear-la no copia cap casella i cada jugada només en copia
+     * les que toca. Pensada per simular jugades sense clonar el tauler sencer.
+     * <p>
+     * L'original no s'ha de modificar mentre es fa servir la còpia, i la còpia només s'ha de modificar amb
+     * els mètodes del tauler (no directament a les caselles que retorna {@link #getCasella(int, int)}).
+     * Diverses còpies del mateix original es poden fer servir alhora des de fils diferents.
+     * @return Còpia del tauler, sense observadors
+     */
+    public Tauler copiaEnEscriptura() {
+        return new Tauler(this);
+    }
+
+    /**
+     * Crea una instantània del tauler: una còpia independent amb caselles pròpies, que no canvia quan es
+     * modifica aquest tauler. Pensada per treballar sobre l'estat actual des d'un altre fil.
+     * @return Còpia del tauler, sense observadors
+     */
+    public Tauler instantania() {
+        Tauler copia = new Tauler(mida);
+        for (int i = 0; i < mida; i++) {
+            for (int j = 0; j < mida; j++) copia.caselles[i][j] = new Casella(caselles[i][j]);
+        }
+        copia.primeraParaulaColocada = primeraParaulaColocada;
+        copia.copiarOcupacio(this);
+        return copia;
+    }
+
+    /**
+     * Desfà tots els canvis d'una còpia en escriptura i la deixa igual que l'original, notificant
+     * els observadors de les caselles que canvien. En un tauler que no és una còpia no fa res.
+     */
+    public void restaurar() {
+        if (original == null) return;
+        for (int posicio : copiades) {
+            int fila = posicio / mida, columna = posicio % mida;
+            caselles[fila][columna] = original.caselles[fila][columna];
+            propies[fila][columna] = false;
+            notificar(fila, columna);
+        }
+        copiades.clear();
+        primeraParaulaColocada = original.primeraParaulaColocada;
+        copiarOcupacio(original);
+    }
+
     /**
      * Col·loca una paraula al tauler i calcula la seva puntuació.
      * @param fitxesNoves Llista de fitxes a col·locar
@@ -104,7 +241,9 @@ public class Tauler implements Serializable {
                     return buit();
                 }
                 Fitxa ftx = fitxesNoves.get(idxNova++);
+                cas = modificable(f, c);
                 cas.colocarFitxa(ftx);
+                commutarFitxa(f, c, ftx);
                 tmp.add(new FitxaColocada(cas, ftx));
                 posNoves.add(new Pair<>(f, c));
 
@@ -172,16 +311,19 @@ public class Tauler implements Serializable {
         if (!primeraParaulaColocada && !posNoves.isEmpty())
             primeraParaulaColocada = true;
 
+        for (Pair<Integer,Integer> pos : posNoves) notificar(pos.first, pos.second);
         return new Pair<>(posNoves, total);
     }
 
     /**
      * Confirma la jugada i crema els multiplicadors de les caselles utilitzades.
+     * Les fitxes ja s'han notificat en col·locar-les i els multiplicadors no afecten les paraules creuades,
+     * per això no es notifica cap canvi. Tampoc canvia el hash del tauler, que només depèn de les fitxes.
      * @param posFix Llista de posicions de les fitxes col·locades.
      */
     public void confirmar(List<Pair<Integer,Integer>> posFix) {
         for (Pair<Integer,Integer> p : posFix) {
-            Casella cas = getCasella(p.first, p.second);
+            Casella cas = modificable(p.first, p.second);
             cas.cremarMultiplicador();
         }
     }
@@ -280,9 +422,8 @@ public class Tauler implements Serializable {
      * @return true si no hi ha fitxes col·locades, false altrament
      */
     public boolean estaBuit() {
-        for (int i = 0; i < mida; i++)
-            for (int j = 0; j < mida; j++)
-                if (caselles[i][j].teFitxa()) return false;
+        for (long paraula : ocupades)
+            if (paraula != 0) return false;
         return true;
     }
 
@@ -293,31 +434,39 @@ public class Tauler implements Serializable {
      * @return true si hi ha una casella veïna ocupada, false altrament
      */
     public boolean teVeinaOcupada(int fila, int col) {
-        int[][] d = { {-1,0},{1,0},{0,-1},{0,1} };
-        for (int[] v : d) {
-            int f = fila + v[0], c = col + v[1];
-            if (f >= 0 && f < mida && c >= 0 && c < mida && caselles[f][c].teFitxa())
-                return true;
-        }
-        return false;
+        return (veines(ocupacioFiles, fila) >>> col & 1) != 0;
+    }
+
+    /**
+     * Retorna els ancoratges d'una fila o columna: les caselles buides amb alguna veïna ocupada, on ha de
+     * tocar qualsevol jugada que no sigui la primera.
+     * @param index Índex de la fila o columna
+     * @param columna true per a una columna (el bit i és la fila i), false per a una fila (el bit i és la columna i)
+     * @return Màscara de bits dels ancoratges de la línia
+     */
+    public long getAncoratges(int index, boolean columna) {
+        long[] ocupacio = columna ? ocupacioColumnes : ocupacioFiles;
+        return veines(ocupacio, index) & ~ocupacio[index] & (-1L >>> (64 - mida));
     }
 
     /**
-     * Confirma si les posicions donades són contigües en la direcció indicada.
+     * Confirma si les posicions donades són contigües en la direcció indicada: totes són a la mateixa línia
+     * i entre la primera i l'última no queda cap casella buida que no sigui una de les posicions.
      * @param pos Llista de posicions
      * @param hor true si horitzontal, false si vertical
      * @return true si són contigües, false altrament
      */
     public boolean sonContigues(List<Pair<Integer,Integer>> pos, boolean hor) {
-        for (int k = 1; k < pos.size(); k++) {
-            int diff = hor ? pos.get(k).second - pos.get(k-1).second
-                        : pos.get(k).first  - pos.get(k-1).first;
-            if (diff == 1) continue;
-            int fGap = hor ? pos.get(k-1).first  : pos.get(k-1).first  + 1;
-            int cGap = hor ? pos.get(k-1).second + 1 : pos.get(k-1).second;
-            if (!getCasella(fGap, cGap).teFitxa()) return false;
+        if (pos.isEmpty()) return true;
+        int linia = hor ? pos.get(0).first : pos.get(0).second;
+        long noves = 0;
+        for (Pair<Integer,Integer> p : pos) {
+            if ((hor ? p.first : p.second) != linia) return false;
+            noves |= 1L << (hor ? p.second : p.first);
         }
-        return true;
+        long ocupacio = hor ? ocupacioFiles[linia] : ocupacioColumnes[linia];
+        long tram = (-1L >>> Long.numberOfLeadingZeros(noves)) & (-1L << Long.numberOfTrailingZeros(noves));
+        return ((noves | ocupacio) & tram) == tram;
     }
 
     /**
@@ -327,11 +476,31 @@ public class Tauler implements Serializable {
     public void revertir2(List<Pair<Integer,Integer>> posFix) {
         for (Pair<Integer,Integer> p : posFix) {
             Casella cas = getCasella(p.first, p.second);
-            if (cas != null && cas.teFitxa()) cas.treureFitxa();
+            if (cas != null && cas.teFitxa()) {
+                commutarFitxa(p.first, p.second, cas.getFitxa());
+                modificable(p.first, p.second).treureFitxa();
+                notificar(p.first, p.second);
+            }
         }
     }
 
     // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Retorna una casella per modificar-la. En una còpia en escriptura, la primera vegada la copia
+     * perquè el canvi no afecti l'original.
+     * @param fila Fila de la casella
+     * @param columna Columna de la casella
+     * @return Casella pròpia del tauler
+     */
+    private Casella modificable(int fila, int columna) {
+        if (original != null && !propies[fila][columna]) {
+            caselles[fila][columna] = new Casella(caselles[fila][columna]);
+            propies[fila][columna] = true;
+            copiades.add(fila * mida + columna);
+        }
+        return caselles[fila][columna];
+    }
+
     /**
      * Inicialitza el tauler amb les caselles i multiplicadors corresponents.
      */
@@ -424,12 +593,106 @@ public class Tauler implements Serializable {
         return false;
     }
 
+    /**
+     * Notifica un canvi de fitxa a tots els observadors.
+     * @param fila Fila de la casella
+     * @param columna Columna de la casella
+     */
+    private void notificar(int fila, int columna) {
+        if (observadors == null) return;
+        for (ObservadorTauler o : observadors) o.casellaCanviada(fila, columna);
+    }
+
     /**
      * Reverteix les fitxes col·locades temporalment en cas d'error.
      * @param t Llista de fitxes col·locades temporalment
      */
     private void revertirTmp(List<FitxaColocada> t) {
-        for (FitxaColocada fc : t) fc.casella.treureFitxa();
+        for (FitxaColocada fc : t) {
+            fc.casella.treureFitxa();
+            commutarFitxa(fc.casella.getFila(), fc.casella.getColumna(), fc.fitxa);
+        }
+    }
+
+    /**
+     * Crea les màscares d'ocupació d'un tauler buit.
+     */
+    private void inicialitzarOcupacio() {
+        ocupacioFiles = new long[mida];
+        ocupacioColumnes = new long[mida];
+        ocupades = new long[(mida * mida + 63) / 64];
+        hash = 0;
+    }
+
+    /**
+     * Copia les màscares d'ocupació i el hash d'un altre tauler de la mateixa mida.
+     * @param altre Tauler amb les mateixes fitxes
+     */
+    private void copiarOcupacio(Tauler altre) {
+        System.arraycopy(altre.ocupacioFiles, 0, ocupacioFiles, 0, mida);
+        System.arraycopy(altre.ocupacioColumnes, 0, ocupacioColumnes, 0, mida);
+        System.arraycopy(altre.ocupades, 0, ocupades, 0, ocupades.length);
+        hash = altre.hash;
+    }
+
+    /**
+     * Canvia l'estat d'una casella d'ocupada a buida o a l'inrevés a les màscares d'ocupació i al hash.
+     * @param fila Fila de la casella
+     * @param columna Columna de la casella
+     * @param fitxa Fitxa que s'hi col·loca o se'n treu
+     */
+    private void commutarFitxa(int fila, int columna, Fitxa fitxa) {
+        int posicio = fila * mida + columna;
+        ocupacioFiles[fila] ^= 1L << columna;
+        ocupacioColumnes[columna] ^= 1L << fila;
+        ocupades[posicio >>> 6] ^= 1L << posicio;
+        hash ^= clauZobrist(fila, columna, fitxa);
+    }
+
+    /**
+     * Retorna les caselles d'una línia que tenen alguna veïna ocupada: a la mateixa línia o a les dues del costat.
+     * @param ocupacio Màscares d'ocupació de les files o de les columnes
+     * @param index Índex de la línia
+     * @return Màscara de bits de les caselles amb veïna ocupada (pot tenir bits fora del tauler)
+     */
+    private long veines(long[] ocupacio, int index) {
+        long veines = ocupacio[index] << 1 | ocupacio[index] >>> 1;
+        if (index > 0) veines |= ocupacio[index - 1];
+        if (index < mida - 1) veines |= ocupacio[index + 1];
+        return veines;
+    }
+
+    /**
+     * Retorna la clau de Zobrist d'una fitxa en una casella. En lloc d'una taula de claus aleatòries (les lletres
+     * poden ser qualsevol caràcter de l'alfabet del diccionari), la clau es calcula barrejant la casella, la lletra
+     * i si és un comodí amb la funció de SplitMix64, que dona el mateix valor a cada execució.
+     * @param fila Fila de la casella
+     * @param columna Columna de la casella
+     * @param fitxa Fitxa de la casella
+     * @return Clau de 64 bits
+     */
+    private long clauZobrist(int fila, int columna, Fitxa fitxa) {
+        long x = ((long) (fila * mida + columna) << 17 | (long) fitxa.getLletra() << 1 | (fitxa.getValor() == 0 ? 1 : 0))
+                + LLAVOR_ZOBRIST;
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /**
+     * Llegeix un tauler serialitzat i en recalcula les màscares d'ocupació i el hash de Zobrist.
+     * @param in Flux d'entrada
+     * @throws IOException si hi ha un error de lectura
+     * @throws ClassNotFoundException si el contingut no correspon a un tauler
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        inicialitzarOcupacio();
+        for (int i = 0; i < mida; i++) {
+            for (int j = 0; j < mida; j++) {
+                if (caselles[i][j].teFitxa()) commutarFitxa(i, j, caselles[i][j].getFitxa());
+            }
+        }
     }
 
     /**
@@ -7,8 +7,11 @@ import model.Ranquing;
 import model.Usuari;
 import controller.*;
 import model.Diccionari;
+import model.RegistreDiccionaris;
 import util.Temporitzador;
 import util.DigrafMapper;
+import util.DAWGCompacte;
+import util.ValorsResta;
 
 import java.io.*;
 import java.nio.file.*;
@@ -37,7 +40,8 @@ public class ControladorPersistencia {
     // ---------- CONSTRUCTOR ----------
     /**
      * Constructor privat per implementar el patró Singleton.
-     * Inicialitza els gestors de persistència.
+     * Inicialitza els gestors de persistència i registra el gestor de diccionaris com a font del registre
+     * de diccionaris compartits.
      */
     public ControladorPersistencia() {
         try {
@@ -45,6 +49,7 @@ public class ControladorPersistencia {
         } catch (IOException e) {
             throw new RuntimeException("Error initializing GestorUsuari", e);
         }
+        RegistreDiccionaris.getInstance().setFont(gestorDiccionari);
     }
 
     // ---------- GETTERS ----------
@@ -180,6 +185,45 @@ public class ControladorPersistencia {
         return gestorDiccionari.importarParaulesDiccionari(idioma);
     }
 
+    /**
+     * Construeix el DAWG del diccionari d'un idioma llegint el fitxer de paraules en streaming.
+     * @param idioma Idioma del diccionari.
+     * @return El DAWG compacte del diccionari.
+     * @throws IOException Si hi ha un error llegint el fitxer.
+     */
+    public DAWGCompacte construirGrafDiccionari(String idioma) throws IOException {
+        return gestorDiccionari.construirGrafDiccionari(idioma);
+    }
+
+    /**
+     * Obre la imatge binària precompilada del diccionari d'un idioma.
+     * @param idioma Idioma del diccionari.
+     * @return El DAWG projectat a memòria, o null si no hi ha imatge vàlida.
+     */
+    public DAWGCompacte obrirImatgeDiccionari(String idioma) {
+        return gestorDiccionari.obrirImatgeDiccionari(idioma);
+    }
+
+    /**
+     * Desa la imatge binària del diccionari d'un idioma.
+     * @param idioma Idioma del diccionari.
+     * @param graf DAWG compacte construït.
+     * @throws IOException Si hi ha un error escrivint el fitxer.
+     */
+    public void guardarImatgeDiccionari(String idioma, DAWGCompacte graf) throws IOException {
+        gestorDiccionari.guardarImatgeDiccionari(idioma, graf);
+    }
+
+    /**
+     * Desa la taula de valors de resta (fitxes que queden a l'atril) d'un idioma.
+     * @param idioma Idioma del diccionari.
+     * @param taula Taula de valors generada.
+     * @throws IOException Si hi ha un error escrivint el fitxer.
+     */
+    public void guardarValorsResta(String idioma, ValorsResta taula) throws IOException {
+        gestorDiccionari.guardarValorsResta(idioma, taula);
+    }
+
     /**
      * Elimina un diccionari i el seu fitxer de lletres.
      * @param nomDiccionari Nom del diccionari.
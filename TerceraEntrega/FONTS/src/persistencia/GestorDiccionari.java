@@ -1,9 +1,20 @@
 package persistencia;
 
+import model.Diccionari;
+import model.RegistreDiccionaris;
 import util.Pair;
 import util.DigrafMapper;
+import util.DAWGCompacte;
+import util.ConstructorDAWG;
+import util.ValorsResta;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.*;
+import java.util.zip.CRC32;
 
 /**
  * Classe GestorDiccionari.
@@ -11,12 +22,18 @@ import java.util.*;
  * Proporciona funcionalitats per carregar, guardar, eliminar i obtenir informació sobre diccionaris i alfabets,
  * així com importar-los per a la seva utilització interna.
  * Aquesta classe encapsula tota la lògica relacionada amb la gestió d'arxius de diccionaris i alfabets.
+ * També és la {@link RegistreDiccionaris.Font} del registre de diccionaris compartits: sap calcular la signatura
+ * del fitxer de paraules d'un idioma i carregar-ne el diccionari (des de la imatge binària o llegint el fitxer).
  * 
  */
-public class GestorDiccionari {
+public class GestorDiccionari implements RegistreDiccionaris.Font {
 
     private Map<String,String> dictPaths;
     private Map<String,String> alphaPaths;
+    /** Signatures ja calculades per ruta: (data de modificació, mida, signatura) */
+    private final Map<String, long[]> signatures = new HashMap<>();
+    /** Paraules que l'última construcció en streaming ha hagut de guardar a part per fusionar-les al final */
+    private volatile int paraulesApart = 0;
 
     /**
      * Constructor de la classe GestorDiccionari.
@@ -62,6 +79,181 @@ public class GestorDiccionari {
         return alphaPaths.get(idioma.toLowerCase());
     }
     
+    /**
+     * Retorna la ruta de la imatge binària (DAWG precompilat) del diccionari d'un idioma.
+     * La imatge es guarda al costat del fitxer de paraules, amb extensió ".dawg".
+     * @param idioma
+     * @return String amb la ruta de la imatge, o null si l'idioma no té diccionari
+     */
+    public String getImatgePath(String idioma) {
+        String diccionariFile = getDictPath(idioma);
+        if (diccionariFile == null) return null;
+        return diccionariFile.substring(0, diccionariFile.length() - ".txt".length()) + ".dawg";
+    }
+
+    /**
+     * Retorna la ruta de la taula de valors de resta (fitxes que queden a l'atril) d'un idioma.
+     * La taula es guarda al costat del fitxer de paraules, amb extensió ".resta".
+     * @param idioma Idioma del diccionari.
+     * @return String amb la ruta de la taula, o null si l'idioma no té diccionari
+     */
+    public String getValorsRestaPath(String idioma) {
+        String diccionariFile = getDictPath(idioma);
+        if (diccionariFile == null) return null;
+        return diccionariFile.substring(0, diccionariFile.length() - ".txt".length()) + ".resta";
+    }
+
+    /**
+     * Calcula la signatura (CRC32) del fitxer de paraules d'un idioma.
+     * S'utilitza per saber si una imatge binària correspon a la versió actual del fitxer.
+     * @param idioma Idioma del diccionari.
+     * @return Signatura del fitxer de paraules.
+     * @throws IOException Si hi ha un error llegint el fitxer.
+     */
+    public long calcularSignatura(String idioma) throws IOException {
+        String diccionariFile = getDictPath(idioma);
+        if (diccionariFile == null) {
+            throw new IllegalArgumentException("Idioma desconegut: " + idioma);
+        }
+        // Si el fitxer no ha canviat des de l'últim càlcul, no cal tornar-lo a llegir
+        File fitxer = new File(diccionariFile);
+        long modificat = fitxer.lastModified();
+        long mida = fitxer.length();
+        synchronized (signatures) {
+            long[] anterior = signatures.get(diccionariFile);
+            if (anterior != null && anterior[0] == modificat && anterior[1] == mida) return anterior[2];
+        }
+
+        CRC32 crc = new CRC32();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(diccionariFile)))) {
+            byte[] buffer = new byte[1 << 16];
+            int llegits;
+            while ((llegits = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, llegits);
+            }
+        }
+        synchronized (signatures) {
+            signatures.put(diccionariFile, new long[] {modificat, mida, crc.getValue()});
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Retorna la signatura actual del diccionari d'un idioma (per al registre de diccionaris).
+     * @param idioma Idioma del diccionari.
+     * @return Signatura del fitxer de paraules.
+     * @throws IOException Si hi ha un error llegint el fitxer.
+     */
+    @Override
+    public long signatura(String idioma) throws IOException {
+        return calcularSignatura(idioma);
+    }
+
+    /**
+     * Carrega el diccionari complet d'un idioma (per al registre de diccionaris).
+     * Si hi ha una imatge binària vàlida, s'obre directament; si no, es construeix llegint el fitxer
+     * en streaming i es guarda la imatge per a les càrregues següents.
+     * @param idioma Idioma del diccionari.
+     * @return El diccionari carregat.
+     * @throws IOException Si hi ha un error llegint el fitxer de paraules.
+     */
+    @Override
+    public Diccionari carregar(String idioma) throws IOException {
+        Map<String, Pair<Integer, Integer>> alfabet = importarAlfabet(idioma);
+        DAWGCompacte graf = obrirImatgeDiccionari(idioma);
+        if (graf == null) {
+            graf = construirGrafDiccionari(idioma);
+            try {
+                guardarImatgeDiccionari(idioma, graf);
+            } catch (IOException e) {
+                System.err.println("No s'ha pogut guardar la imatge del diccionari: " + e.getMessage());
+            }
+        }
+        return new Diccionari(idioma, graf, alfabet, obrirValorsResta(idioma, graf));
+    }
+
+    /**
+     * Obre la taula de valors de resta d'un idioma projectant-la a memòria.
+     * Les taules es generen fora de línia; si l'idioma no en té, la màquina fa servir una estimació.
+     * @param idioma Idioma del diccionari.
+     * @param graf Graf del diccionari, per comprovar que la taula fa servir els mateixos codis de lletra.
+     * @return La taula, o null si no existeix, no és vàlida o no correspon al graf.
+     */
+    public ValorsResta obrirValorsResta(String idioma, DAWGCompacte graf) {
+        String taulaFile = getValorsRestaPath(idioma);
+        if (taulaFile == null || !new File(taulaFile).isFile()) return null;
+
+        try (FileChannel canal = FileChannel.open(Paths.get(taulaFile), StandardOpenOption.READ)) {
+            ValorsResta taula = ValorsResta.deImatge(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+            return taula.esCompatible(graf) ? taula : null;
+        } catch (IOException e) {
+            System.err.println("Error obrint la taula de valors de resta: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda la taula de valors de resta d'un idioma. S'escriu en un fitxer temporal i es renomena.
+     * @param idioma Idioma del diccionari.
+     * @param taula Taula de valors generada.
+     * @throws IOException Si hi ha un error escrivint el fitxer.
+     */
+    public void guardarValorsResta(String idioma, ValorsResta taula) throws IOException {
+        String taulaFile = getValorsRestaPath(idioma);
+        if (taulaFile == null) {
+            throw new IllegalArgumentException("Idioma desconegut: " + idioma);
+        }
+        Path desti = Paths.get(taulaFile);
+        Path temporal = Paths.get(taulaFile + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            taula.escriureImatge(canal);
+        }
+        Files.move(temporal, desti, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Obre la imatge binària del diccionari d'un idioma projectant-la a memòria.
+     * El graf retornat llegeix directament del fitxer projectat, fora del heap.
+     * @param idioma Idioma del diccionari.
+     * @return El DAWG de la imatge, o null si no existeix o no correspon al fitxer de paraules actual.
+     */
+    public DAWGCompacte obrirImatgeDiccionari(String idioma) {
+        String imatgeFile = getImatgePath(idioma);
+        if (imatgeFile == null || !new File(imatgeFile).isFile()) return null;
+
+        try (FileChannel canal = FileChannel.open(Paths.get(imatgeFile), StandardOpenOption.READ)) {
+            // La projecció continua sent vàlida un cop tancat el canal
+            MappedByteBuffer imatge = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (DAWGCompacte.llegirSignatura(imatge) != calcularSignatura(idioma)) {
+                return null;
+            }
+            return DAWGCompacte.deImatge(imatge);
+        } catch (IOException e) {
+            System.err.println("Error obrint la imatge del diccionari: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Guarda la imatge binària del diccionari d'un idioma perquè les càrregues següents no l'hagin de reconstruir.
+     * S'escriu en un fitxer temporal i es renomena, de manera que mai queda una imatge a mitges.
+     * @param idioma Idioma del diccionari.
+     * @param graf DAWG compacte ja construït a partir del fitxer de paraules.
+     * @throws IOException Si hi ha un error escrivint el fitxer.
+     */
+    public void guardarImatgeDiccionari(String idioma, DAWGCompacte graf) throws IOException {
+        String imatgeFile = getImatgePath(idioma);
+        if (imatgeFile == null) {
+            throw new IllegalArgumentException("Idioma desconegut: " + idioma);
+        }
+        Path desti = Paths.get(imatgeFile);
+        Path temporal = Paths.get(imatgeFile + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            graf.escriureImatge(canal, calcularSignatura(idioma));
+        }
+        Files.move(temporal, desti, StandardCopyOption.REPLACE_EXISTING);
+    }
+
     /**
      * Carrega un diccionari des d'un fitxer.
      * El fitxer ha de tenir una paraula per línia.
@@ -124,6 +316,7 @@ public class GestorDiccionari {
                 fw.write(paraula + System.lineSeparator());
             }
         }
+        RegistreDiccionaris.getInstance().invalidar(nom);
     }
 
     /**
@@ -147,14 +340,30 @@ public class GestorDiccionari {
     }
     
     /**
-     * Elimina un diccionari i el seu alfabet associat.
+     * Elimina un diccionari, el seu alfabet associat i els fitxers derivats (imatge binària i taula de valors de resta).
      * @param nomDiccionari Nom del diccionari a eliminar (sense extensió).
      * @throws Exception Si hi ha un error eliminant els fitxers.
      */
     public void eliminarDiccionari(String nomDiccionari) throws Exception {
         File fitxer = new File("../DATA/" + nomDiccionari + ".txt");
         if (!fitxer.exists()) throw new FileNotFoundException("El diccionari no existeix.");
+
+        // Les rutes dels fitxers derivats es resolen abans d'esborrar res, ja que depenen del fitxer de paraules
+        String rutaImatge = getImatgePath(nomDiccionari);
+        String rutaValorsResta = getValorsRestaPath(nomDiccionari);
+        File imatge = new File(rutaImatge != null ? rutaImatge : "../DATA/" + nomDiccionari + ".dawg");
+        File valorsResta = new File(rutaValorsResta != null ? rutaValorsResta : "../DATA/" + nomDiccionari + ".resta");
+
+        // Primer els derivats: si falla algun, el diccionari continua sencer i es poden tornar a generar
+        if (imatge.exists()) {
+            if (!imatge.delete()) throw new IOException("No s'ha pogut eliminar la imatge del diccionari.");
+        }
+        if (valorsResta.exists()) {
+            if (!valorsResta.delete()) throw new IOException("No s'ha pogut eliminar la taula de valors de resta.");
+        }
+
         if (!fitxer.delete()) throw new IOException("No s'ha pogut eliminar el diccionari.");
+        RegistreDiccionaris.getInstance().invalidar(nomDiccionari);
 
         String enMajuscules = nomDiccionari.toUpperCase();
         File fitxerLletres = new File("../DATA/letras" + enMajuscules + ".txt");
@@ -258,6 +467,67 @@ public class GestorDiccionari {
         return paraules;
     }
 
+    /**
+     * Construeix el DAWG del diccionari d'un idioma llegint el fitxer en streaming.
+     * Cada línia es converteix (dígrafs) i s'afegeix directament al constructor incremental, sense guardar
+     * la llista de paraules: la memòria necessària és la del DAWG més el buffer de lectura.
+     * Les paraules que la conversió de dígrafs deixa fora d'ordre es guarden a part i s'hi fusionen al final.
+     * @param idioma Idioma del diccionari.
+     * @return El DAWG compacte amb totes les paraules del diccionari.
+     * @throws IOException Si hi ha un error llegint el fitxer.
+     */
+    public DAWGCompacte construirGrafDiccionari(String idioma) throws IOException {
+        idioma = idioma.toLowerCase();
+        String diccionariFile = getDictPath(idioma);
+        if (diccionariFile == null) {
+            throw new IllegalArgumentException("Idioma desconegut: " + idioma);
+        }
+
+        try (BufferedReader lector = Files.newBufferedReader(Paths.get(diccionariFile), Charset.defaultCharset())) {
+            return construirGraf(lector, idioma);
+        }
+    }
+
+    /**
+     * Construeix el DAWG d'un idioma a partir d'un flux de paraules ordenades, una per línia.
+     * Només es guarden a part les paraules que la conversió de dígrafs modifica: els caràcters unificats són
+     * minúscules i queden fora de l'ordre del fitxer. La resta conserven l'ordre del fitxer i van directament
+     * al constructor incremental, de manera que la memòria extra és proporcional a les paraules amb dígrafs.
+     * @param lector Flux de paraules.
+     * @param idioma Idioma del diccionari, per convertir-ne els dígrafs.
+     * @return El DAWG compacte amb totes les paraules.
+     * @throws IOException Si hi ha un error llegint el flux.
+     */
+    public DAWGCompacte construirGraf(BufferedReader lector, String idioma) throws IOException {
+        ConstructorDAWG constructor = new ConstructorDAWG();
+        List<String> desordenades = new ArrayList<>();
+        String linia;
+        while ((linia = lector.readLine()) != null) {
+            String paraula = linia.trim();
+            if (paraula.isEmpty()) continue;
+            String convertida = DigrafMapper.convertirParaula(paraula, idioma);
+            if (convertida.equals(paraula) && constructor.esPotAfegir(convertida)) {
+                constructor.afegirParaula(convertida);
+            } else {
+                desordenades.add(convertida);
+            }
+        }
+        paraulesApart = desordenades.size();
+
+        DAWGCompacte graf = constructor.construir();
+        if (desordenades.isEmpty()) return graf;
+        return ConstructorDAWG.unir(graf, desordenades);
+    }
+
+    /**
+     * Retorna quantes paraules ha hagut de guardar a part l'última construcció en streaming
+     * (les modificades per la conversió de dígrafs i les que el fitxer no tenia en ordre).
+     * @return Nombre de paraules guardades a part.
+     */
+    public int getParaulesApart() {
+        return paraulesApart;
+    }
+
     /**
      * Retorna una llista amb els noms dels diccionaris disponibles.
      * Els noms són els fitxers que acaben amb ".txt" i no comencen per "letras", "usuaris" o "historial".
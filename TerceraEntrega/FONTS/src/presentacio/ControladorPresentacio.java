@@ -18,6 +18,10 @@ import exceptions.*;
  */
 public class ControladorPresentacio {
 
+    // ---------- CONSTANTS ----------
+    /** Nombre de jugades que es mostren en una pista */
+    private static final int JUGADES_PISTA = 3;
+
     // ---------- ATRIBUTS ----------
     private static ControladorPresentacio ctrlPresentacio;
     private ControladorDomini ctrlDomini;
@@ -618,6 +622,16 @@ public class ControladorPresentacio {
         jugarBotsIFerRefresh();
     }
 
+    /**
+     * Demana una pista per al jugador del torn actual. Les jugades es calculen fora del fil de la interfície
+     * i es mostren a la vista quan estan a punt; si mentrestant canvia el torn, la pista es descarta.
+     */
+    public void demanarPista() {
+        ctrlDomini.suggerirJugades(JUGADES_PISTA).thenAccept(jugades -> SwingUtilities.invokeLater(() -> {
+            if (vista != null) vista.mostrarPistes(jugades);
+        }));
+    }
+
     /**
      * Mostra el diàleg per demanar el nom de la partida a guardar.
      * @return Nom de la partida.
@@ -333,6 +333,11 @@ public class VistaPartida extends JFrame implements TemporitzadorListener {
         panelAccions.add(botoReordenar);
         botoReordenar.addActionListener(e -> reordenarFitxes());
 
+        // Botó per demanar una pista
+        JButton botoPista = crearBotoAccio("Pista", "../../FONTS/src/presentacio/resources/icons/ajuda.png", new Color(241, 196, 15));
+        panelAccions.add(botoPista);
+        botoPista.addActionListener(e -> controlador.demanarPista());
+
         add(panelInferior, BorderLayout.NORTH);
 
         pack();
@@ -377,6 +382,27 @@ public class VistaPartida extends JFrame implements TemporitzadorListener {
         setVisible(true);
     }
 
+    /**
+     * Mostra les jugades suggerides com a pista.
+     * @param jugades Jugades de més a menys puntuació.
+     */
+    public void mostrarPistes(List<Play> jugades) {
+        if (jugades.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No hi ha cap jugada possible amb les teves fitxes.", "Pista", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        String idioma = controlador.getIdioma();
+        StringBuilder text = new StringBuilder("Jugades possibles:\n");
+        for (Play jugada : jugades) {
+            text.append(DigrafMapper.desferConversioParaula(jugada.getWord(), idioma))
+                .append(" - fila ").append(jugada.getFila() + 1)
+                .append(", columna ").append(jugada.getColumna() + 1)
+                .append(jugada.isHorizontal() ? ", horitzontal: " : ", vertical: ")
+                .append(jugada.getScore()).append(" punts\n");
+        }
+        JOptionPane.showMessageDialog(this, text.toString(), "Pista", JOptionPane.INFORMATION_MESSAGE);
+    }
+
     /**
      * Actualitza el  tauler gràficament segons l'estat del model.
      */
@@ -0,0 +1,83 @@
+package test;
+
+import model.Diccionari;
+import persistencia.ControladorPersistencia;
+import util.ConstructorDAWG;
+import util.DAWGCompacte;
+import util.Pair;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Benchmark de construcció del DAWG del diccionari.
+ * No és un test JUnit: s'executa amb {@code make bench} (per defecte amb english.txt)
+ * i mostra el temps de lectura i el temps de construcció de cada repetició: primer a través de {@link Diccionari},
+ * i després comparant la construcció seqüencial amb la construcció en paral·lel per particions amb diferents fils.
+ * Ús: {@code java test.BenchmarkConstruccioDAWG [idioma] [repeticions]}
+ */
+public class BenchmarkConstruccioDAWG {
+
+    /**
+     * Punt d'entrada del benchmark.
+     * @param args Idioma (per defecte "english") i nombre de repeticions (per defecte 5).
+     */
+    public static void main(String[] args) {
+        String idioma = args.length > 0 ? args[0] : "english";
+        int repeticions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        ControladorPersistencia cp = ControladorPersistencia.getInstance();
+        long inici = System.nanoTime();
+        Map<String, Pair<Integer, Integer>> alfabet = cp.importarAlfabet(idioma);
+        List<String> paraules = cp.importarParaulesDiccionari(idioma);
+        System.out.printf("Lectura de %d paraules: %d ms%n", paraules.size(), (System.nanoTime() - inici) / 1_000_000);
+
+        long[] temps = new long[repeticions];
+        DAWGCompacte graf = null;
+        for (int i = 0; i < repeticions; i++) {
+            long t = System.nanoTime();
+            graf = new Diccionari(idioma, paraules, alfabet).getGraf();
+            temps[i] = (System.nanoTime() - t) / 1_000_000;
+            System.out.printf("  repetició %d: %d ms%n", i + 1, temps[i]);
+        }
+        Arrays.sort(temps);
+        System.out.printf("Construcció (mediana de %d): %d ms, min %d ms%n", repeticions, temps[repeticions / 2], temps[0]);
+        System.out.printf("Graf: %d nodes, %d arcs, %d bytes%n", graf.getNumNodes(), graf.getNumArcs(), graf.getMidaBytes());
+
+        List<String> ordenades = new ArrayList<>(new TreeSet<>(paraules));
+        mesura("Seqüencial", repeticions, graf, () -> {
+            ConstructorDAWG constructor = new ConstructorDAWG();
+            for (String paraula : ordenades) constructor.afegirParaula(paraula);
+            return constructor.construir();
+        });
+        int processadors = Runtime.getRuntime().availableProcessors();
+        for (int fils = 1; fils <= processadors; fils *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(fils);
+            for (int clau = 1; clau <= 2; clau++) {
+                int longitudClau = clau;
+                mesura("Paral·lel, " + fils + " fils, clau de " + clau, repeticions, graf,
+                        () -> ConstructorDAWG.construirEnParallel(ordenades, longitudClau, pool));
+            }
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Mesura una manera de construir el DAWG i comprova que el resultat coincideix amb el de referència.
+     * @param nom Nom de la mesura.
+     * @param repeticions Nombre de repeticions.
+     * @param referencia Graf de referència.
+     * @param construccio Construcció a mesurar.
+     */
+    private static void mesura(String nom, int repeticions, DAWGCompacte referencia, java.util.function.Supplier<DAWGCompacte> construccio) {
+        long[] temps = new long[repeticions];
+        DAWGCompacte graf = null;
+        for (int i = 0; i < repeticions; i++) {
+            long t = System.nanoTime();
+            graf = construccio.get();
+            temps[i] = (System.nanoTime() - t) / 1_000_000;
+        }
+        Arrays.sort(temps);
+        boolean igual = graf.getNumNodes() == referencia.getNumNodes() && graf.getNumArcs() == referencia.getNumArcs();
+        System.out.printf("%s: mediana %d ms, min %d ms%s%n", nom, temps[repeticions / 2], temps[0], igual ? "" : " (GRAF DIFERENT!)");
+    }
+}
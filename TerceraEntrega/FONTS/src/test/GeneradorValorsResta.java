@@ -0,0 +1,261 @@
+package test;
+
+import controller.ControladorMaquina;
+import model.*;
+import persistencia.ControladorPersistencia;
+import util.DAWGCompacte;
+import util.Dificultat;
+import util.ValorsResta;
+import java.util.*;
+
+/**
+ * Generador de la taula de valors de resta d'un idioma.
+ * No és un test JUnit: s'executa amb {@code make valors-resta} (per defecte amb english) i guarda la taula
+ * a {@code DATA/<idioma>.resta}, on la carrega el diccionari.
+ * <p>
+ * Fa jugar la màquina contra ella mateixa i, per cada resta que es queda un jugador mentre la bossa encara
+ * permet reomplir l'atril, anota quants punts fa el mateix jugador a la jugada següent. El valor d'una resta
+ * és la diferència amb la mitjana. Com que la majoria de restes no apareixen mai, els valors s'ajusten amb
+ * una regressió lineal (una variable per cada còpia de cada lletra i una per cada combinació de vocals i
+ * consonants) i la mitjana observada de cada resta només corregeix el model quan hi ha prou observacions.
+ * Ús: {@code java test.GeneradorValorsResta [idioma] [partides]}
+ */
+public class GeneradorValorsResta {
+
+    /** Nombre màxim de fitxes d'una resta a la taula */
+    private static final int MAX_FITXES = 6;
+    /** Nombre de còpies de cada lletra amb variable pròpia al model */
+    private static final int COPIES = 3;
+    /** Lletres que es compten com a vocals */
+    private static final String VOCALS = "AEIOU";
+    /** Regularització de la regressió */
+    private static final double REGULARITZACIO = 10.0;
+    /** Observacions d'una resta a partir de les quals la mitjana observada pesa tant com el model */
+    private static final double PES_MODEL = 20.0;
+    /** Torns màxims d'una partida */
+    private static final int MAX_TORNS = 60;
+
+    /**
+     * Punt d'entrada del generador.
+     * @param args Idioma (per defecte "english") i nombre de partides (per defecte 500).
+     * @throws Exception si no es pot carregar el diccionari o guardar la taula.
+     */
+    public static void main(String[] args) throws Exception {
+        String idioma = args.length > 0 ? args[0] : "english";
+        int partides = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        ControladorPersistencia cp = ControladorPersistencia.getInstance();
+        Diccionari diccionari = RegistreDiccionaris.getInstance().obtenir(idioma);
+        DAWGCompacte graf = diccionari.getGraf();
+        int numSimbols = graf.getNumLletres() + 1;
+
+        long inici = System.nanoTime();
+        List<int[]> restes = new ArrayList<>();
+        List<Integer> punts = new ArrayList<>();
+        for (int p = 0; p < partides; p++) {
+            jugarPartida(diccionari, p, restes, punts);
+        }
+        System.out.printf("%d partides, %d restes observades: %d s%n", partides, restes.size(),
+                (System.nanoTime() - inici) / 1_000_000_000);
+
+        double mitjana = 0;
+        for (int x : punts) mitjana += x;
+        mitjana /= Math.max(1, punts.size());
+        System.out.printf("Mitjana de punts per jugada: %.2f%n", mitjana);
+
+        int[][] variableBalanc = new int[MAX_FITXES + 1][MAX_FITXES + 1];
+        int numVariables = numSimbols * COPIES;
+        for (int v = 0; v <= MAX_FITXES; v++) {
+            for (int c = 0; v + c <= MAX_FITXES; c++) variableBalanc[v][c] = numVariables++;
+        }
+        boolean[] esVocal = new boolean[numSimbols];
+        for (int codi = 0; codi < numSimbols - 1; codi++) esVocal[codi] = VOCALS.indexOf(graf.getLletra(codi)) >= 0;
+
+        // Equacions normals de la regressió amb regularització: (X'X + rI) w = X'y
+        double[][] a = new double[numVariables][numVariables + 1];
+        int[] variables = new int[MAX_FITXES * COPIES + 1];
+        for (int i = 0; i < restes.size(); i++) {
+            int n = variables(restes.get(i), esVocal, variableBalanc, variables);
+            double y = punts.get(i) - mitjana;
+            for (int j = 0; j < n; j++) {
+                for (int k = 0; k < n; k++) a[variables[j]][variables[k]] += 1;
+                a[variables[j]][numVariables] += y;
+            }
+        }
+        for (int j = 0; j < numVariables; j++) a[j][j] += REGULARITZACIO;
+        double[] pesos = resoldre(a);
+
+        Map<Integer, double[]> observades = new HashMap<>();
+        ValorsResta taula = ValorsResta.buida(graf, MAX_FITXES);
+        for (int i = 0; i < restes.size(); i++) {
+            int index = taula.index(restes.get(i));
+            if (index < 0) continue;
+            double[] o = observades.computeIfAbsent(index, k -> new double[2]);
+            o[0] += punts.get(i) - mitjana;
+            o[1]++;
+        }
+
+        omplir(taula, new int[numSimbols], 0, 0, pesos, esVocal, variableBalanc, variables, observades);
+        cp.guardarValorsResta(idioma, taula);
+        System.out.printf("Taula de %d entrades (%d restes diferents observades) guardada%n",
+                taula.getNumEntrades(), observades.size());
+
+        int[] resta = new int[numSimbols];
+        StringBuilder resum = new StringBuilder("Valor d'una fitxa sola:");
+        for (int s = 0; s < numSimbols; s++) {
+            resta[s] = 1;
+            resum.append(' ').append(s < numSimbols - 1 ? graf.getLletra(s) : '#')
+                 .append('=').append(taula.getValor(resta) / 2.0);
+            resta[s] = 0;
+        }
+        System.out.println(resum);
+    }
+
+    /**
+     * Juga una partida de la màquina contra ella mateixa i n'anota les restes i els punts de la jugada següent.
+     * @param diccionari Diccionari de la partida.
+     * @param llavor Llavor de la màquina.
+     * @param restes Llista on s'afegeixen les restes (fitxes per codi de lletra i comodins al final).
+     * @param punts Llista on s'afegeixen els punts de la jugada següent de cada resta.
+     * @throws Exception si falla el repartiment de fitxes.
+     */
+    private static void jugarPartida(Diccionari diccionari, long llavor, List<int[]> restes, List<Integer> punts)
+            throws Exception {
+        Jugador j1 = new Jugador("BOT1"), j2 = new Jugador("BOT2");
+        Partida partida = new Partida(1, new ArrayList<>(List.of(j1, j2)), new Tauler(15), diccionari, false,
+                Dificultat.NORMAL);
+        partida.repartirFitxes("BOT1", 7);
+        partida.repartirFitxes("BOT2", 7);
+        ControladorMaquina maquina = new ControladorMaquina(partida);
+        maquina.setLlavor(llavor);
+
+        Map<String, int[]> pendents = new HashMap<>();
+        int passades = 0;
+        for (int torn = 0; torn < MAX_TORNS && passades < 2; torn++) {
+            String nom = partida.getTornJugador();
+            Jugador jugador = partida.getJugador(nom);
+            int abans = numJugades(partida);
+            if (!maquina.jugarTorn(nom)) break;
+            int despres = numJugades(partida);
+            int puntsJugada = despres > abans ? partida.getJugadesRealitzades().get(despres - 1).getPunts() : 0;
+            passades = despres > abans ? 0 : passades + 1;
+
+            int[] pendent = pendents.remove(nom);
+            if (pendent != null) {
+                restes.add(pendent);
+                punts.add(puntsJugada);
+            }
+            partida.avançarTorn();
+            if (partida.getBossa().size() >= 7) pendents.put(nom, resta(jugador, diccionari.getGraf()));
+
+            int falten = 7 - jugador.getFitxes().size();
+            if (partida.getBossa().size() < falten) break;
+            if (falten > 0) partida.repartirFitxes(nom, falten);
+        }
+    }
+
+    /**
+     * Retorna el nombre de jugades realitzades d'una partida.
+     * @param partida Partida.
+     * @return Nombre de jugades.
+     */
+    private static int numJugades(Partida partida) {
+        return partida.getJugadesRealitzades() == null ? 0 : partida.getJugadesRealitzades().size();
+    }
+
+    /**
+     * Compta les fitxes de l'atril d'un jugador per codi de lletra, amb els comodins a l'última posició.
+     * @param jugador Jugador.
+     * @param graf Graf del diccionari.
+     * @return Fitxes per símbol.
+     */
+    private static int[] resta(Jugador jugador, DAWGCompacte graf) {
+        int[] resta = new int[graf.getNumLletres() + 1];
+        for (Fitxa f : jugador.getFitxes()) {
+            int codi = f.esComodin() ? graf.getNumLletres() : graf.getCodi(f.getLletra());
+            if (codi >= 0) resta[codi]++;
+        }
+        return resta;
+    }
+
+    /**
+     * Escriu les variables actives del model per a una resta: la còpia j-èsima de cada símbol fins a
+     * {@link #COPIES} i la combinació de vocals i consonants.
+     * @param resta Fitxes per símbol.
+     * @param esVocal Indica quins símbols són vocals.
+     * @param variableBalanc Variable de cada combinació de vocals i consonants.
+     * @param variables Vector on s'escriuen les variables actives.
+     * @return Nombre de variables actives.
+     */
+    private static int variables(int[] resta, boolean[] esVocal, int[][] variableBalanc, int[] variables) {
+        int n = 0, vocals = 0, consonants = 0;
+        for (int s = 0; s < resta.length; s++) {
+            for (int j = 0; j < Math.min(resta[s], COPIES); j++) variables[n++] = s * COPIES + j;
+            if (s == resta.length - 1) continue;
+            if (esVocal[s]) vocals += resta[s];
+            else consonants += resta[s];
+        }
+        if (vocals + consonants <= MAX_FITXES) variables[n++] = variableBalanc[vocals][consonants];
+        return n;
+    }
+
+    /**
+     * Resol un sistema lineal per eliminació gaussiana amb pivotatge parcial.
+     * @param a Matriu ampliada del sistema (es modifica).
+     * @return Solució del sistema.
+     */
+    private static double[] resoldre(double[][] a) {
+        int n = a.length;
+        for (int i = 0; i < n; i++) {
+            int pivot = i;
+            for (int f = i + 1; f < n; f++) if (Math.abs(a[f][i]) > Math.abs(a[pivot][i])) pivot = f;
+            double[] t = a[i]; a[i] = a[pivot]; a[pivot] = t;
+            for (int f = i + 1; f < n; f++) {
+                double factor = a[f][i] / a[i][i];
+                if (factor == 0) continue;
+                for (int c = i; c <= n; c++) a[f][c] -= factor * a[i][c];
+            }
+        }
+        double[] x = new double[n];
+        for (int i = n - 1; i >= 0; i--) {
+            double suma = a[i][n];
+            for (int c = i + 1; c < n; c++) suma -= a[i][c] * x[c];
+            x[i] = suma / a[i][i];
+        }
+        return x;
+    }
+
+    /**
+     * Recorre tots els multiconjunts de com a màxim {@link #MAX_FITXES} fitxes i n'assigna el valor: el del
+     * model, corregit cap a la mitjana observada segons el nombre d'observacions.
+     * @param taula Taula on s'escriuen els valors.
+     * @param resta Multiconjunt en construcció.
+     * @param simbol Símbol que es decideix en aquesta crida.
+     * @param fitxes Fitxes que ja té el multiconjunt.
+     * @param pesos Pesos del model.
+     * @param esVocal Indica quins símbols són vocals.
+     * @param variableBalanc Variable de cada combinació de vocals i consonants.
+     * @param variables Vector de treball per a les variables actives.
+     * @param observades Suma de diferències i nombre d'observacions per índex de la taula.
+     */
+    private static void omplir(ValorsResta taula, int[] resta, int simbol, int fitxes, double[] pesos,
+                               boolean[] esVocal, int[][] variableBalanc, int[] variables,
+                               Map<Integer, double[]> observades) {
+        if (simbol == resta.length) {
+            if (fitxes == 0) return;
+            double valor = 0;
+            int n = variables(resta, esVocal, variableBalanc, variables);
+            for (int j = 0; j < n; j++) valor += pesos[variables[j]];
+            int index = taula.index(resta);
+            double[] o = observades.get(index);
+            if (o != null) valor += o[1] / (o[1] + PES_MODEL) * (o[0] / o[1] - valor);
+            taula.setValor(index, (int) Math.round(2 * valor));
+            return;
+        }
+        for (int c = 0; fitxes + c <= MAX_FITXES; c++) {
+            resta[simbol] = c;
+            omplir(taula, resta, simbol + 1, fitxes + c, pesos, esVocal, variableBalanc, variables, observades);
+        }
+        resta[simbol] = 0;
+    }
+}
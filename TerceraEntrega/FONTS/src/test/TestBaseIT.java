@@ -17,8 +17,8 @@ public abstract class TestBaseIT {
 
     protected ControladorDomini ctrl;
 
-    // Diccionaris i alfabets carregats només una vegada per idioma
-    protected static final Map<String, List<String>> diccionaris = new HashMap<>();
+    // Diccionaris (compartits a través del registre) i alfabets carregats només una vegada per idioma
+    protected static final Map<String, Diccionari> diccionaris = new HashMap<>();
     protected static final Map<String, Map<String, util.Pair<Integer, Integer>>> alfabets = new HashMap<>();
 
     /**
@@ -33,7 +33,7 @@ public abstract class TestBaseIT {
         for (String idioma : idiomes) {
             try {
                 persistencia.ControladorPersistencia cp = persistencia.ControladorPersistencia.getInstance();
-                diccionaris.put(idioma, cp.importarParaulesDiccionari(idioma));
+                diccionaris.put(idioma, RegistreDiccionaris.getInstance().obtenir(idioma));
                 alfabets.put(idioma, cp.importarAlfabet(idioma));
             } catch (Exception e) {
                 throw new RuntimeException("Error carregant diccionari/alfabet per " + idioma, e);
@@ -245,8 +245,8 @@ public abstract class TestBaseIT {
      * @author Alexander de Jong
      */
     protected boolean estaAlDiccionari(String paraula, String idioma) {
-        List<String> dict = diccionaris.get(idioma);
-        return dict != null && dict.contains(paraula.toUpperCase());
+        Diccionari dict = diccionaris.get(idioma);
+        return dict != null && dict.validarParaula(paraula.toUpperCase());
     }
 
     /**
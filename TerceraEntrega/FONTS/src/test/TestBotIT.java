@@ -1,8 +1,11 @@
 package test;
 
+import controller.GeneradorJugades;
 import model.*;
 import org.junit.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import util.*;
 import static org.junit.Assert.*;
 
@@ -247,5 +250,32 @@ public class TestBotIT extends TestBaseIT {
                     "jugador1", guanyador);
     }
 
+    /**
+     * Test: la pista per al jugador humà es calcula en un fil a part sense modificar la partida, una pista
+     * repetida surt de la memòria cau i una generació cancel·lada s'atura sense passar cap jugada.
+     */
+    @Test
+    public void testSuggerirJugades() throws Exception {
+        crearPartida("english", Dificultat.NORMAL, false, true);
+        forzarAtril(0, "RETAINS");
+        Jugador huma = ctrl.getPartida().getJugador(0);
+        List<Fitxa> atril = new ArrayList<>(huma.getFitxes());
+
+        List<Play> pistes = ctrl.suggerirJugades(3).get(10, TimeUnit.SECONDS);
+        assertEquals(3, pistes.size());
+        assertTrue(pistes.get(0).getScore() >= pistes.get(2).getScore());
+        assertTrue(estaAlDiccionari(pistes.get(0).getWord(), "english"));
+        assertEquals("La pista no ha de tocar l'atril", atril, huma.getFitxes());
+        assertFalse("La pista no ha de col·locar fitxes", ctrl.getTauler().getCasella(7, 7).teFitxa());
+
+        CompletableFuture<List<Play>> repetida = ctrl.suggerirJugades(3);
+        assertTrue("La pista repetida ha de sortir de la memòria cau", repetida.isDone());
+        assertEquals(pistes.toString(), repetida.get().toString());
+
+        GeneradorJugades generador = new GeneradorJugades(ctrl.getPartida().getDiccionari());
+        List<Play> cancellades = new ArrayList<>();
+        generador.generar(ctrl.getTauler(), atril, cancellades::add, () -> true);
+        assertTrue("Una generació cancel·lada no ha de passar jugades", cancellades.isEmpty());
+    }
 
 }
@@ -0,0 +1,397 @@
+package test;
+
+import model.Diccionari;
+import util.*;
+import org.junit.*;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import static org.junit.Assert.*;
+
+/**
+ * Tests d'integració del diccionari i de les seves representacions del DAWG.
+ * Fa servir el diccionari anglès real, que és el que es distribueix amb el projecte.
+ */
+public class TestDiccionariIT {
+
+    /** Paraules del diccionari anglès ja convertides */
+    private static List<String> paraules;
+    /** Alfabet anglès */
+    private static Map<String, Pair<Integer, Integer>> alfabet;
+    /** Diccionari anglès construït un sol cop per tots els tests */
+    private static Diccionari diccionari;
+
+    /**
+     * Carrega el diccionari anglès una sola vegada.
+     */
+    @BeforeClass
+    public static void carregarDiccionari() {
+        persistencia.ControladorPersistencia cp = persistencia.ControladorPersistencia.getInstance();
+        paraules = cp.importarParaulesDiccionari("english");
+        alfabet = cp.importarAlfabet("english");
+        diccionari = new Diccionari("english", paraules, alfabet);
+    }
+
+    /**
+     * Test: el graf compacte conté exactament les paraules d'entrada.
+     * Comprova que el recorregut del DAWG congelat retorna totes les paraules, sense cap de més.
+     */
+    @Test
+    public void testGrafCompacteContéTotesLesParaules() {
+        List<String> esperades = new ArrayList<>(new TreeSet<>(paraules));
+        assertEquals("El DAWG ha de contenir exactament les paraules del fitxer", esperades, diccionari.getParaules());
+    }
+
+    /**
+     * Test: validació de paraules, prefixos i paraules inexistents.
+     */
+    @Test
+    public void testValidarParaula() {
+        assertTrue(diccionari.validarParaula("HELLO"));
+        assertTrue(diccionari.validarParaula("AA"));
+        assertFalse("Un prefix no és paraula", diccionari.validarParaula("XYLOPHON"));
+        assertFalse("Un prefix no és paraula", diccionari.validarParaula("AAHE"));
+        assertFalse(diccionari.validarParaula(""));
+        assertFalse(diccionari.validarParaula("QQQQ"));
+        assertFalse("Els caràcters fora de l'alfabet no tenen fill", diccionari.validarParaula("HELLO#"));
+    }
+
+    /**
+     * Test: validació sense Strings sobre seqüències, fragments de vectors i trams del tauler.
+     */
+    @Test
+    public void testValidarParaulaSenseString() {
+        assertTrue(diccionari.validarParaula(new StringBuilder("HEL").append("LO")));
+        char[] lletres = "XXHELLOXX".toCharArray();
+        assertTrue(diccionari.validarParaula(lletres, 2, 7));
+        assertFalse("Un fragment que no és paraula", diccionari.validarParaula(lletres, 2, 8));
+        assertFalse(diccionari.validarParaula(lletres, 0, 0));
+
+        model.Tauler tauler = new model.Tauler(15);
+        String paraula = "HELLO";
+        for (int i = 0; i < paraula.length(); i++) {
+            if (i == 2) continue;   // es deixa buida la tercera casella
+            tauler.getCasella(7, 3 + i).colocarFitxa(new model.Fitxa(paraula.charAt(i), 1));
+        }
+        assertFalse("Una casella buida sense lletra no és vàlida", diccionari.validarParaula(tauler, 7, 3, true, 5));
+        assertTrue("La casella buida es llegeix com la lletra provada", diccionari.validarParaula(tauler, 7, 3, true, 5, 'L'));
+        assertFalse(diccionari.validarParaula(tauler, 7, 3, true, 5, 'X'));
+        tauler.getCasella(7, 5).colocarFitxa(new model.Fitxa('L', 1));
+        assertTrue(diccionari.validarParaula(tauler, 7, 3, true, 5));
+        assertFalse("En vertical el tram no forma la paraula", diccionari.validarParaula(tauler, 7, 3, false, 5));
+        assertFalse("Un tram que surt del tauler no és vàlid", diccionari.validarParaula(tauler, 7, 12, true, 5));
+    }
+
+    /**
+     * Test: el graf compacte gestiona els caràcters unificats dels dígrafs.
+     * Les lletres fora de l'A-Z reben codis propis i es recorren en ordre de caràcter.
+     */
+    @Test
+    public void testDigrafsAlGrafCompacte() {
+        List<String> catala = Arrays.asList("AnS", "CA·A", "CAnA", "CASA", "COn");
+        Collections.sort(catala);
+        Diccionari d = new Diccionari("catalan", catala, new HashMap<>());
+        DAWGCompacte graf = d.getGraf();
+
+        assertEquals(catala, d.getParaules());
+        assertTrue(d.validarParaula("CA·A"));
+        assertTrue(d.validarParaula("AnS"));
+        assertFalse(d.validarParaula("CAn"));
+        assertEquals(28, graf.getNumLletres());
+        assertEquals('n', graf.getLletra(graf.getCodi('n')));
+        assertEquals(-1, graf.getCodi('Ç'));
+    }
+
+    /**
+     * Test: el graf compacte és mínim i comparteix sufixos.
+     * Dues paraules amb la mateixa terminació han de compartir els nodes finals.
+     */
+    @Test
+    public void testGrafCompacteCompartiexSufixos() {
+        Diccionari d = new Diccionari("prova", Arrays.asList("CASA", "MASA"), new HashMap<>());
+        DAWGCompacte graf = d.getGraf();
+        int ca = graf.getFill(graf.getFill(graf.getArrel(), 'C'), 'A');
+        int ma = graf.getFill(graf.getFill(graf.getArrel(), 'M'), 'A');
+        assertEquals("Els sufixos iguals han de ser el mateix node", ca, ma);
+        assertEquals("arrel, C/M, A, S i A final", 5, graf.getNumNodes());
+    }
+
+    /**
+     * Test: la imatge binària del DAWG es pot escriure i tornar a obrir projectada a memòria.
+     * El graf obert des del fitxer ha de ser fora del heap i contenir les mateixes paraules.
+     */
+    @Test
+    public void testImatgeBinariaProjectada() throws IOException {
+        Path fitxer = Files.createTempFile("english", ".dawg");
+        try {
+            try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.WRITE)) {
+                diccionari.getGraf().escriureImatge(canal, 12345L);
+            }
+            MappedByteBuffer imatge;
+            try (FileChannel canal = FileChannel.open(fitxer, StandardOpenOption.READ)) {
+                imatge = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            }
+            assertEquals(12345L, DAWGCompacte.llegirSignatura(imatge));
+
+            Diccionari projectat = new Diccionari("english", DAWGCompacte.deImatge(imatge), alfabet);
+            assertTrue("El graf ha de llegir directament del fitxer", projectat.getGraf().esForaDelHeap());
+            assertEquals(diccionari.getGraf().getNumNodes(), projectat.getGraf().getNumNodes());
+            assertEquals(diccionari.getParaules(), projectat.getParaules());
+            assertTrue(projectat.validarParaula("HELLO"));
+            assertFalse(projectat.validarParaula("XYLOPHON"));
+        } finally {
+            Files.deleteIfExists(fitxer);
+        }
+    }
+
+    /**
+     * Test: una imatge que no és un DAWG es rebutja.
+     */
+    @Test(expected = IOException.class)
+    public void testImatgeInvalida() throws IOException {
+        DAWGCompacte.deImatge(java.nio.ByteBuffer.wrap("no sóc un DAWG, només text".getBytes()));
+    }
+
+    /**
+     * Test: un diccionari amb el graf projectat es pot serialitzar (per exemple, en guardar una partida).
+     */
+    @Test
+    public void testSerialitzacioGrafCompacte() throws Exception {
+        Diccionari petit = new Diccionari("prova", Arrays.asList("CASA", "COSA", "MASA"), new HashMap<>());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(petit);
+        }
+        Diccionari llegit;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            llegit = (Diccionari) in.readObject();
+        }
+        assertEquals(petit.getParaules(), llegit.getParaules());
+        assertTrue(llegit.validarParaula("COSA"));
+    }
+
+    /**
+     * Test: el constructor incremental ignora les repeticions i rebutja les paraules desordenades.
+     */
+    @Test
+    public void testConstructorOrdreIRepeticions() {
+        ConstructorDAWG constructor = new ConstructorDAWG();
+        constructor.afegirParaula("CAS");
+        constructor.afegirParaula("CASA");
+        constructor.afegirParaula("CASA");
+        assertFalse(constructor.esPotAfegir("CAS"));
+        assertTrue(constructor.esPotAfegir("COS"));
+        try {
+            constructor.afegirParaula("BOU");
+            fail("Una paraula anterior a l'última s'ha de rebutjar");
+        } catch (IllegalArgumentException e) {
+            // esperat
+        }
+        constructor.afegirParaula("COS");
+        List<String> resultat = new ArrayList<>();
+        constructor.construir().recorre(resultat);
+        assertEquals(Arrays.asList("CAS", "CASA", "COS"), resultat);
+    }
+
+    /**
+     * Test: una llista desordenada es construeix igualment (ordenant-la) i el graf resultant és mínim.
+     * TAP, TAPS, TOP i TOPS comparteixen la cua: arrel, T, A/O, P i S final.
+     */
+    @Test
+    public void testConstruccioDesordenadaIMinima() {
+        Diccionari d = new Diccionari("prova", Arrays.asList("TOPS", "TAP", "TOP", "TAPS", "TAP"), new HashMap<>());
+        assertEquals(Arrays.asList("TAP", "TAPS", "TOP", "TOPS"), d.getParaules());
+        assertEquals(5, d.getGraf().getNumNodes());
+        assertEquals(5, d.getGraf().getNumArcs());
+    }
+
+    /**
+     * Test: la construcció en paral·lel per particions dona exactament el mateix graf que la seqüencial.
+     * Es compara la imatge binària byte a byte, amb particions d'una i de dues lletres.
+     */
+    @Test
+    public void testConstruccioParallelaIgualQueSequencial() throws IOException {
+        List<String> ordenades = new ArrayList<>(new TreeSet<>(paraules));
+        ConstructorDAWG sequencial = new ConstructorDAWG();
+        for (String paraula : ordenades) sequencial.afegirParaula(paraula);
+        byte[] esperada = imatge(sequencial.construir());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int clau = 1; clau <= 3; clau++) {
+                DAWGCompacte parallel = ConstructorDAWG.construirEnParallel(ordenades, clau, pool);
+                assertArrayEquals("Clau de " + clau + " lletres", esperada, imatge(parallel));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test: les paraules més curtes que la clau de partició i els sufixos compartits entre particions.
+     */
+    @Test
+    public void testConstruccioParallelaParaulesCurtes() {
+        List<String> llista = Arrays.asList("A", "AA", "AB", "ABS", "B", "BA", "BAS", "CASA", "MASA");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            DAWGCompacte graf = ConstructorDAWG.construirEnParallel(llista, 2, pool);
+            List<String> resultat = new ArrayList<>();
+            graf.recorre(resultat);
+            assertEquals(llista, resultat);
+            int ca = graf.getFill(graf.getFill(graf.getArrel(), 'C'), 'A');
+            int ma = graf.getFill(graf.getFill(graf.getArrel(), 'M'), 'A');
+            assertEquals("Els sufixos de particions diferents s'han de compartir", ca, ma);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test: la càrrega en streaming des del fitxer dona el mateix graf que la construcció des de la llista.
+     */
+    @Test
+    public void testConstruccioEnStreaming() throws IOException {
+        DAWGCompacte streaming = persistencia.ControladorPersistencia.getInstance().construirGrafDiccionari("english");
+        assertArrayEquals(imatge(diccionari.getGraf()), imatge(streaming));
+    }
+
+    /**
+     * Test: amb un idioma amb dígrafs només es guarden a part les paraules que la conversió modifica,
+     * i el graf resultant és el mateix que el construït des de la llista ordenada.
+     */
+    @Test
+    public void testConstruccioEnStreamingAmbDigrafs() throws IOException {
+        StringBuilder text = new StringBuilder();
+        List<String> convertides = new ArrayList<>();
+        int modificades = 0;
+        for (String paraula : diccionari.getParaules()) {
+            text.append(paraula).append('\n');
+            String convertida = DigrafMapper.convertirParaula(paraula, "castellano");
+            if (!convertida.equals(paraula)) modificades++;
+            convertides.add(convertida);
+        }
+        Collections.sort(convertides);
+
+        persistencia.GestorDiccionari gestor = new persistencia.GestorDiccionari();
+        DAWGCompacte streaming = gestor.construirGraf(new BufferedReader(new StringReader(text.toString())), "castellano");
+        assertTrue(modificades > 0);
+        assertEquals(modificades, gestor.getParaulesApart());
+        assertTrue(gestor.getParaulesApart() < diccionari.getParaules().size() / 5);
+
+        Diccionari esperat = new Diccionari("castellano", convertides, new HashMap<>());
+        assertArrayEquals(imatge(esperat.getGraf()), imatge(streaming));
+    }
+
+    /**
+     * Test: l'iterador de paraules recorre el graf en el mateix ordre que el recorregut complet.
+     */
+    @Test
+    public void testIteradorParaules() {
+        Iterator<String> it = diccionari.getGraf().iteradorParaules();
+        for (String esperada : diccionari.getParaules()) {
+            assertTrue(it.hasNext());
+            assertEquals(esperada, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Test: la unió d'un graf amb paraules desordenades (com les que deixa la conversió de dígrafs).
+     */
+    @Test
+    public void testUnirParaulesDesordenades() {
+        Diccionari base = new Diccionari("catalan", Arrays.asList("ANS", "CASA", "COS"), new HashMap<>());
+        DAWGCompacte unit = ConstructorDAWG.unir(base.getGraf(), Arrays.asList("CAnA", "AnS", "CASA", "BOU"));
+        List<String> resultat = new ArrayList<>();
+        unit.recorre(resultat);
+        assertEquals(Arrays.asList("ANS", "AnS", "BOU", "CASA", "CAnA", "COS"), resultat);
+    }
+
+    /**
+     * Test: les lletres possibles d'un forat coincideixen amb provar totes les lletres una per una,
+     * tant amb text com llegint les fitxes del tauler.
+     */
+    @Test
+    public void testLletresPossibles() {
+        DAWGCompacte g = diccionari.getGraf();
+        String[][] casos = { {"HELL", ""}, {"", "AT"}, {"QU", "Z"}, {"", ""}, {"XYZ", "Q"}, {"C", "T"}, {"", "OOKING"} };
+        for (String[] cas : casos) {
+            int esperada = 0;
+            for (int codi = 0; codi < g.getNumLletres(); codi++) {
+                if (diccionari.validarParaula(cas[0] + g.getLletra(codi) + cas[1])) esperada |= 1 << codi;
+            }
+            assertEquals(cas[0] + "_" + cas[1], esperada, diccionari.lletresPossibles(cas[0], cas[1]));
+        }
+        assertEquals(1 << ('O' - 'A'), diccionari.lletresPossibles("HELL", "") & (1 << ('O' - 'A')));
+
+        model.Tauler tauler = new model.Tauler(15);
+        String paraula = "CAT";
+        for (int i = 0; i < paraula.length(); i++) {
+            if (i == 1) continue;
+            tauler.getCasella(4 + i, 9).colocarFitxa(new model.Fitxa(paraula.charAt(i), 1));
+        }
+        assertEquals(diccionari.lletresPossibles("C", "T"), diccionari.lletresPossibles(tauler, 5, 9, false));
+        assertEquals("En horitzontal no hi ha veïnes: lletres d'una sola lletra",
+                diccionari.lletresPossibles("", ""), diccionari.lletresPossibles(tauler, 5, 9, true));
+        assertEquals(diccionari.lletresPossibles("", "C"), diccionari.lletresPossibles(tauler, 3, 9, false));
+    }
+
+    /**
+     * Test: el GADDAG conté cada paraula partida per tots els punts possibles, i cap altra cadena.
+     */
+    @Test
+    public void testGADDAGTotsElsTalls() {
+        List<String> llista = Arrays.asList("CARE", "CAR", "BAR", "ARE", "RACE", "nAS");
+        GADDAG gaddag = GADDAG.construir(llista);
+        DAWGCompacte g = gaddag.getGraf();
+        for (String paraula : llista) {
+            assertTrue(paraula, gaddag.conte(paraula));
+            for (int tall = 1; tall <= paraula.length(); tall++) {
+                StringBuilder cadena = new StringBuilder(paraula.substring(0, tall)).reverse();
+                if (tall < paraula.length()) cadena.append(GADDAG.SEPARADOR).append(paraula.substring(tall));
+                int node = g.getArrel();
+                for (int i = 0; i < cadena.length() && node >= 0; i++) node = g.getFill(node, cadena.charAt(i));
+                assertTrue(cadena.toString(), node >= 0 && g.esFinal(node));
+            }
+        }
+        assertFalse(gaddag.conte("CA"));
+        assertFalse(gaddag.conte("BARE"));
+        assertFalse(gaddag.conte(""));
+
+        List<String> cadenes = new ArrayList<>();
+        g.recorre(cadenes);
+        int esperades = 0;
+        for (String paraula : llista) esperades += paraula.length();
+        assertEquals("Una cadena per cada tall de cada paraula", esperades, cadenes.size());
+    }
+
+    /**
+     * Test: el GADDAG del diccionari es construeix una sola vegada i té les mateixes paraules que el DAWG.
+     */
+    @Test
+    public void testGADDAGDelDiccionari() {
+        Diccionari d = new Diccionari("english", Arrays.asList("HELLO", "HELP", "YELLOW"), alfabet);
+        assertFalse(d.teGADDAG());
+        GADDAG gaddag = d.getGADDAG();
+        assertSame(gaddag, d.getGADDAG());
+        for (String paraula : d.getParaules()) assertTrue(gaddag.conte(paraula));
+        assertFalse(gaddag.conte("HELL"));
+        assertTrue("La mida inclou el GADDAG", d.getMidaBytes() > d.getGraf().getMidaBytes() + gaddag.getGraf().getMidaBytes());
+    }
+
+    /**
+     * Escriu la imatge binària d'un graf en memòria.
+     * @param graf Graf a escriure.
+     * @return Bytes de la imatge.
+     */
+    private static byte[] imatge(DAWGCompacte graf) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        graf.escriureImatge(Channels.newChannel(bytes), 0L);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,649 @@
+package test;
+
+import controller.ControladorMaquina;
+import controller.GeneradorJugades;
+import model.*;
+import util.*;
+import org.junit.*;
+import java.util.*;
+import java.util.concurrent.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests d'integració de la generació de jugades de la màquina.
+ * Fa servir el diccionari anglès real i partides preparades a mà (no depèn de TestBaseIT).
+ */
+public class TestGeneradorJugadesIT {
+
+    /** Diccionari anglès compartit per tots els tests */
+    private static Diccionari diccionari;
+
+    /**
+     * Obté el diccionari anglès del registre una sola vegada.
+     */
+    @BeforeClass
+    public static void carregarDiccionari() {
+        persistencia.ControladorPersistencia.getInstance();
+        diccionari = RegistreDiccionaris.getInstance().obtenir("english");
+    }
+
+    /**
+     * Allibera el diccionari del registre.
+     */
+    @AfterClass
+    public static void alliberarDiccionari() {
+        RegistreDiccionaris.getInstance().alliberar(diccionari);
+    }
+
+    /**
+     * Test: amb el GADDAG, la primera jugada passa pel centre i forma una paraula vàlida.
+     */
+    @Test
+    public void testGADDAGPrimeraJugada() {
+        Partida partida = crearPartida("RETAINS");
+        ControladorMaquina maquina = new ControladorMaquina(partida, ControladorMaquina.Generador.GADDAG);
+        assertTrue(maquina.jugarTorn("BOT1"));
+
+        assertTrue("La primera paraula ha d'ocupar el centre", partida.getTauler().getCasella(7, 7).teFitxa());
+        List<String> paraules = paraulesDelTauler(partida.getTauler());
+        assertEquals(1, paraules.size());
+        assertTrue(paraules.get(0), diccionari.validarParaula(paraules.get(0)));
+        assertEquals("Amb RETAINS es pot fer una paraula de 7 lletres", 7, paraules.get(0).length());
+    }
+
+    /**
+     * Test: amb el GADDAG, totes les paraules que queden al tauler (principal i creuades) són vàlides
+     * i la jugada connecta amb les fitxes que ja hi havia.
+     */
+    @Test
+    public void testGADDAGJugadesValidesAmbFitxes() {
+        for (String rack : Arrays.asList("AEIRST#", "QUZXAEO", "BCDFGHL")) {
+            Partida partida = crearPartida(rack);
+            Tauler tauler = partida.getTauler();
+            colocar(tauler, 7, 5, true, "HELLO");
+            colocar(tauler, 5, 9, false, "WORLD");
+            int fitxesAbans = comptarFitxes(tauler);
+
+            ControladorMaquina maquina = new ControladorMaquina(partida, ControladorMaquina.Generador.GADDAG);
+            maquina.jugarTorn("BOT1");
+
+            if (comptarFitxes(tauler) > fitxesAbans) {
+                for (String paraula : paraulesDelTauler(tauler)) {
+                    assertTrue("Paraula invàlida amb l'atril " + rack + ": " + paraula, diccionari.validarParaula(paraula));
+                }
+            }
+        }
+    }
+
+    /**
+     * Test: amb lletres repetides i un comodí a l'atril, la màquina fa una jugada amb fitxes del seu atril
+     * i el comodí que no col·loca continua sent un comodí.
+     */
+    @Test
+    public void testAtrilAmbComodiIRepetides() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            Partida partida = crearPartida("EEE#RST");
+            Tauler tauler = partida.getTauler();
+            colocar(tauler, 7, 5, true, "HELLO");
+            Jugador bot = partida.getJugador("BOT1");
+            Fitxa comodi = bot.getFitxes().get(3);
+            int fitxesAbans = comptarFitxes(tauler);
+
+            ControladorMaquina maquina = new ControladorMaquina(partida, generador);
+            assertTrue(maquina.jugarTorn("BOT1"));
+
+            int colocades = comptarFitxes(tauler) - fitxesAbans;
+            assertTrue(generador + ": la màquina ha de col·locar fitxes", colocades > 0);
+            assertEquals(generador.toString(), 7, colocades + bot.getFitxes().size());
+            if (bot.getFitxes().contains(comodi)) {
+                assertTrue(generador + ": el comodí no col·locat no ha de canviar", comodi.esComodin());
+            }
+        }
+    }
+
+    /**
+     * Test: les millors K jugades coincideixen amb les de més puntuació de totes les jugades generades,
+     * i la jugada que fa la màquina és la primera de puntuació màxima.
+     */
+    @Test
+    public void testConsumidorsDeJugades() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            Partida partida = crearPartida("AEIRST#");
+            colocar(partida.getTauler(), 7, 5, true, "HELLO");
+            ControladorMaquina maquina = new ControladorMaquina(partida, generador);
+
+            TotesLesJugades totes = new TotesLesJugades();
+            maquina.generarJugades("BOT1", totes);
+            assertTrue(generador + ": ha d'haver-hi jugades", totes.getJugades().size() > 5);
+
+            MillorsJugades millors = new MillorsJugades(5);
+            maquina.generarJugades("BOT1", millors);
+            List<Play> ordenades = new ArrayList<>(totes.getJugades());
+            ordenades.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+            assertEquals(5, millors.getJugades().size());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(generador.toString(), ordenades.get(i).getScore(), millors.getJugades().get(i).getScore());
+            }
+            assertEquals(ordenades.get(0).toString(), millors.getMillor().toString());
+
+            List<Play> rebudes = new ArrayList<>();
+            maquina.generarJugades("BOT1", rebudes::add);
+            assertEquals(totes.getJugades().size(), rebudes.size());
+
+            maquina.jugarTorn("BOT1");
+            List<Jugada> fetes = partida.getJugadesRealitzades();
+            assertEquals(millors.getMillor().getWord(), fetes.get(fetes.size() - 1).getParaula());
+        }
+    }
+
+    /**
+     * Test: els dos generadors troben exactament les mateixes jugades, també a la primera jugada i amb lletres
+     * fora de l'A-Z (que tenen codis diferents al GADDAG), i la jugada del DAWG deixa totes les paraules del
+     * tauler vàlides.
+     */
+    @Test
+    public void testGeneradorsMateixesJugades() {
+        for (String rack : Arrays.asList("AEIRST#", "QUZXAEO", "BCDFGHL")) {
+            for (boolean ambFitxes : new boolean[] {false, true}) {
+                Partida partida = crearPartida(rack);
+                Tauler tauler = partida.getTauler();
+                if (ambFitxes) {
+                    colocar(tauler, 7, 5, true, "HELLO");
+                    colocar(tauler, 5, 9, false, "WORLD");
+                }
+
+                Set<String> dawg = new HashSet<>();
+                new ControladorMaquina(partida, ControladorMaquina.Generador.DAWG).generarJugades("BOT1", j -> dawg.add(j.toString()));
+                Set<String> gaddag = new HashSet<>();
+                new ControladorMaquina(partida, ControladorMaquina.Generador.GADDAG).generarJugades("BOT1", j -> gaddag.add(j.toString()));
+                assertEquals("Atril " + rack, gaddag, dawg);
+
+                int fitxesAbans = comptarFitxes(tauler);
+                new ControladorMaquina(partida).jugarTorn("BOT1");
+                if (comptarFitxes(tauler) > fitxesAbans) {
+                    for (String paraula : paraulesDelTauler(tauler)) {
+                        assertTrue("Paraula invàlida amb l'atril " + rack + ": " + paraula, diccionari.validarParaula(paraula));
+                    }
+                }
+            }
+        }
+
+        List<String> paraules = new ArrayList<>(Arrays.asList("AnS", "CA·A", "CAnA", "CASA", "COn", "nAS", "SAn"));
+        Collections.sort(paraules);
+        Diccionari digrafs = new Diccionari("catalan", paraules, new HashMap<>());
+        Tauler tauler = new Tauler(15);
+        colocar(tauler, 7, 5, true, "CASA");
+        for (String rack : Arrays.asList("nAS", "·n#", "O#")) {
+            Set<String> dawg = new HashSet<>();
+            new GeneradorJugades(digrafs, ControladorMaquina.Generador.DAWG, false).generar(tauler, fitxes(rack), j -> dawg.add(j.toString()));
+            Set<String> gaddag = new HashSet<>();
+            new GeneradorJugades(digrafs, ControladorMaquina.Generador.GADDAG, false).generar(tauler, fitxes(rack), j -> gaddag.add(j.toString()));
+            assertFalse("Atril " + rack, dawg.isEmpty());
+            assertEquals("Atril " + rack, dawg, gaddag);
+        }
+    }
+
+    /**
+     * Test: la puntuació que el generador calcula per cada jugada és la mateixa que dona el tauler en col·locar-la,
+     * també amb comodins (que valen 0), multiplicadors i paraules creuades.
+     */
+    @Test
+    public void testPuntuacioJugades() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            for (boolean ambFitxes : new boolean[] {false, true}) {
+                List<Play> jugades = new ArrayList<>();
+                new ControladorMaquina(partidaPuntuacio(ambFitxes), generador).generarJugades("BOT1", jugades::add);
+                assertFalse(jugades.isEmpty());
+
+                for (int i = 0; i < jugades.size(); i += 7) {
+                    Play jugada = jugades.get(i);
+                    Partida partida = partidaPuntuacio(ambFitxes);
+                    Tauler tauler = partida.getTauler();
+                    List<Fitxa> atril = new ArrayList<>(partida.getJugador("BOT1").getFitxes());
+                    List<Fitxa> noves = new ArrayList<>();
+                    String paraula = jugada.getWord();
+                    for (int k = 0; k < paraula.length(); k++) {
+                        int fila = jugada.isHorizontal() ? jugada.getFila() : jugada.getFila() + k;
+                        int columna = jugada.isHorizontal() ? jugada.getColumna() + k : jugada.getColumna();
+                        if (tauler.getCasella(fila, columna).teFitxa()) continue;
+                        boolean comodi = (jugada.getComodins() >> k & 1) != 0;
+                        Fitxa fitxa = null;
+                        for (Fitxa f : atril) {
+                            if (comodi ? f.esComodin() : !f.esComodin() && f.getLletra() == paraula.charAt(k)) fitxa = f;
+                        }
+                        assertNotNull(generador + ": fitxa per " + jugada, fitxa);
+                        atril.remove(fitxa);
+                        if (comodi) fitxa.setLletra(paraula.charAt(k));
+                        noves.add(fitxa);
+                    }
+                    Pair<List<Pair<Integer, Integer>>, Integer> resultat =
+                            tauler.colocarParaula(noves, paraula, jugada.getFila(), jugada.getColumna(), jugada.isHorizontal());
+                    assertFalse(resultat.first.isEmpty());
+                    assertEquals(generador + ": " + jugada, (int) resultat.second, jugada.getScore());
+                }
+            }
+        }
+    }
+
+    /**
+     * Test: amb dos comodins a l'atril, cap jugada es genera dues vegades i un comodí només fa d'una lletra
+     * quan ja no queda cap fitxa real d'aquesta lletra a l'atril.
+     */
+    @Test
+    public void testComodinsNomesSenseLletra() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            Partida partida = crearPartida("AEIRS##");
+            colocar(partida.getTauler(), 7, 5, true, "HELLO");
+            colocar(partida.getTauler(), 5, 9, false, "WORLD");
+            Tauler tauler = partida.getTauler();
+
+            List<Play> jugades = new ArrayList<>();
+            new ControladorMaquina(partida, generador).generarJugades("BOT1", jugades::add);
+            assertFalse(jugades.isEmpty());
+
+            Set<String> vistes = new HashSet<>();
+            for (Play jugada : jugades) {
+                assertTrue(generador + ": jugada repetida " + jugada, vistes.add(jugada + "/" + jugada.getComodins()));
+                String restants = "AEIRS";
+                String paraula = jugada.getWord();
+                for (int k = 0; k < paraula.length(); k++) {
+                    int fila = jugada.isHorizontal() ? jugada.getFila() : jugada.getFila() + k;
+                    int columna = jugada.isHorizontal() ? jugada.getColumna() + k : jugada.getColumna();
+                    if (tauler.getCasella(fila, columna).teFitxa() || (jugada.getComodins() >> k & 1) != 0) continue;
+                    restants = restants.replaceFirst(String.valueOf(paraula.charAt(k)), "");
+                }
+                for (int k = 0; k < paraula.length(); k++) {
+                    if ((jugada.getComodins() >> k & 1) == 0) continue;
+                    assertTrue(generador + ": comodí innecessari a " + jugada,
+                            restants.indexOf(paraula.charAt(k)) < 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test: la generació paral·lela i la seqüencial passen les mateixes jugades al consumidor i en el mateix ordre,
+     * i la màquina tria la mateixa millor jugada.
+     */
+    @Test
+    public void testGeneracioParalela() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            for (boolean ambFitxes : new boolean[] {false, true}) {
+                ControladorMaquina maquina = new ControladorMaquina(partidaPuntuacio(ambFitxes), generador);
+                Map<Boolean, List<String>> totes = new HashMap<>();
+                Map<Boolean, List<String>> millors = new HashMap<>();
+                for (boolean paralel : new boolean[] {false, true}) {
+                    maquina.setParalel(paralel);
+                    List<String> rebudes = new ArrayList<>();
+                    maquina.generarJugades("BOT1", j -> rebudes.add(j.toString()));
+                    totes.put(paralel, rebudes);
+                    MillorsJugades top = new MillorsJugades(10);
+                    maquina.generarJugades("BOT1", top);
+                    List<String> llista = new ArrayList<>();
+                    for (Play j : top.getJugades()) llista.add(j.toString());
+                    millors.put(paralel, llista);
+                }
+                assertFalse(totes.get(false).isEmpty());
+                assertEquals(generador.toString(), totes.get(false), totes.get(true));
+                assertEquals(generador.toString(), millors.get(false), millors.get(true));
+            }
+        }
+    }
+
+    /**
+     * Test: el generador sense partida troba les mateixes jugades que la màquina, no modifica el tauler ni
+     * l'atril i dona el mateix resultat quan es fa servir alhora des de diversos fils.
+     */
+    @Test
+    public void testGeneradorSensePartida() throws Exception {
+        Partida partida = partidaPuntuacio(true);
+        Tauler tauler = partida.getTauler();
+        List<Fitxa> fitxes = partida.getJugador("BOT1").getFitxes();
+        int fitxesTauler = comptarFitxes(tauler);
+        int fitxesAtril = fitxes.size();
+
+        Set<String> maquina = new HashSet<>();
+        new ControladorMaquina(partida).generarJugades("BOT1", j -> maquina.add(j.toString()));
+        Set<String> generades = new HashSet<>();
+        GeneradorJugades generador = new GeneradorJugades(diccionari);
+        generador.generar(tauler, fitxes, j -> generades.add(j.toString()));
+        assertFalse(generades.isEmpty());
+        assertEquals(maquina, generades);
+        assertEquals(fitxesTauler, comptarFitxes(tauler));
+        assertEquals(fitxesAtril, fitxes.size());
+
+        GeneradorJugades sequencial = new GeneradorJugades(diccionari, ControladorMaquina.Generador.GADDAG, false);
+        String esperades = sequencial.millors(tauler, fitxes, 10).toString();
+        ExecutorService fils = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> resultats = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                resultats.add(fils.submit(() -> sequencial.millors(tauler, fitxes, 10).toString()));
+            }
+            for (Future<String> resultat : resultats) assertEquals(esperades, resultat.get());
+        } finally {
+            fils.shutdown();
+        }
+        assertEquals(fitxesTauler, comptarFitxes(tauler));
+    }
+
+    /**
+     * Test: sense límit de temps es cobreixen tots els ancoratges; amb un límit molt curt la màquina només
+     * troba jugades que també troba sense límit, i amb un límit ampli el resultat és el mateix que sense.
+     */
+    @Test
+    public void testCercaAmbTempsLimitat() {
+        for (ControladorMaquina.Generador generador : ControladorMaquina.Generador.values()) {
+            Partida partida = crearPartida("ES##RTA");
+            colocar(partida.getTauler(), 7, 5, true, "HELLO");
+            colocar(partida.getTauler(), 5, 9, false, "WORLD");
+            ControladorMaquina maquina = new ControladorMaquina(partida, generador);
+
+            Set<String> totes = new HashSet<>();
+            maquina.generarJugades("BOT1", j -> totes.add(j.toString()));
+            assertTrue(maquina.getAncoratgesTotals() > 0);
+            assertEquals(maquina.getAncoratgesTotals(), maquina.getAncoratgesExplorats());
+            assertEquals(1.0, maquina.getCobertura(), 0.0);
+            MillorsJugades senseLimit = new MillorsJugades(1);
+            maquina.generarJugades("BOT1", senseLimit);
+
+            maquina.setTempsMaxim(1);
+            List<String> limitades = new ArrayList<>();
+            maquina.generarJugades("BOT1", j -> limitades.add(j.toString()));
+            assertTrue(totes.containsAll(limitades));
+            assertTrue(maquina.getCobertura() >= 0 && maquina.getCobertura() <= 1);
+
+            maquina.setTempsMaxim(60_000);
+            MillorsJugades ambLimit = new MillorsJugades(1);
+            maquina.generarJugades("BOT1", ambLimit);
+            assertEquals(1.0, maquina.getCobertura(), 0.0);
+            assertEquals(senseLimit.getMillor().getScore(), ambLimit.getMillor().getScore());
+        }
+    }
+
+    /**
+     * Test: a totes les dificultats la màquina fa una jugada vàlida; a FACIL explora només una part dels
+     * ancoratges i a la resta els explora tots.
+     */
+    @Test
+    public void testPerfilsDificultat() {
+        for (Dificultat dificultat : Dificultat.values()) {
+            Partida partida = crearPartida("AEIRST#", dificultat);
+            Tauler tauler = partida.getTauler();
+            colocar(tauler, 7, 5, true, "HELLO");
+            colocar(tauler, 5, 9, false, "WORLD");
+            int fitxesAbans = comptarFitxes(tauler);
+
+            ControladorMaquina maquina = new ControladorMaquina(partida);
+            maquina.setLlavor(1);
+            assertTrue(maquina.jugarTorn("BOT1"));
+            assertTrue(dificultat + ": la màquina ha de col·locar fitxes", comptarFitxes(tauler) > fitxesAbans);
+            for (String paraula : paraulesDelTauler(tauler)) {
+                assertTrue(dificultat + ": paraula invàlida " + paraula, diccionari.validarParaula(paraula));
+            }
+            if (dificultat.getFraccioAncoratges() < 1) {
+                assertTrue(dificultat.toString(), maquina.getAncoratgesExplorats() < maquina.getAncoratgesTotals());
+            } else {
+                assertEquals(dificultat.toString(), 1.0, maquina.getCobertura(), 0.0);
+            }
+        }
+    }
+
+    /**
+     * Test: a FACIL la candidata triada és de la zona mitjana i, amb més de dues candidates, mai la primera,
+     * també amb només tres; a NORMAL és sempre la primera.
+     */
+    @Test
+    public void testTriaCandidata() {
+        Random random = new Random(1);
+        for (int n = 3; n <= 8; n++) {
+            Set<Integer> triades = new HashSet<>();
+            for (int i = 0; i < 200; i++) triades.add(Dificultat.FACIL.triaCandidata(n, random));
+            assertFalse(n + " candidates: no ha de triar la primera", triades.contains(0));
+            assertTrue(n + " candidates: " + triades, Collections.max(triades) < n);
+            if (n > 4) assertTrue(n + " candidates: ha de variar", triades.size() > 1);
+        }
+        for (int i = 0; i < 20; i++) assertEquals("Amb tres candidates, la del mig", 1, Dificultat.FACIL.triaCandidata(3, random));
+        assertEquals(0, Dificultat.FACIL.triaCandidata(1, random));
+        assertEquals(0, Dificultat.NORMAL.triaCandidata(8, random));
+    }
+
+    /**
+     * Test: la taula de valors de resta assigna un índex diferent a cada multiconjunt, es recupera igual
+     * de la imatge binària i el diccionari d'english en carrega una de compatible.
+     */
+    @Test
+    public void testTaulaValorsResta() throws Exception {
+        DAWGCompacte graf = diccionari.getGraf();
+        ValorsResta taula = ValorsResta.buida(graf, 2);
+        int simbols = graf.getNumLletres() + 1;
+        assertEquals(1 + simbols + simbols * (simbols + 1) / 2, taula.getNumEntrades());
+
+        boolean[] vistos = new boolean[taula.getNumEntrades()];
+        int[] resta = new int[simbols];
+        assertEquals(0, taula.index(resta));
+        vistos[0] = true;
+        for (int a = 0; a < simbols; a++) {
+            for (int b = a; b < simbols; b++) {
+                for (int k = 1; k <= 2; k++) {
+                    Arrays.fill(resta, 0);
+                    resta[a]++;
+                    if (k == 2) resta[b]++;
+                    else if (b != a) continue;
+                    int index = taula.index(resta);
+                    assertTrue(index > 0 && index < vistos.length);
+                    assertFalse("Índex repetit: " + index, vistos[index]);
+                    vistos[index] = true;
+                    taula.setValor(index, index % 200 - 100);
+                }
+            }
+        }
+        for (boolean vist : vistos) assertTrue(vist);
+        resta[0] = 3;
+        assertEquals("Massa fitxes per a la taula", -1, taula.index(resta));
+        assertEquals(0, taula.getValor(resta));
+
+        java.io.ByteArrayOutputStream sortida = new java.io.ByteArrayOutputStream();
+        taula.escriureImatge(java.nio.channels.Channels.newChannel(sortida));
+        ValorsResta llegida = ValorsResta.deImatge(java.nio.ByteBuffer.wrap(sortida.toByteArray()));
+        assertTrue(llegida.esCompatible(graf));
+        assertEquals(taula.getNumEntrades(), llegida.getNumEntrades());
+        Arrays.fill(resta, 0);
+        resta[simbols - 1] = 1;
+        resta[graf.getCodi('Q')] = 1;
+        assertEquals(taula.getValor(resta), llegida.getValor(resta));
+
+        ValorsResta carregada = diccionari.getValorsResta();
+        assertNotNull("english ha de tenir taula de valors de resta", carregada);
+        assertTrue(carregada.esCompatible(graf));
+        Arrays.fill(resta, 0);
+        resta[simbols - 1] = 1;
+        int comodi = carregada.getValor(resta);
+        resta[simbols - 1] = 0;
+        resta[graf.getCodi('Q')] = 1;
+        int q = carregada.getValor(resta);
+        assertTrue("Quedar-se un comodí ha de valer més que quedar-se una Q", comodi > q);
+        assertSame("Afegir una paraula conserva la taula", carregada, diccionari.ambParaula("QZXQ").getValorsResta());
+        assertNull("Una lletra nova fa la taula incompatible", diccionari.ambParaula("CAnA").getValorsResta());
+
+        DAWGCompacte altre = new Diccionari("catalan", Arrays.asList("CAnA", "CASA"), new HashMap<>()).getGraf();
+        try {
+            new Diccionari("prova", altre, new HashMap<>(), taula);
+            fail("Una taula d'un altre alfabet no es pot associar al diccionari");
+        } catch (IllegalArgumentException e) {
+            // esperat
+        }
+    }
+
+    /**
+     * Test: a DIFICIL, amb poques fitxes a la bossa la màquina tria la jugada simulant el final de la partida
+     * dins del temps fixat, i amb la bossa plena no simula.
+     */
+    @Test
+    public void testSimulacioFinal() throws Exception {
+        Partida partida = crearPartida("AEIRST#", Dificultat.DIFICIL);
+        colocar(partida.getTauler(), 7, 5, true, "HELLO");
+        ControladorMaquina maquina = new ControladorMaquina(partida);
+        maquina.setLlavor(1);
+        assertTrue(maquina.jugarTorn("BOT1"));
+        assertEquals("Amb la bossa plena no se simula", 0, maquina.getSimulacions());
+
+        partida = crearPartida("AEIRST#", Dificultat.DIFICIL);
+        Tauler tauler = partida.getTauler();
+        colocar(tauler, 7, 5, true, "HELLO");
+        colocar(tauler, 5, 9, false, "WORLD");
+        Jugador contrari = partida.getJugador("BOT2");
+        partida.repartirFitxes("BOT2", partida.getBossa().size() - 5);
+        while (contrari.getFitxes().size() > 7) contrari.eliminarFitxa(contrari.getFitxes().get(0));
+        String abans = tauler.mostrarTauler();
+        int fitxesAbans = comptarFitxes(tauler);
+
+        maquina = new ControladorMaquina(partida);
+        maquina.setLlavor(1);
+        maquina.setTempsMaxim(300);
+        long inici = System.nanoTime();
+        assertTrue(maquina.jugarTorn("BOT1"));
+        long ms = (System.nanoTime() - inici) / 1_000_000;
+        assertTrue("Ha de simular el final", maquina.getSimulacions() > 0);
+        assertTrue("Ha de respectar el temps: " + ms + " ms", ms < 300 + 200);
+        assertTrue(comptarFitxes(tauler) > fitxesAbans);
+        assertNotEquals(abans, tauler.mostrarTauler());
+        for (String paraula : paraulesDelTauler(tauler)) {
+            assertTrue("Paraula invàlida: " + paraula, diccionari.validarParaula(paraula));
+        }
+    }
+
+    /**
+     * Test: a la simulació del final compten les fitxes que queden als atrils. Amb la bossa buida i un contrari
+     * que no pot jugar, la màquina tanca la partida amb una jugada de menys puntuació en lloc de fer la de més
+     * puntuació i quedar-se una Q que ja no pot col·locar.
+     */
+    @Test
+    public void testSimulacioFinalTanca() throws Exception {
+        Partida partida = crearPartida("AFQ", Dificultat.DIFICIL);
+        Tauler tauler = partida.getTauler();
+        colocar(tauler, 7, 5, true, "HELLO");
+        colocar(tauler, 5, 9, false, "WORLD");
+        partida.repartirFitxes("BOT2", partida.getBossa().size());
+        Jugador contrari = partida.getJugador("BOT2");
+        while (!contrari.getFitxes().isEmpty()) contrari.eliminarFitxa(contrari.getFitxes().get(0));
+        for (int i = 0; i < 4; i++) contrari.afegirFitxa(new Fitxa('Q', 10));
+        Jugador bot = partida.getJugador("BOT1");
+
+        GeneradorJugades generador = new GeneradorJugades(diccionari);
+        assertTrue("El contrari no ha de poder jugar", generador.millors(tauler, contrari.getFitxes(), 1).isEmpty());
+        Play millor = generador.millors(tauler, bot.getFitxes(), 1).get(0);
+        int novesMillor = 0;
+        for (int i = 0; i < millor.getWord().length(); i++) {
+            int f = millor.isHorizontal() ? millor.getFila() : millor.getFila() + i;
+            int c = millor.isHorizontal() ? millor.getColumna() + i : millor.getColumna();
+            if (!tauler.getCasella(f, c).teFitxa()) novesMillor++;
+        }
+        assertTrue("La jugada de més puntuació no ha de tancar", novesMillor < bot.getFitxes().size());
+
+        ControladorMaquina maquina = new ControladorMaquina(partida);
+        maquina.setLlavor(1);
+        assertTrue(maquina.jugarTorn("BOT1"));
+        assertTrue("Ha de simular el final", maquina.getSimulacions() > 0);
+        assertTrue("Ha de tancar la partida, però es queda " + bot.getFitxesString(), bot.getFitxes().isEmpty());
+    }
+
+    /**
+     * Crea les fitxes d'una paraula.
+     */
+    private static List<Fitxa> fitxes(String lletres) {
+        List<Fitxa> resultat = new ArrayList<>();
+        for (char c : lletres.toCharArray()) resultat.add(new Fitxa(c, 1));
+        return resultat;
+    }
+
+    /**
+     * Crea una partida de dos bots amb el diccionari anglès i un atril concret pel primer.
+     * @param atril Lletres de l'atril ('#' per un comodí).
+     * @return Partida preparada.
+     */
+    private Partida crearPartida(String atril) {
+        return crearPartida(atril, Dificultat.NORMAL);
+    }
+
+    /**
+     * Crea una partida amb el tauler buit, una dificultat concreta i el BOT1 amb l'atril indicat.
+     * @param atril Lletres de l'atril ('#' per un comodí).
+     * @param dificultat Dificultat de la partida.
+     * @return La partida.
+     */
+    private Partida crearPartida(String atril, Dificultat dificultat) {
+        Jugador bot = new Jugador("BOT1");
+        Map<String, Pair<Integer, Integer>> alfabet = diccionari.getAlfabet();
+        for (char c : atril.toCharArray()) {
+            Pair<Integer, Integer> valor = alfabet.get(String.valueOf(c));
+            bot.afegirFitxa(new Fitxa(c, valor == null ? 0 : valor.second));
+        }
+        List<Jugador> jugadors = new ArrayList<>(Arrays.asList(bot, new Jugador("BOT2")));
+        return new Partida(1, jugadors, new Tauler(15), diccionari, false, dificultat);
+    }
+
+    /**
+     * Crea la partida de les proves de puntuació: atril amb un comodí i, si cal, HELLO i WORLD al tauler.
+     * @param ambFitxes Si s'han de col·locar les paraules al tauler.
+     * @return La partida.
+     */
+    private Partida partidaPuntuacio(boolean ambFitxes) {
+        Partida partida = crearPartida("AEIRST#");
+        if (ambFitxes) {
+            colocar(partida.getTauler(), 7, 5, true, "HELLO");
+            colocar(partida.getTauler(), 5, 9, false, "WORLD");
+        }
+        return partida;
+    }
+
+    /**
+     * Col·loca una paraula directament al tauler, sense validar-la ni puntuar-la.
+     */
+    private static void colocar(Tauler tauler, int fila, int columna, boolean horitzontal, String paraula) {
+        for (int i = 0; i < paraula.length(); i++) {
+            int f = horitzontal ? fila : fila + i;
+            int c = horitzontal ? columna + i : columna;
+            if (tauler.getCasella(f, c).teFitxa()) continue;
+            Casella nova = new Casella(tauler.getCasella(f, c));
+            nova.colocarFitxa(new Fitxa(paraula.charAt(i), 1));
+            tauler.substituirCasella(f, c, nova);
+        }
+    }
+
+    /**
+     * Compta les fitxes col·locades al tauler.
+     */
+    private static int comptarFitxes(Tauler tauler) {
+        int total = 0;
+        for (int f = 0; f < tauler.getMida(); f++) {
+            for (int c = 0; c < tauler.getMida(); c++) {
+                if (tauler.getCasella(f, c).teFitxa()) total++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Retorna totes les paraules (tirades de dues o més fitxes) del tauler, en les dues direccions.
+     */
+    static List<String> paraulesDelTauler(Tauler tauler) {
+        List<String> paraules = new ArrayList<>();
+        int n = tauler.getMida();
+        for (int direccio = 0; direccio < 2; direccio++) {
+            for (int i = 0; i < n; i++) {
+                StringBuilder actual = new StringBuilder();
+                for (int j = 0; j <= n; j++) {
+                    Casella c = j == n ? null : (direccio == 0 ? tauler.getCasella(i, j) : tauler.getCasella(j, i));
+                    if (c != null && c.teFitxa()) {
+                        actual.append(c.getFitxa().getLletra());
+                    } else {
+                        if (actual.length() > 1) paraules.add(actual.toString());
+                        actual.setLength(0);
+                    }
+                }
+            }
+        }
+        return paraules;
+    }
+}
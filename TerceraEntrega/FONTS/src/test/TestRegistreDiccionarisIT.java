@@ -0,0 +1,168 @@
+package test;
+
+import model.Diccionari;
+import model.RegistreDiccionaris;
+import org.junit.*;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+
+/**
+ * Tests del registre de diccionaris compartits.
+ * Fan servir una font de diccionaris petits en memòria per controlar les càrregues i les signatures,
+ * i un últim test amb el diccionari anglès real a través de la capa de persistència.
+ */
+public class TestRegistreDiccionarisIT {
+
+    /**
+     * Font de proves: diccionaris de dues paraules, amb signatura modificable i comptador de càrregues.
+     */
+    private static class FontProva implements RegistreDiccionaris.Font {
+        final Map<String, Long> signatures = new ConcurrentHashMap<>();
+        final AtomicInteger carregues = new AtomicInteger();
+
+        @Override
+        public long signatura(String idioma) {
+            return signatures.getOrDefault(idioma, 1L);
+        }
+
+        @Override
+        public Diccionari carregar(String idioma) throws IOException {
+            if (idioma.equals("inexistent")) throw new IOException("No existeix");
+            carregues.incrementAndGet();
+            return new Diccionari(idioma, Arrays.asList("CASA", "COSA"), new HashMap<>());
+        }
+    }
+
+    private FontProva font;
+    private RegistreDiccionaris registre;
+
+    /**
+     * Crea un registre aïllat per a cada test.
+     */
+    @Before
+    public void setUp() {
+        font = new FontProva();
+        registre = new RegistreDiccionaris();
+        registre.setFont(font);
+    }
+
+    /**
+     * Test: el mateix idioma es carrega una sola vegada i es comparteix, comptant referències.
+     */
+    @Test
+    public void testCompartitIComptatgeDeReferencies() {
+        Diccionari a = registre.obtenir("catalan");
+        Diccionari b = registre.obtenir("CATALAN");
+        assertSame(a, b);
+        assertEquals(1, font.carregues.get());
+        assertEquals(2, registre.getReferencies(a));
+
+        registre.alliberar(a);
+        assertEquals(1, registre.getReferencies(a));
+        registre.alliberar(b);
+        assertEquals(0, registre.getReferencies(a));
+        assertEquals("Sense referències es queda a la memòria cau", 1, registre.getNumDiccionaris());
+        assertSame(a, registre.obtenir("catalan"));
+        assertEquals(1, font.carregues.get());
+    }
+
+    /**
+     * Test: moltes peticions concurrents del mateix idioma fan una sola càrrega.
+     */
+    @Test
+    public void testCarregaConcurrentUnicaVegada() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Diccionari>> resultats = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                resultats.add(pool.submit(() -> registre.obtenir("english")));
+            }
+            Diccionari primer = resultats.get(0).get();
+            for (Future<Diccionari> f : resultats) assertSame(primer, f.get());
+            assertEquals(1, font.carregues.get());
+            assertEquals(32, registre.getReferencies(primer));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Test: amb el pressupost superat s'eliminen els diccionaris sense referències menys usats,
+     * però mai els que estan en ús.
+     */
+    @Test
+    public void testEvictionLRUDinsDelPressupost() {
+        Diccionari catala = registre.obtenir("catalan");
+        long mida = catala.getMidaBytes();
+        registre.setPressupostBytes(2 * mida);
+
+        Diccionari castella = registre.obtenir("castellano");
+        registre.alliberar(catala);
+        registre.alliberar(castella);
+        registre.obtenir("castellano");   // castellano és ara el més usat
+        Diccionari angles = registre.obtenir("english");
+
+        assertEquals(2, registre.getNumDiccionaris());
+        assertEquals("El menys usat sense referències és el que surt", 0, registre.getReferencies(catala));
+        assertTrue(registre.getMidaBytes() <= 2 * mida);
+
+        registre.setPressupostBytes(0);
+        assertEquals("Els diccionaris en ús no s'eliminen", 2, registre.getNumDiccionaris());
+        registre.alliberar(angles);
+        assertEquals(1, registre.getNumDiccionaris());
+        assertEquals(3, font.carregues.get());
+    }
+
+    /**
+     * Test: quan canvia el fitxer (signatura) es carrega una versió nova; l'antiga es conserva mentre
+     * algú la faci servir i desapareix en alliberar-la.
+     */
+    @Test
+    public void testVersioNovaQuanCanviaLaSignatura() {
+        Diccionari antic = registre.obtenir("english");
+        font.signatures.put("english", 2L);
+        Diccionari nou = registre.obtenir("english");
+
+        assertNotSame(antic, nou);
+        assertEquals(2, registre.getNumDiccionaris());
+        registre.alliberar(antic);
+        assertEquals(1, registre.getNumDiccionaris());
+        assertEquals(1, registre.getReferencies(nou));
+    }
+
+    /**
+     * Test: una càrrega fallida no deixa cap entrada al registre.
+     */
+    @Test
+    public void testCarregaFallida() {
+        try {
+            registre.obtenir("inexistent");
+            fail("S'esperava un error de càrrega");
+        } catch (java.io.UncheckedIOException e) {
+            // esperat
+        }
+        assertEquals(0, registre.getNumDiccionaris());
+    }
+
+    /**
+     * Test: el registre global obté el diccionari anglès real a través de la persistència.
+     */
+    @Test
+    public void testRegistreGlobalAmbDiccionariReal() {
+        persistencia.ControladorPersistencia.getInstance();
+        RegistreDiccionaris global = RegistreDiccionaris.getInstance();
+        Diccionari a = global.obtenir("english");
+        Diccionari b = global.obtenir("english");
+        try {
+            assertSame(a, b);
+            assertTrue(a.validarParaula("HELLO"));
+            assertEquals("english", a.getIdioma());
+        } finally {
+            global.alliberar(a);
+            global.alliberar(b);
+        }
+    }
+}
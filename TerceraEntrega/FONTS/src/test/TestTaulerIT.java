@@ -0,0 +1,245 @@
+package test;
+
+import model.*;
+import util.*;
+import org.junit.*;
+import java.util.*;
+import static org.junit.Assert.*;
+
+/**
+ * Tests del tauler: còpies en escriptura, hash de les posicions i estat que es manté al col·locar i desfer jugades.
+ * Els taulers es preparen a mà i fan servir el diccionari anglès real (no depèn de TestBaseIT).
+ */
+public class TestTaulerIT {
+
+    /** Diccionari anglès, per les lletres possibles de cada casella */
+    private static Diccionari diccionari;
+
+    /**
+     * Obté el diccionari anglès del registre una sola vegada.
+     */
+    @BeforeClass
+    public static void carregarDiccionari() {
+        persistencia.ControladorPersistencia.getInstance();
+        diccionari = RegistreDiccionaris.getInstance().obtenir("english");
+    }
+
+    /**
+     * Allibera el diccionari del registre.
+     */
+    @AfterClass
+    public static void alliberarDiccionari() {
+        RegistreDiccionaris.getInstance().alliberar(diccionari);
+    }
+
+    /**
+     * Test: una còpia en escriptura del tauler no canvia l'original quan s'hi juga, només copia les caselles
+     * que toca i després de restaurar-la torna a ser igual que l'original.
+     */
+    @Test
+    public void testTaulerCopiaEnEscriptura() {
+        Tauler tauler = new Tauler(15);
+        colocar(tauler, 7, 5, true, "HELLO");
+        String abans = tauler.mostrarTauler();
+
+        Tauler copia = tauler.copiaEnEscriptura();
+        assertSame("Sense canvis, la còpia comparteix les caselles", tauler.getCasella(7, 7), copia.getCasella(7, 7));
+        Pair<List<Pair<Integer, Integer>>, Integer> res = copia.colocarParaula(fitxes("WRLD"), "WORLD", 6, 9, false);
+        assertEquals(4, res.first.size());
+        copia.confirmar(res.first);
+        assertEquals(abans, tauler.mostrarTauler());
+        assertTrue(copia.getCasella(6, 9).teFitxa());
+        assertFalse(tauler.getCasella(6, 9).teFitxa());
+        assertSame("Les caselles no tocades es continuen compartint", tauler.getCasella(0, 0), copia.getCasella(0, 0));
+
+        copia.restaurar();
+        assertEquals(abans, copia.mostrarTauler());
+        assertSame(tauler.getCasella(6, 9), copia.getCasella(6, 9));
+    }
+
+    /**
+     * Test: el hash de Zobrist del tauler depèn només de les fitxes col·locades, es manté en col·locar i desfer
+     * jugades i es conserva en les còpies i en serialitzar el tauler.
+     */
+    @Test
+    public void testHashTauler() throws Exception {
+        Tauler tauler = new Tauler(15);
+        assertEquals("El tauler buit té hash 0", 0, tauler.getHash());
+        Pair<List<Pair<Integer, Integer>>, Integer> hello = tauler.colocarParaula(fitxes("HELLO"), "HELLO", 7, 5, true);
+        long ambHello = tauler.getHash();
+        assertNotEquals(0, ambHello);
+        Pair<List<Pair<Integer, Integer>>, Integer> world = tauler.colocarParaula(fitxes("WRLD"), "WORLD", 6, 9, false);
+        long ambDues = tauler.getHash();
+        tauler.revertir2(world.first);
+        assertEquals("Desfer la jugada recupera el hash", ambHello, tauler.getHash());
+        tauler.revertir2(hello.first);
+        assertEquals(0, tauler.getHash());
+
+        Tauler altre = new Tauler(15);
+        altre.colocarParaula(fitxes("WORLD"), "WORLD", 6, 9, false);
+        altre.colocarParaula(fitxes("HELL"), "HELLO", 7, 5, true);
+        assertEquals("La mateixa posició per un altre ordre té el mateix hash", ambDues, altre.getHash());
+
+        Tauler ambComodi = new Tauler(15);
+        List<Fitxa> comodi = fitxes("HELLO");
+        comodi.set(0, new Fitxa('H', 0));
+        ambComodi.colocarParaula(comodi, "HELLO", 7, 5, true);
+        assertNotEquals("Un comodí no té la clau de la fitxa real", ambHello, ambComodi.getHash());
+
+        assertEquals(ambDues, altre.instantania().getHash());
+        Tauler copia = altre.copiaEnEscriptura();
+        assertEquals(ambDues, copia.getHash());
+        Pair<List<Pair<Integer, Integer>>, Integer> res = copia.colocarParaula(fitxes("S"), "HELLOS", 7, 5, true);
+        copia.confirmar(res.first);
+        assertNotEquals(ambDues, copia.getHash());
+        assertEquals(ambDues, altre.getHash());
+        copia.restaurar();
+        assertEquals(ambDues, copia.getHash());
+
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes)) {
+            out.writeObject(altre);
+        }
+        try (java.io.ObjectInputStream in = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals("El hash es recalcula en llegir el tauler", ambDues, ((Tauler) in.readObject()).getHash());
+        }
+    }
+
+    /**
+     * Test: les màscares d'ocupació del tauler donen les mateixes veïnes i ancoratges que recórrer les caselles,
+     * es mantenen en col·locar i desfer jugades i a les còpies, i detecten els forats entre fitxes noves.
+     */
+    @Test
+    public void testOcupacioTauler() {
+        Tauler tauler = new Tauler(15);
+        assertTrue(tauler.estaBuit());
+        assertEquals(0, tauler.getAncoratges(7, false));
+        Pair<List<Pair<Integer, Integer>>, Integer> hello = tauler.colocarParaula(fitxes("HELLO"), "HELLO", 7, 5, true);
+        assertFalse(tauler.estaBuit());
+        comprovarOcupacio(tauler);
+        Tauler copia = tauler.copiaEnEscriptura();
+        Pair<List<Pair<Integer, Integer>>, Integer> world = copia.colocarParaula(fitxes("WRLD"), "WORLD", 6, 9, false);
+        comprovarOcupacio(copia);
+        comprovarOcupacio(tauler);
+        comprovarOcupacio(copia.instantania());
+        assertEquals("Les fitxes de la mateixa jugada no són ancoratges", 0, copia.getAncoratges(9, true) & (1L << 8 | 1L << 10));
+
+        List<Pair<Integer, Integer>> forat = Arrays.asList(new Pair<>(7, 2), new Pair<>(7, 4));
+        assertTrue("El forat el tapa una fitxa nova", tauler.sonContigues(Arrays.asList(new Pair<>(7, 3), new Pair<>(7, 4)), true));
+        assertFalse("La casella (7, 3) és buida", tauler.sonContigues(forat, true));
+        assertTrue("Les fitxes del tauler omplen el forat", tauler.sonContigues(Arrays.asList(new Pair<>(7, 4), new Pair<>(7, 10)), true));
+        assertFalse("Un forat de dues caselles amb una fitxa al costat",
+                tauler.sonContigues(Arrays.asList(new Pair<>(6, 9), new Pair<>(9, 9)), false));
+        assertTrue(copia.sonContigues(Arrays.asList(new Pair<>(5, 9), new Pair<>(11, 9)), false));
+        assertFalse("Fitxes de línies diferents", tauler.sonContigues(Arrays.asList(new Pair<>(6, 4), new Pair<>(7, 4)), true));
+
+        copia.revertir2(world.first);
+        comprovarOcupacio(copia);
+        copia.restaurar();
+        comprovarOcupacio(copia);
+        tauler.revertir2(hello.first);
+        assertTrue(tauler.estaBuit());
+        comprovarOcupacio(tauler);
+    }
+
+    /**
+     * Test: la memòria cau de lletres possibles es manté al dia amb les jugades col·locades i desfetes,
+     * i després de cada jugada només recalcula les caselles afectades.
+     */
+    @Test
+    public void testCreuatsIncrementals() {
+        Partida partida = crearPartida();
+        Tauler tauler = partida.getTauler();
+        CreuatsTauler creuats = partida.getCreuats();
+        assertSame(creuats, partida.getCreuats());
+
+        comprovarCreuats(tauler, creuats);
+        long inicials = creuats.getNumCalculs();
+        assertEquals("Primer càlcul: totes les caselles en les dues direccions", 2 * 15 * 15, inicials);
+
+        Pair<List<Pair<Integer, Integer>>, Integer> res =
+                tauler.colocarParaula(fitxes("HELLO"), "HELLO", 7, 5, true);
+        assertEquals(5, res.first.size());
+        comprovarCreuats(tauler, creuats);
+        long despresJugada = creuats.getNumCalculs() - inicials;
+        // 5 caselles noves en dues direccions, 10 veïnes de dalt i de baix i els 2 extrems de la fila
+        assertEquals("Només es recalculen les caselles afectades", 2 * 5 + 10 + 2, despresJugada);
+
+        tauler.colocarParaula(fitxes("ORD"), "WORD", 6, 7, false);
+        comprovarCreuats(tauler, creuats);
+
+        long abansDesfer = creuats.getNumCalculs();
+        tauler.revertir2(res.first);
+        comprovarCreuats(tauler, creuats);
+        assertTrue(creuats.getNumCalculs() - abansDesfer <= 2 * 5 + 10 + 2);
+
+        long abansRepetir = creuats.getNumCalculs();
+        comprovarCreuats(tauler, creuats);
+        assertEquals("Sense canvis no es recalcula res", abansRepetir, creuats.getNumCalculs());
+    }
+
+    /**
+     * Comprova que totes les màscares de la memòria cau coincideixen amb calcular-les de nou.
+     */
+    private static void comprovarCreuats(Tauler tauler, CreuatsTauler creuats) {
+        for (int f = 0; f < tauler.getMida(); f++) {
+            for (int c = 0; c < tauler.getMida(); c++) {
+                for (boolean horitzontal : new boolean[] {true, false}) {
+                    assertEquals("(" + f + "," + c + "," + horitzontal + ")",
+                            diccionari.lletresPossibles(tauler, f, c, horitzontal),
+                            creuats.getLletresPossibles(f, c, horitzontal));
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea les fitxes d'una paraula.
+     */
+    private static List<Fitxa> fitxes(String lletres) {
+        List<Fitxa> resultat = new ArrayList<>();
+        for (char c : lletres.toCharArray()) resultat.add(new Fitxa(c, 1));
+        return resultat;
+    }
+
+    /**
+     * Crea una partida de dos bots amb el diccionari anglès i el tauler buit.
+     * @return La partida.
+     */
+    private static Partida crearPartida() {
+        List<Jugador> jugadors = new ArrayList<>(Arrays.asList(new Jugador("BOT1"), new Jugador("BOT2")));
+        return new Partida(1, jugadors, new Tauler(15), diccionari, false, Dificultat.NORMAL);
+    }
+
+    /**
+     * Col·loca una paraula directament al tauler, sense validar-la ni puntuar-la.
+     */
+    private static void colocar(Tauler tauler, int fila, int columna, boolean horitzontal, String paraula) {
+        for (int i = 0; i < paraula.length(); i++) {
+            int f = horitzontal ? fila : fila + i;
+            int c = horitzontal ? columna + i : columna;
+            if (tauler.getCasella(f, c).teFitxa()) continue;
+            Casella nova = new Casella(tauler.getCasella(f, c));
+            nova.colocarFitxa(new Fitxa(paraula.charAt(i), 1));
+            tauler.substituirCasella(f, c, nova);
+        }
+    }
+
+    /**
+     * Comprova que les veïnes i els ancoratges del tauler coincideixen amb els que surten de les caselles.
+     */
+    private static void comprovarOcupacio(Tauler tauler) {
+        int n = tauler.getMida();
+        for (int f = 0; f < n; f++) {
+            for (int c = 0; c < n; c++) {
+                boolean veina = (f > 0 && tauler.getCasella(f - 1, c).teFitxa()) || (f < n - 1 && tauler.getCasella(f + 1, c).teFitxa())
+                        || (c > 0 && tauler.getCasella(f, c - 1).teFitxa()) || (c < n - 1 && tauler.getCasella(f, c + 1).teFitxa());
+                boolean ancoratge = veina && !tauler.getCasella(f, c).teFitxa();
+                assertEquals("Veïna de (" + f + ", " + c + ")", veina, tauler.teVeinaOcupada(f, c));
+                assertEquals("Ancoratge a la fila (" + f + ", " + c + ")", ancoratge, (tauler.getAncoratges(f, false) >>> c & 1) != 0);
+                assertEquals("Ancoratge a la columna (" + f + ", " + c + ")", ancoratge, (tauler.getAncoratges(c, true) >>> f & 1) != 0);
+            }
+        }
+        assertEquals(0, tauler.getAncoratges(0, false) >>> n);
+    }
+}
@@ -0,0 +1,519 @@
+package util;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Classe ConstructorDAWG.
+ * Construeix un DAWG mínim de manera incremental a partir de paraules afegides en ordre lexicogràfic
+ * (algorisme de Daciuk et al.) i el congela en un {@link DAWGCompacte}.
+ * <p>
+ * Només es manté en construcció el camí de l'última paraula afegida. Quan una paraula nova deixa de compartir
+ * prefix amb l'anterior, els nodes del camí que ja no poden canviar es minimitzen de baix a dalt: cada node es
+ * compara amb el registre per la seva signatura (si és final i la llista de parells lletra - identificador canònic
+ * del fill). Com que els fills ja són canònics, la signatura és superficial i el cost de minimitzar un node és
+ * proporcional al seu nombre d'arcs, no a la mida del subarbre. La construcció és lineal en el nombre de lletres.
+ * <p>
+ * Amb {@link #construirEnParallel} la llista es reparteix per les primeres lletres i cada partició es construeix
+ * en un fil diferent; després es fusionen totes sota l'arrel tornant a registrar els seus nodes en un registre comú.
+ */
+public class ConstructorDAWG {
+
+    // ---------- ATRIBUTS ----------
+    /** Per cada node registrat, índex del primer arc amb el bit 31 si és final de paraula */
+    private int[] nodeInici = new int[1024];
+    /** Per cada node registrat, nombre d'arcs */
+    private int[] nodeNumArcs = new int[1024];
+    /** Nombre de nodes registrats */
+    private int numNodes = 0;
+    /** Lletra de cada arc dels nodes registrats */
+    private char[] arcLletra = new char[4096];
+    /** Node destí (identificador canònic) de cada arc dels nodes registrats */
+    private int[] arcDesti = new int[4096];
+    /** Nombre d'arcs registrats */
+    private int numArcs = 0;
+    /** Taula de dispersió oberta amb els identificadors dels nodes registrats (-1 = buida) */
+    private int[] registre = buidaRegistre(1 << 12);
+
+    /** Lletres dels arcs de cada node del camí en construcció, per profunditat */
+    private char[][] camiLletres = new char[16][];
+    /** Fills dels arcs de cada node del camí; l'últim arc apunta al node següent del camí fins que es minimitza */
+    private int[][] camiFills = new int[16][];
+    /** Nombre d'arcs de cada node del camí */
+    private int[] camiNumArcs = new int[16];
+    /** Indica si cada node del camí és final de paraula */
+    private boolean[] camiFinal = new boolean[16];
+    /** Última paraula afegida, que coincideix amb el camí en construcció */
+    private char[] ultima = new char[16];
+    /** Longitud de l'última paraula afegida */
+    private int longitudUltima = 0;
+    /** Indica si ja s'ha afegit alguna paraula */
+    private boolean teParaules = false;
+    /** Indica si el DAWG ja s'ha congelat */
+    private boolean construit = false;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Crea un constructor buit. El node arrel és el node 0 del camí.
+     */
+    public ConstructorDAWG() {
+        preparaNodeCami(0);
+    }
+
+    // ---------- MÈTODES PÚBLICS ----------
+    /**
+     * Afegeix una paraula al DAWG. Les paraules s'han d'afegir en ordre lexicogràfic;
+     * les repeticions consecutives s'ignoren.
+     * @param paraula Paraula a afegir.
+     * @throws IllegalArgumentException si la paraula és anterior a l'última afegida.
+     * @throws IllegalStateException si el DAWG ja s'ha congelat.
+     */
+    public void afegirParaula(CharSequence paraula) {
+        if (construit) throw new IllegalStateException("El DAWG ja s'ha construït");
+        int longitud = paraula.length();
+        if (longitud == 0) return;
+
+        int prefix = 0;
+        while (prefix < longitud && prefix < longitudUltima && paraula.charAt(prefix) == ultima[prefix]) prefix++;
+        if (teParaules) {
+            if (prefix == longitud && prefix == longitudUltima) return;
+            if (prefix == longitud || (prefix < longitudUltima && paraula.charAt(prefix) < ultima[prefix])) {
+                throw new IllegalArgumentException("Les paraules han d'estar ordenades alfabèticament: " + paraula);
+            }
+        }
+
+        minimitzar(prefix);
+
+        if (longitud >= ultima.length) creixCami(longitud + 1);
+        for (int i = prefix; i < longitud; i++) {
+            char c = paraula.charAt(i);
+            afegeixArcCami(i, c);
+            preparaNodeCami(i + 1);
+            ultima[i] = c;
+        }
+        camiFinal[longitud] = true;
+        longitudUltima = longitud;
+        teParaules = true;
+    }
+
+    /**
+     * Indica si una paraula es pot afegir sense trencar l'ordre lexicogràfic.
+     * @param paraula Paraula a comprovar.
+     * @return Cert si la paraula és posterior o igual a l'última afegida.
+     */
+    public boolean esPotAfegir(CharSequence paraula) {
+        int i = 0;
+        while (i < paraula.length() && i < longitudUltima && paraula.charAt(i) == ultima[i]) i++;
+        if (i == paraula.length()) return i == longitudUltima || !teParaules;
+        return i == longitudUltima || paraula.charAt(i) > ultima[i];
+    }
+
+    /**
+     * Retorna el nombre de nodes ja minimitzats (sense comptar el camí en construcció).
+     * @return Nodes registrats.
+     */
+    public int getNumNodesRegistrats() {
+        return numNodes;
+    }
+
+    /**
+     * Minimitza el camí pendent i congela el DAWG en format compacte.
+     * Els nodes es numeren en amplada des de l'arrel i els arcs s'ordenen pel codi de la lletra.
+     * @return El DAWG compacte amb totes les paraules afegides.
+     */
+    public DAWGCompacte construir() {
+        if (construit) throw new IllegalStateException("El DAWG ja s'ha construït");
+        construit = true;
+        minimitzar(0);
+        // L'arrel no es comparteix mai amb cap altre node
+        int arrel = registraNou(camiLletres[0], camiFills[0], camiNumArcs[0], camiFinal[0]);
+
+        SortedSet<Character> extres = new TreeSet<>();
+        for (int a = 0; a < numArcs; a++) {
+            char c = arcLletra[a];
+            if (c < 'A' || c > 'Z') extres.add(c);
+        }
+        char[] lletres = DAWGCompacte.taulaLletres(extres);
+
+        // Numeració en amplada
+        int[] nouId = new int[numNodes];
+        Arrays.fill(nouId, -1);
+        int[] ordre = new int[numNodes];
+        int totalNodes = 0;
+        nouId[arrel] = totalNodes;
+        ordre[totalNodes++] = arrel;
+        for (int cap = 0; cap < totalNodes; cap++) {
+            int node = ordre[cap];
+            int inici = nodeInici[node] & ~DAWGCompacte.FINAL;
+            for (int a = inici; a < inici + nodeNumArcs[node]; a++) {
+                int fill = arcDesti[a];
+                if (nouId[fill] < 0) {
+                    nouId[fill] = totalNodes;
+                    ordre[totalNodes++] = fill;
+                }
+            }
+        }
+
+        int[] primerArc = new int[totalNodes];
+        int[] mascara = new int[totalNodes];
+        int[] destins = new int[numArcs];
+        int[] destinsPerCodi = new int[DAWGCompacte.MAX_LLETRES];
+        int arc = 0;
+        for (int n = 0; n < totalNodes; n++) {
+            int node = ordre[n];
+            int inici = nodeInici[node] & ~DAWGCompacte.FINAL;
+            int m = 0;
+            for (int a = inici; a < inici + nodeNumArcs[node]; a++) {
+                int codi = DAWGCompacte.codi(lletres, arcLletra[a]);
+                m |= 1 << codi;
+                destinsPerCodi[codi] = nouId[arcDesti[a]];
+            }
+            primerArc[n] = arc | (nodeInici[node] & DAWGCompacte.FINAL);
+            mascara[n] = m;
+            for (int resta = m; resta != 0; resta &= resta - 1) {
+                destins[arc++] = destinsPerCodi[Integer.numberOfTrailingZeros(resta)];
+            }
+        }
+        return new DAWGCompacte(primerArc, mascara, Arrays.copyOf(destins, arc), lletres);
+    }
+
+    /**
+     * Construeix el DAWG d'una llista ordenada repartint la feina entre els fils d'un {@link ForkJoinPool}.
+     * La llista es divideix en particions de paraules que comparteixen les {@code longitudClau} primeres lletres;
+     * cada partició es construeix i es minimitza per separat. A mesura que acaben, i en ordre, els nodes de cada
+     * partició es tornen a registrar en un constructor global, de manera que els sufixos iguals de particions
+     * diferents també es comparteixen. Com que el DAWG mínim d'un conjunt de paraules és únic, el resultat és
+     * idèntic al de la construcció seqüencial.
+     * @param paraulesOrdenades Llista de paraules en ordre lexicogràfic.
+     * @param longitudClau Nombre de lletres inicials que defineixen cada partició (1 o 2 normalment).
+     * @param pool Pool on s'executen les construccions de les particions.
+     * @return El DAWG compacte amb totes les paraules.
+     * @throws IllegalArgumentException si la llista no està ordenada o la longitud de clau no és positiva.
+     */
+    public static DAWGCompacte construirEnParallel(List<String> paraulesOrdenades, int longitudClau, ForkJoinPool pool) {
+        if (longitudClau < 1) throw new IllegalArgumentException("La longitud de la clau ha de ser positiva");
+
+        List<ForkJoinTask<ConstructorDAWG>> particions = new ArrayList<>();
+        int total = paraulesOrdenades.size();
+        int inici = 0;
+        while (inici < total) {
+            String primera = paraulesOrdenades.get(inici);
+            int clau = Math.min(longitudClau, primera.length());
+            int fi = inici + 1;
+            while (fi < total && mateixaClau(primera, clau, longitudClau, paraulesOrdenades.get(fi))) fi++;
+            if (clau > 0) {
+                List<String> particio = paraulesOrdenades.subList(inici, fi);
+                particions.add(pool.submit(() -> construirParticio(particio, clau)));
+            }
+            inici = fi;
+        }
+
+        ConstructorDAWG global = new ConstructorDAWG();
+        for (ForkJoinTask<ConstructorDAWG> particio : particions) {
+            global.fusiona(particio.join());
+        }
+        return global.construir();
+    }
+
+    /**
+     * Construeix un DAWG nou amb les paraules d'un graf existent més una llista de paraules en qualsevol ordre.
+     * Les paraules del graf es recorren amb un iterador i es fusionen amb la llista ordenada, de manera que
+     * no cal materialitzar totes les paraules del graf.
+     * @param graf Graf amb les paraules ja construïdes.
+     * @param paraules Paraules addicionals (es poden repetir i estar desordenades).
+     * @return El DAWG compacte amb la unió de les paraules.
+     */
+    public static DAWGCompacte unir(DAWGCompacte graf, List<String> paraules) {
+        List<String> addicionals = new ArrayList<>(new TreeSet<>(paraules));
+        Iterator<String> existents = graf.iteradorParaules();
+        ConstructorDAWG constructor = new ConstructorDAWG();
+        String existent = existents.hasNext() ? existents.next() : null;
+        int i = 0;
+        while (existent != null || i < addicionals.size()) {
+            if (existent == null || (i < addicionals.size() && addicionals.get(i).compareTo(existent) < 0)) {
+                constructor.afegirParaula(addicionals.get(i++));
+            } else {
+                constructor.afegirParaula(existent);
+                existent = existents.hasNext() ? existents.next() : null;
+            }
+        }
+        return constructor.construir();
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Indica si una paraula pertany a la mateixa partició que la primera paraula de la partició.
+     * Les paraules més curtes que la clau formen una partició pròpia.
+     * @param primera Primera paraula de la partició.
+     * @param clau Longitud de la clau de la partició.
+     * @param longitudClau Longitud de clau demanada.
+     * @param paraula Paraula a comprovar.
+     * @return Cert si la paraula comparteix la clau de la partició.
+     */
+    private static boolean mateixaClau(String primera, int clau, int longitudClau, String paraula) {
+        if (clau < longitudClau) return paraula.equals(primera);
+        return paraula.length() >= clau && paraula.regionMatches(0, primera, 0, clau);
+    }
+
+    /**
+     * Construeix una partició i en minimitza tots els nodes excepte els del camí de la clau,
+     * que es fusionaran amb els de les altres particions.
+     * @param paraules Paraules ordenades de la partició, totes amb la mateixa clau.
+     * @param clau Longitud de la clau.
+     * @return El constructor de la partició, amb el camí reduït a la clau.
+     */
+    private static ConstructorDAWG construirParticio(List<String> paraules, int clau) {
+        ConstructorDAWG particio = new ConstructorDAWG();
+        for (String paraula : paraules) {
+            particio.afegirParaula(paraula);
+        }
+        particio.minimitzar(clau);
+        particio.longitudUltima = clau;
+        return particio;
+    }
+
+    /**
+     * Fusiona una partició ja construïda amb aquest constructor.
+     * Els nodes registrats de la partició es tornen a registrar aquí (els fills abans que els pares, que és l'ordre
+     * en què es van crear), i el node final del camí de la clau s'afegeix al camí d'aquest constructor com si
+     * s'hagués afegit la paraula de la clau.
+     * @param particio Partició construïda amb {@link #construirParticio}.
+     */
+    private void fusiona(ConstructorDAWG particio) {
+        int[] canonic = new int[particio.numNodes];
+        char[] lletres = new char[8];
+        int[] fills = new int[8];
+        for (int id = 0; id < particio.numNodes; id++) {
+            int inici = particio.nodeInici[id] & ~DAWGCompacte.FINAL;
+            int n = particio.nodeNumArcs[id];
+            if (n > lletres.length) {
+                lletres = new char[n];
+                fills = new int[n];
+            }
+            for (int a = 0; a < n; a++) {
+                lletres[a] = particio.arcLletra[inici + a];
+                fills[a] = canonic[particio.arcDesti[inici + a]];
+            }
+            canonic[id] = registraOReutilitza(lletres, fills, n, particio.nodeInici[id] < 0);
+        }
+
+        int clau = particio.longitudUltima;
+        int prefix = 0;
+        while (prefix < clau && prefix < longitudUltima && particio.ultima[prefix] == ultima[prefix]) prefix++;
+        minimitzar(prefix);
+        if (clau >= ultima.length) creixCami(clau + 1);
+        for (int i = prefix; i < clau; i++) {
+            afegeixArcCami(i, particio.ultima[i]);
+            preparaNodeCami(i + 1);
+            ultima[i] = particio.ultima[i];
+        }
+        for (int a = 0; a < particio.camiNumArcs[clau]; a++) {
+            afegeixArcCami(clau, particio.camiLletres[clau][a]);
+            camiFills[clau][camiNumArcs[clau] - 1] = canonic[particio.camiFills[clau][a]];
+        }
+        camiFinal[clau] |= particio.camiFinal[clau];
+        longitudUltima = clau;
+        teParaules = true;
+    }
+
+
+    /**
+     * Minimitza els nodes del camí més profunds que {@code profunditat}, de baix a dalt,
+     * i enllaça cada pare amb el node canònic corresponent.
+     * @param profunditat Profunditat fins on el camí continua sent compartit.
+     */
+    private void minimitzar(int profunditat) {
+        for (int d = longitudUltima; d > profunditat; d--) {
+            int canonic = registraOReutilitza(camiLletres[d], camiFills[d], camiNumArcs[d], camiFinal[d]);
+            camiFills[d - 1][camiNumArcs[d - 1] - 1] = canonic;
+        }
+    }
+
+    /**
+     * Cerca al registre un node equivalent al donat; si no n'hi ha, el registra.
+     * Els fills del node ja han de ser canònics.
+     * @param lletres Lletres dels arcs del node.
+     * @param fills Identificadors canònics dels fills.
+     * @param n Nombre d'arcs.
+     * @param esFinal Indica si el node és final de paraula.
+     * @return Identificador canònic del node.
+     */
+    private int registraOReutilitza(char[] lletres, int[] fills, int n, boolean esFinal) {
+        int hash = signatura(lletres, fills, n, esFinal);
+        int mascaraTaula = registre.length - 1;
+        for (int pos = hash & mascaraTaula; ; pos = (pos + 1) & mascaraTaula) {
+            int candidat = registre[pos];
+            if (candidat < 0) break;
+            if (esEquivalent(candidat, lletres, fills, n, esFinal)) return candidat;
+        }
+        int nou = registraNou(lletres, fills, n, esFinal);
+        insereixRegistre(nou, hash);
+        return nou;
+    }
+
+    /**
+     * Copia un node a les taules de nodes registrats.
+     * @param lletres Lletres dels arcs del node.
+     * @param fills Identificadors dels fills.
+     * @param n Nombre d'arcs.
+     * @param esFinal Indica si el node és final de paraula.
+     * @return Identificador del node nou.
+     */
+    private int registraNou(char[] lletres, int[] fills, int n, boolean esFinal) {
+        if (numNodes == nodeInici.length) {
+            nodeInici = Arrays.copyOf(nodeInici, numNodes * 2);
+            nodeNumArcs = Arrays.copyOf(nodeNumArcs, numNodes * 2);
+        }
+        if (numArcs + n > arcLletra.length) {
+            int mida = Math.max(arcLletra.length * 2, numArcs + n);
+            arcLletra = Arrays.copyOf(arcLletra, mida);
+            arcDesti = Arrays.copyOf(arcDesti, mida);
+        }
+        System.arraycopy(lletres, 0, arcLletra, numArcs, n);
+        System.arraycopy(fills, 0, arcDesti, numArcs, n);
+        nodeInici[numNodes] = numArcs | (esFinal ? DAWGCompacte.FINAL : 0);
+        nodeNumArcs[numNodes] = n;
+        numArcs += n;
+        return numNodes++;
+    }
+
+    /**
+     * Calcula la signatura superficial d'un node: final i parells (lletra, fill canònic).
+     * @param lletres Lletres dels arcs del node.
+     * @param fills Identificadors canònics dels fills.
+     * @param n Nombre d'arcs.
+     * @param esFinal Indica si el node és final de paraula.
+     * @return Valor de dispersió de la signatura.
+     */
+    private static int signatura(char[] lletres, int[] fills, int n, boolean esFinal) {
+        int h = esFinal ? 1 : 0;
+        for (int a = 0; a < n; a++) {
+            h = 31 * (31 * h + lletres[a]) + fills[a];
+        }
+        return mescla(h);
+    }
+
+    /**
+     * Calcula la signatura d'un node ja registrat (per redimensionar el registre).
+     * @param node Identificador del node.
+     * @return Valor de dispersió de la signatura.
+     */
+    private int signaturaRegistrat(int node) {
+        int inici = nodeInici[node] & ~DAWGCompacte.FINAL;
+        int h = nodeInici[node] < 0 ? 1 : 0;
+        for (int a = inici; a < inici + nodeNumArcs[node]; a++) {
+            h = 31 * (31 * h + arcLletra[a]) + arcDesti[a];
+        }
+        return mescla(h);
+    }
+
+    /**
+     * Comprova si un node registrat té la mateixa signatura que el node donat.
+     * @param node Identificador del node registrat.
+     * @param lletres Lletres dels arcs del node a comparar.
+     * @param fills Identificadors canònics dels fills.
+     * @param n Nombre d'arcs.
+     * @param esFinal Indica si el node a comparar és final de paraula.
+     * @return Cert si són equivalents.
+     */
+    private boolean esEquivalent(int node, char[] lletres, int[] fills, int n, boolean esFinal) {
+        if ((nodeInici[node] < 0) != esFinal || nodeNumArcs[node] != n) return false;
+        int inici = nodeInici[node] & ~DAWGCompacte.FINAL;
+        for (int a = 0; a < n; a++) {
+            if (arcLletra[inici + a] != lletres[a] || arcDesti[inici + a] != fills[a]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Insereix un node al registre, doblant la taula si s'omple més de la meitat.
+     * @param node Identificador del node.
+     * @param hash Signatura del node.
+     */
+    private void insereixRegistre(int node, int hash) {
+        if (2 * (numNodes + 1) > registre.length) {
+            int[] anterior = registre;
+            registre = buidaRegistre(anterior.length * 2);
+            for (int id : anterior) {
+                if (id >= 0) posaRegistre(id, signaturaRegistrat(id));
+            }
+        }
+        posaRegistre(node, hash);
+    }
+
+    /**
+     * Posa un node a la primera posició lliure de la taula de dispersió.
+     * @param node Identificador del node.
+     * @param hash Signatura del node.
+     */
+    private void posaRegistre(int node, int hash) {
+        int mascaraTaula = registre.length - 1;
+        int pos = hash & mascaraTaula;
+        while (registre[pos] >= 0) pos = (pos + 1) & mascaraTaula;
+        registre[pos] = node;
+    }
+
+    /**
+     * Afegeix un arc al node del camí a la profunditat donada.
+     * @param d Profunditat del node.
+     * @param c Lletra de l'arc.
+     */
+    private void afegeixArcCami(int d, char c) {
+        int n = camiNumArcs[d];
+        if (n == camiLletres[d].length) {
+            camiLletres[d] = Arrays.copyOf(camiLletres[d], n * 2);
+            camiFills[d] = Arrays.copyOf(camiFills[d], n * 2);
+        }
+        camiLletres[d][n] = c;
+        camiFills[d][n] = -1;
+        camiNumArcs[d] = n + 1;
+    }
+
+    /**
+     * Deixa buit el node del camí a la profunditat donada.
+     * @param d Profunditat del node.
+     */
+    private void preparaNodeCami(int d) {
+        if (camiLletres[d] == null) {
+            camiLletres[d] = new char[4];
+            camiFills[d] = new int[4];
+        }
+        camiNumArcs[d] = 0;
+        camiFinal[d] = false;
+    }
+
+    /**
+     * Amplia les taules del camí perquè admetin paraules més llargues.
+     * @param mida Nombre mínim de nodes del camí.
+     */
+    private void creixCami(int mida) {
+        int nova = Math.max(mida, ultima.length * 2);
+        camiLletres = Arrays.copyOf(camiLletres, nova);
+        camiFills = Arrays.copyOf(camiFills, nova);
+        camiNumArcs = Arrays.copyOf(camiNumArcs, nova);
+        camiFinal = Arrays.copyOf(camiFinal, nova);
+        ultima = Arrays.copyOf(ultima, nova);
+    }
+
+    /**
+     * Crea una taula de dispersió buida.
+     * @param mida Mida de la taula (potència de dos).
+     * @return Taula plena de -1.
+     */
+    private static int[] buidaRegistre(int mida) {
+        int[] taula = new int[mida];
+        Arrays.fill(taula, -1);
+        return taula;
+    }
+
+    /**
+     * Barreja els bits d'un valor de dispersió perquè la taula oberta es reparteixi bé.
+     * @param h Valor a barrejar.
+     * @return Valor barrejat.
+     */
+    private static int mescla(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
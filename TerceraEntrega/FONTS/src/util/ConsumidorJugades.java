@@ -0,0 +1,54 @@
+package util;
+
+/**
+ * Interfície ConsumidorJugades.
+ * Rep les jugades a mesura que el generador de la màquina les troba, sense que calgui guardar-les totes.
+ * <p>
+ * Abans de crear cada jugada, el generador pregunta amb {@link #admet(int)} si la seva puntuació interessa;
+ * si no, se la salta sense crear-ne la paraula ni l'objecte {@link Play}. Amb una lambda es pot fer servir
+ * com a simple callback.
+ * <p>
+ * Quan la generació es reparteix entre fils, cada tasca omple un consumidor {@link #parcial()} propi i
+ * els parcials es van combinant amb {@link #combina(ConsumidorJugades)} en l'ordre de generació, de manera
+ * que el consumidor rep les mateixes jugades que en la generació seqüencial i només des d'un fil.
+ */
+public interface ConsumidorJugades {
+
+    /**
+     * Indica si una jugada amb aquesta puntuació es guardaria. Per defecte s'admeten totes.
+     *
+     * @param puntuacio Puntuació de la jugada candidata
+     * @return Cert si s'ha de crear la jugada i passar-la a {@link #accepta(Play)}
+     */
+    default boolean admet(int puntuacio) {
+        return true;
+    }
+
+    /**
+     * Rep una jugada vàlida generada.
+     *
+     * @param jugada Jugada trobada
+     */
+    void accepta(Play jugada);
+
+    /**
+     * Crea un consumidor buit per a una part de la generació feta en un altre fil. Per defecte guarda
+     * totes les jugades de la part, que {@link #combina(ConsumidorJugades)} passa després a aquest consumidor.
+     *
+     * @return Consumidor parcial, que només es combina amb aquest consumidor o amb un altre parcial seu
+     */
+    default ConsumidorJugades parcial() {
+        return new TotesLesJugades();
+    }
+
+    /**
+     * Afegeix les jugades d'un consumidor parcial creat amb {@link #parcial()}, com si arribessin ara.
+     *
+     * @param parcial Consumidor parcial
+     */
+    default void combina(ConsumidorJugades parcial) {
+        for (Play jugada : ((TotesLesJugades) parcial).getJugades()) {
+            if (admet(jugada.getScore())) accepta(jugada);
+        }
+    }
+}
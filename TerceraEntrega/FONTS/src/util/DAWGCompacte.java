@@ -0,0 +1,457 @@
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+
+/**
+ * Classe DAWGCompacte.
+ * Representació immutable d'un DAWG (Directed Acyclic Word Graph) guardada en vectors plans d'enters.
+ * Es construeix un cop amb {@link ConstructorDAWG} (o s'obre des d'una imatge binària) i després només es consulta.
+ * <p>
+ * Cada node ocupa dues posicions: l'índex del seu primer arc (amb el bit alt indicant si és final de paraula)
+ * i una màscara de bits amb un bit per cada lletra que té fill. Els arcs d'un node són contigus i estan
+ * ordenats per codi de lletra, de manera que el fill d'una lletra es troba amb un {@code bitCount} sobre la
+ * màscara, sense cerques ni objectes intermedis.
+ * <p>
+ * Les lletres A-Z tenen els codis 0-25 (el mateix bit que fan servir els cross-checks del BOT). Els caràcters
+ * unificats dels dígrafs (per exemple 'n' per NY o '·' per L·L) reben els codis 26-31.
+ * <p>
+ * Els vectors es llegeixen a través d'{@link IntBuffer}, de manera que el graf pot viure al heap (quan es
+ * construeix) o directament sobre una imatge binària projectada a memòria (vegeu {@link #deImatge(ByteBuffer)}).
+ */
+public class DAWGCompacte implements Serializable {
+
+    // ---------- CONSTANTS ----------
+    /** Identificador del node arrel */
+    public static final int ARREL = 0;
+    /** Nombre màxim de lletres diferents que pot tenir un graf (un bit per lletra a la màscara) */
+    public static final int MAX_LLETRES = 32;
+    /** Bit de {@code primerArc} que indica que el node és final de paraula */
+    static final int FINAL = 1 << 31;
+    /** Número màgic de la imatge binària ("DAWG") */
+    private static final int MAGIC = 0x44415747;
+    /** Versió del format de la imatge binària */
+    private static final int VERSIO = 1;
+    /** Mida de la capçalera de la imatge: màgic, versió, signatura (long), lletres, nodes i arcs */
+    private static final int MIDA_CAPCALERA = 4 * 7;
+
+    // ---------- ATRIBUTS ----------
+    /** Per cada node, índex del seu primer arc a {@code destins}, amb el bit {@code FINAL} si és final de paraula */
+    private transient IntBuffer primerArc;
+    /** Per cada node, màscara de bits dels codis de lletra que tenen fill */
+    private transient IntBuffer mascara;
+    /** Node destí de cada arc, agrupats per node d'origen i ordenats per codi de lletra */
+    private transient IntBuffer destins;
+    /** Lletra associada a cada codi */
+    private transient char[] lletres;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Constructora privada a partir dels vectors ja omplerts.
+     * @param primerArc Primer arc de cada node amb el bit de final.
+     * @param mascara Màscara de fills de cada node.
+     * @param destins Destí de cada arc.
+     * @param lletres Lletra de cada codi.
+     */
+    private DAWGCompacte(IntBuffer primerArc, IntBuffer mascara, IntBuffer destins, char[] lletres) {
+        this.primerArc = primerArc;
+        this.mascara = mascara;
+        this.destins = destins;
+        this.lletres = lletres;
+    }
+
+    /**
+     * Constructora a partir dels vectors omplerts per {@link ConstructorDAWG}.
+     * @param primerArc Primer arc de cada node amb el bit de final.
+     * @param mascara Màscara de fills de cada node.
+     * @param destins Destí de cada arc.
+     * @param lletres Lletra de cada codi.
+     */
+    DAWGCompacte(int[] primerArc, int[] mascara, int[] destins, char[] lletres) {
+        this(IntBuffer.wrap(primerArc), IntBuffer.wrap(mascara), IntBuffer.wrap(destins), lletres);
+    }
+
+    /**
+     * Obre un graf directament sobre una imatge binària escrita amb {@link #escriureImatge}.
+     * Les consultes llegeixen del mateix buffer, sense copiar-lo; si el buffer és una projecció
+     * a memòria d'un fitxer, el graf queda fora del heap.
+     * @param imatge Buffer amb la imatge completa.
+     * @return El graf corresponent a la imatge.
+     * @throws IOException si la imatge no té el format esperat.
+     */
+    public static DAWGCompacte deImatge(ByteBuffer imatge) throws IOException {
+        ByteBuffer capcalera = imatge.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (capcalera.remaining() < MIDA_CAPCALERA || capcalera.getInt(0) != MAGIC) {
+            throw new IOException("La imatge no és un DAWG vàlid");
+        }
+        if (capcalera.getInt(4) != VERSIO) {
+            throw new IOException("Versió d'imatge DAWG no suportada: " + capcalera.getInt(4));
+        }
+        int numLletres = capcalera.getInt(16);
+        int numNodes = capcalera.getInt(20);
+        int numArcs = capcalera.getInt(24);
+        long mida = MIDA_CAPCALERA + 4L * numLletres + 8L * numNodes + 4L * numArcs;
+        if (numLletres < 26 || numLletres > MAX_LLETRES || numNodes <= 0 || numArcs < 0 || capcalera.remaining() < mida) {
+            throw new IOException("Imatge DAWG truncada o corrupta");
+        }
+
+        char[] lletres = new char[numLletres];
+        int posicio = MIDA_CAPCALERA;
+        for (int i = 0; i < numLletres; i++, posicio += 4) {
+            lletres[i] = (char) capcalera.getInt(posicio);
+        }
+        IntBuffer primerArc = seccio(imatge, posicio, numNodes);
+        posicio += 4 * numNodes;
+        IntBuffer mascara = seccio(imatge, posicio, numNodes);
+        posicio += 4 * numNodes;
+        IntBuffer destins = seccio(imatge, posicio, numArcs);
+        return new DAWGCompacte(primerArc, mascara, destins, lletres);
+    }
+
+    /**
+     * Llegeix la signatura guardada a la capçalera d'una imatge binària.
+     * Serveix per comprovar si la imatge correspon a la versió actual del fitxer de paraules.
+     * @param imatge Buffer amb la imatge.
+     * @return Signatura guardada, o -1 si el buffer no és una imatge vàlida.
+     */
+    public static long llegirSignatura(ByteBuffer imatge) {
+        ByteBuffer capcalera = imatge.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (capcalera.remaining() < MIDA_CAPCALERA || capcalera.getInt(0) != MAGIC || capcalera.getInt(4) != VERSIO) {
+            return -1;
+        }
+        return capcalera.getLong(8);
+    }
+
+    // ---------- GETTERS ----------
+    /**
+     * Retorna el node arrel.
+     * @return Identificador del node arrel.
+     */
+    public int getArrel() {
+        return ARREL;
+    }
+
+    /**
+     * Retorna el fill d'un node per una lletra.
+     * @param node Node d'origen.
+     * @param c Lletra de l'arc.
+     * @return Node fill o -1 si no existeix.
+     */
+    public int getFill(int node, char c) {
+        int codi = getCodi(c);
+        return codi < 0 ? -1 : getFillPerCodi(node, codi);
+    }
+
+    /**
+     * Retorna el fill d'un node per un codi de lletra.
+     * @param node Node d'origen.
+     * @param codi Codi de la lletra (vegeu {@link #getCodi(char)}).
+     * @return Node fill o -1 si no existeix.
+     */
+    public int getFillPerCodi(int node, int codi) {
+        int m = mascara.get(node);
+        int bit = 1 << codi;
+        if ((m & bit) == 0) return -1;
+        return destins.get((primerArc.get(node) & ~FINAL) + Integer.bitCount(m & (bit - 1)));
+    }
+
+    /**
+     * Retorna la màscara de codis de lletra que tenen fill des d'un node.
+     * @param node Node a consultar.
+     * @return Màscara de bits (bit i = hi ha arc amb codi i).
+     */
+    public int getMascaraFills(int node) {
+        return mascara.get(node);
+    }
+
+    /**
+     * Indica si un node és final de paraula.
+     * @param node Node a consultar.
+     * @return Cert si el camí fins al node forma una paraula.
+     */
+    public boolean esFinal(int node) {
+        return primerArc.get(node) < 0;
+    }
+
+    /**
+     * Retorna el codi intern d'una lletra.
+     * @param c Lletra.
+     * @return Codi entre 0 i {@link #getNumLletres()} - 1, o -1 si la lletra no apareix al graf.
+     */
+    public int getCodi(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        return codi(lletres, c);
+    }
+
+    /**
+     * Retorna la lletra associada a un codi.
+     * @param codi Codi de la lletra.
+     * @return Lletra corresponent.
+     */
+    public char getLletra(int codi) {
+        return lletres[codi];
+    }
+
+    /**
+     * Retorna el nombre de codis de lletra del graf.
+     * @return Nombre de lletres diferents (com a mínim 26).
+     */
+    public int getNumLletres() {
+        return lletres.length;
+    }
+
+    /**
+     * Retorna el nombre de nodes del graf.
+     * @return Nombre de nodes.
+     */
+    public int getNumNodes() {
+        return mascara.limit();
+    }
+
+    /**
+     * Retorna el nombre d'arcs del graf.
+     * @return Nombre d'arcs.
+     */
+    public int getNumArcs() {
+        return destins.limit();
+    }
+
+    /**
+     * Retorna una estimació de la memòria que ocupa el graf.
+     * @return Bytes ocupats pels vectors del graf.
+     */
+    public long getMidaBytes() {
+        return 4L * (primerArc.limit() + mascara.limit() + destins.limit()) + 2L * lletres.length + 4 * 16;
+    }
+
+    /**
+     * Indica si el graf llegeix d'un buffer directe (per exemple, un fitxer projectat a memòria).
+     * @return Cert si les dades del graf són fora del heap.
+     */
+    public boolean esForaDelHeap() {
+        return destins.isDirect();
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Comprova si una paraula és al graf.
+     * @param paraula Paraula a comprovar.
+     * @return Cert si la paraula hi és.
+     */
+    public boolean conte(String paraula) {
+        int node = ARREL;
+        for (int i = 0; i < paraula.length() && node >= 0; i++) {
+            node = getFill(node, paraula.charAt(i));
+        }
+        return node >= 0 && esFinal(node);
+    }
+
+    /**
+     * Afegeix a una llista totes les paraules del graf en ordre de codi de lletra.
+     * @param resultat Llista on s'afegeixen les paraules.
+     */
+    public void recorre(List<String> resultat) {
+        recorre(ARREL, new StringBuilder(), resultat);
+    }
+
+    /**
+     * Retorna un iterador que genera les paraules del graf d'una en una, en ordre de codi de lletra,
+     * sense guardar-les totes en memòria.
+     * @return Iterador de paraules.
+     */
+    public Iterator<String> iteradorParaules() {
+        return new Iterator<String>() {
+            /** Lletres encara no visitades de cada nivell */
+            private int[] pendents = new int[16];
+            /** Arc següent de cada nivell */
+            private int[] arcs = new int[16];
+            /** Nivell actual (-1 quan s'ha acabat) */
+            private int nivell = 0;
+            /** Prefix corresponent al camí actual */
+            private final StringBuilder prefix = new StringBuilder();
+            /** Paraula següent, o null si encara s'ha de buscar */
+            private String seguent;
+
+            {
+                entra(ARREL);
+                if (esFinal(ARREL)) seguent = "";
+                avança();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return seguent != null;
+            }
+
+            @Override
+            public String next() {
+                if (seguent == null) throw new NoSuchElementException();
+                String paraula = seguent;
+                seguent = null;
+                avança();
+                return paraula;
+            }
+
+            /**
+             * Avança el recorregut en profunditat fins a la paraula següent (si no n'hi ha una de pendent).
+             */
+            private void avança() {
+                while (seguent == null && nivell >= 0) {
+                    int resta = pendents[nivell];
+                    if (resta == 0) {
+                        nivell--;
+                        if (nivell >= 0) prefix.setLength(nivell);
+                        continue;
+                    }
+                    pendents[nivell] = resta & (resta - 1);
+                    int fill = destins.get(arcs[nivell]++);
+                    prefix.append(lletres[Integer.numberOfTrailingZeros(resta)]);
+                    nivell++;
+                    entra(fill);
+                    if (esFinal(fill)) seguent = prefix.toString();
+                }
+            }
+
+            /**
+             * Col·loca un node al nivell actual del recorregut.
+             * @param node Node a col·locar.
+             */
+            private void entra(int node) {
+                if (nivell == pendents.length) {
+                    pendents = Arrays.copyOf(pendents, nivell * 2);
+                    arcs = Arrays.copyOf(arcs, nivell * 2);
+                }
+                pendents[nivell] = mascara.get(node);
+                arcs[nivell] = primerArc.get(node) & ~FINAL;
+            }
+        };
+    }
+
+    // ---------- PERSISTÈNCIA ----------
+    /**
+     * Escriu la imatge binària del graf en un canal.
+     * Format (little-endian): màgic, versió, signatura (long), nombre de lletres, nodes i arcs,
+     * seguit de la taula de lletres i dels vectors {@code primerArc}, {@code mascara} i {@code destins}.
+     * @param canal Canal on s'escriu la imatge.
+     * @param signatura Signatura del fitxer de paraules d'origen.
+     * @throws IOException si hi ha un error d'escriptura.
+     */
+    public void escriureImatge(WritableByteChannel canal, long signatura) throws IOException {
+        int numNodes = getNumNodes();
+        int numArcs = getNumArcs();
+        ByteBuffer buffer = ByteBuffer.allocate(MIDA_CAPCALERA + 4 * lletres.length + 8 * numNodes + 4 * numArcs)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSIO).putLong(signatura)
+              .putInt(lletres.length).putInt(numNodes).putInt(numArcs);
+        for (char c : lletres) buffer.putInt(c);
+        for (int i = 0; i < numNodes; i++) buffer.putInt(primerArc.get(i));
+        for (int i = 0; i < numNodes; i++) buffer.putInt(mascara.get(i));
+        for (int i = 0; i < numArcs; i++) buffer.putInt(destins.get(i));
+        buffer.flip();
+        while (buffer.hasRemaining()) canal.write(buffer);
+    }
+
+    /**
+     * Serialitza el graf com a vectors (els buffers no són serialitzables).
+     * @param out Flux de sortida.
+     * @throws IOException si hi ha un error d'escriptura.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(lletres);
+        out.writeObject(aVector(primerArc));
+        out.writeObject(aVector(mascara));
+        out.writeObject(aVector(destins));
+    }
+
+    /**
+     * Reconstrueix el graf serialitzat al heap.
+     * @param in Flux d'entrada.
+     * @throws IOException si hi ha un error de lectura.
+     * @throws ClassNotFoundException si el contingut no correspon a un graf.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lletres = (char[]) in.readObject();
+        primerArc = IntBuffer.wrap((int[]) in.readObject());
+        mascara = IntBuffer.wrap((int[]) in.readObject());
+        destins = IntBuffer.wrap((int[]) in.readObject());
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Recorre recursivament el graf afegint les paraules trobades.
+     * @param node Node actual.
+     * @param prefix Lletres del camí fins al node.
+     * @param resultat Llista on s'afegeixen les paraules.
+     */
+    private void recorre(int node, StringBuilder prefix, List<String> resultat) {
+        if (esFinal(node)) resultat.add(prefix.toString());
+        int arc = primerArc.get(node) & ~FINAL;
+        for (int resta = mascara.get(node); resta != 0; resta &= resta - 1) {
+            prefix.append(lletres[Integer.numberOfTrailingZeros(resta)]);
+            recorre(destins.get(arc++), prefix, resultat);
+            prefix.setLength(prefix.length() - 1);
+        }
+    }
+
+    /**
+     * Retorna una vista d'enters sobre una secció de la imatge.
+     * @param imatge Buffer amb la imatge.
+     * @param posicio Posició inicial en bytes.
+     * @param mida Nombre d'enters de la secció.
+     * @return Vista de la secció.
+     */
+    private static IntBuffer seccio(ByteBuffer imatge, int posicio, int mida) {
+        return imatge.slice(posicio, 4 * mida).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Copia el contingut d'un buffer d'enters en un vector.
+     * @param buffer Buffer a copiar.
+     * @return Vector amb el contingut.
+     */
+    private static int[] aVector(IntBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+        int[] vector = new int[buffer.limit()];
+        for (int i = 0; i < vector.length; i++) vector[i] = buffer.get(i);
+        return vector;
+    }
+
+    /**
+     * Crea la taula de lletres per codi: A-Z als codis 0-25 i els caràcters addicionals a continuació, en ordre.
+     * @param extres Caràcters fora de l'A-Z que apareixen al graf, ordenats.
+     * @return Taula de lletres per codi.
+     * @throws IllegalArgumentException si hi ha més de {@link #MAX_LLETRES} lletres diferents.
+     */
+    static char[] taulaLletres(SortedSet<Character> extres) {
+        if (26 + extres.size() > MAX_LLETRES) {
+            throw new IllegalArgumentException("El diccionari té massa lletres diferents: " + (26 + extres.size()));
+        }
+        char[] lletres = new char[26 + extres.size()];
+        for (int i = 0; i < 26; i++) lletres[i] = (char) ('A' + i);
+        int k = 26;
+        for (char c : extres) lletres[k++] = c;
+        return lletres;
+    }
+
+    /**
+     * Cerca el codi d'una lletra a la taula de lletres.
+     * @param lletres Taula de lletres per codi.
+     * @param c Lletra a cercar.
+     * @return Codi de la lletra o -1 si no hi és.
+     */
+    static int codi(char[] lletres, char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        for (int i = 26; i < lletres.length; i++) {
+            if (lletres[i] == c) return i;
+        }
+        return -1;
+    }
+}
@@ -5,16 +5,27 @@ import java.util.*;
 /**
  * Enum que representa la dificultat d'una partida d'Scrabble.
  * Cada dificultat té un nom a mostrar, una mida de faristol i un multiplicador de puntuació.
+ * <p>
+ * També defineix el perfil de joc de la màquina: quina part dels ancoratges explora, quantes jugades
+ * candidates es queda i com en tria una. A {@link #FACIL} explora només una mostra dels ancoratges i
+ * tria a l'atzar una jugada de la zona mitjana de les candidates, de manera que juga pitjor i gasta
+ * menys CPU; a {@link #NORMAL} juga la jugada de més puntuació, i a {@link #DIFICIL} fa la cerca
+ * completa i tria la candidata amb més puntuació sumant-hi el valor de les fitxes que es queda; a més,
+ * quan a la bossa queden poques fitxes, simula la resta de la partida per triar entre les millors candidates.
  */
 public enum Dificultat {
-    FACIL("Fàcil", 8, 0.75f),
-    NORMAL("Normal", 7, 1.0f),
-    DIFICIL("Difícil", 6, 1.25f);
+    FACIL("Fàcil", 8, 0.75f, 0.35f, 8, false, false),
+    NORMAL("Normal", 7, 1.0f, 1.0f, 1, false, false),
+    DIFICIL("Difícil", 6, 1.25f, 1.0f, 16, true, true);
 
     // ---------- ATRIBUTS ----------
     private final String displayName;
     private final int rackSize;
     private final float multiplicador;
+    private final float fraccioAncoratges;
+    private final int jugadesCandidates;
+    private final boolean avaluaResta;
+    private final boolean simulaFinal;
 
     // ---------- CONSTRUCTOR ----------
     /**
@@ -22,11 +33,20 @@ public enum Dificultat {
      * @param displayName Nom a mostrar de la dificultat.
      * @param rackSize Mida del faristol.
      * @param multiplicador Multiplicador de puntuació.
+     * @param fraccioAncoratges Fracció dels ancoratges que explora la màquina.
+     * @param jugadesCandidates Nombre de jugades de més puntuació entre les quals tria la màquina.
+     * @param avaluaResta Si la màquina valora les fitxes que es queda a l'atril.
+     * @param simulaFinal Si la màquina simula el final de la partida quan la bossa és gairebé buida.
      */
-    Dificultat(String displayName, int rackSize, float multiplicador) {
+    Dificultat(String displayName, int rackSize, float multiplicador, float fraccioAncoratges, int jugadesCandidates,
+               boolean avaluaResta, boolean simulaFinal) {
         this.displayName = displayName;
         this.rackSize = rackSize;
         this.multiplicador = multiplicador;
+        this.fraccioAncoratges = fraccioAncoratges;
+        this.jugadesCandidates = jugadesCandidates;
+        this.avaluaResta = avaluaResta;
+        this.simulaFinal = simulaFinal;
     }
 
     // ---------- GETTERS ----------
@@ -54,6 +74,54 @@ public enum Dificultat {
         return rackSize;
     }
 
+    /**
+     * Retorna la fracció dels ancoratges del tauler que explora la màquina en aquesta dificultat.
+     * @return Valor entre 0 i 1.
+     */
+    public float getFraccioAncoratges() {
+        return fraccioAncoratges;
+    }
+
+    /**
+     * Retorna el nombre de jugades de més puntuació entre les quals tria la màquina.
+     * @return Nombre de candidates (1 = sempre la de més puntuació).
+     */
+    public int getJugadesCandidates() {
+        return jugadesCandidates;
+    }
+
+    /**
+     * Indica si la màquina tria les jugades sumant-hi el valor de les fitxes que es queda a l'atril.
+     * @return true si avalua les fitxes restants.
+     */
+    public boolean isAvaluaResta() {
+        return avaluaResta;
+    }
+
+    /**
+     * Indica si la màquina simula el final de la partida per triar la jugada quan la bossa és gairebé buida.
+     * @return true si simula el final.
+     */
+    public boolean isSimulaFinal() {
+        return simulaFinal;
+    }
+
+    // ---------- MÈTODES ----------
+    /**
+     * Tria quina de les candidates juga la màquina quan no avalua la resta: la primera si només se'n queda una;
+     * si no, una a l'atzar de la zona mitjana. Amb més de dues candidates la zona mitjana no inclou mai la primera.
+     * @param numCandidates Nombre de candidates, ordenades de més a menys puntuació (com a mínim 1).
+     * @param random Generador aleatori de la màquina.
+     * @return Índex de la candidata triada.
+     */
+    public int triaCandidata(int numCandidates, Random random) {
+        if (jugadesCandidates <= 1) return 0;
+        if (numCandidates <= 2) return random.nextInt(numCandidates);
+        int inici = Math.max(1, numCandidates / 4);
+        int fi = Math.min(numCandidates, Math.max(inici + 1, 3 * numCandidates / 4));
+        return inici + random.nextInt(fi - inici);
+    }
+
     // ---------- MÈTODES ESTÀTICS ----------
     /**
      * Obté la dificultat a partir del seu nom a mostrar.
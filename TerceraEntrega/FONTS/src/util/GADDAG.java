@@ -0,0 +1,109 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Classe GADDAG.
+ * Índex de paraules pensat per generar jugades a partir d'una casella d'ancoratge cap a totes dues direccions.
+ * <p>
+ * Per cada paraula {@code w} de longitud {@code n} i cada posició {@code 1 <= i <= n} es guarda la cadena
+ * {@code rev(w[0..i)) + SEPARADOR + w[i..n)} (per {@code i = n} sense separador). Recorrent el graf des de l'arrel
+ * es llegeixen primer les lletres de l'ancoratge cap a l'esquerra i, després del separador, les de la dreta,
+ * de manera que qualsevol prefix que es recorre és part d'una paraula real i no hi ha prefixos sense sortida.
+ * <p>
+ * Les cadenes es guarden en un DAWG mínim construït amb {@link ConstructorDAWG} i congelat en un {@link DAWGCompacte}.
+ */
+public class GADDAG {
+
+    // ---------- CONSTANTS ----------
+    /** Separador entre la part invertida (esquerra de l'ancoratge) i la part dreta de cada paraula */
+    public static final char SEPARADOR = '^';
+
+    // ---------- ATRIBUTS ----------
+    /** Graf compacte amb totes les cadenes del GADDAG */
+    private final DAWGCompacte graf;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Crea un GADDAG a partir d'un graf ja construït.
+     * @param graf DAWG compacte amb les cadenes del GADDAG.
+     */
+    public GADDAG(DAWGCompacte graf) {
+        this.graf = graf;
+    }
+
+    /**
+     * Construeix el GADDAG d'una llista de paraules (no cal que estigui ordenada).
+     * Les cadenes es generen i s'afegeixen al constructor per grups de la primera lletra, en ordre,
+     * per no haver de tenir totes les cadenes en memòria alhora.
+     * @param paraules Paraules del diccionari.
+     * @return El GADDAG de les paraules.
+     */
+    public static GADDAG construir(List<String> paraules) {
+        SortedSet<Character> lletres = new TreeSet<>();
+        int longitudMaxima = 0;
+        for (String paraula : paraules) {
+            for (int i = 0; i < paraula.length(); i++) lletres.add(paraula.charAt(i));
+            longitudMaxima = Math.max(longitudMaxima, paraula.length());
+        }
+
+        ConstructorDAWG constructor = new ConstructorDAWG();
+        char[] cadena = new char[longitudMaxima + 1];
+        List<String> grup = new ArrayList<>();
+        for (char primera : lletres) {
+            grup.clear();
+            for (String paraula : paraules) {
+                int n = paraula.length();
+                for (int i = 1; i <= n; i++) {
+                    if (paraula.charAt(i - 1) != primera) continue;
+                    grup.add(new String(cadena, 0, cadena(paraula, i, cadena)));
+                }
+            }
+            Collections.sort(grup);
+            for (String c : grup) constructor.afegirParaula(c);
+        }
+        return new GADDAG(constructor.construir());
+    }
+
+    // ---------- GETTERS ----------
+    /**
+     * Retorna el graf compacte del GADDAG.
+     * @return Graf amb les cadenes del GADDAG.
+     */
+    public DAWGCompacte getGraf() {
+        return graf;
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Comprova si una paraula és al GADDAG, recorrent-la de l'última lletra a la primera.
+     * @param paraula Paraula a comprovar.
+     * @return Cert si la paraula hi és.
+     */
+    public boolean conte(CharSequence paraula) {
+        if (paraula.length() == 0) return false;
+        int node = graf.getArrel();
+        for (int i = paraula.length() - 1; i >= 0 && node >= 0; i--) {
+            node = graf.getFill(node, paraula.charAt(i));
+        }
+        return node >= 0 && graf.esFinal(node);
+    }
+
+    // ---------- MÈTODES PRIVATS ----------
+    /**
+     * Escriu la cadena del GADDAG d'una paraula per un punt de tall.
+     * @param paraula Paraula original.
+     * @param tall Nombre de lletres de la part invertida (entre 1 i la longitud de la paraula).
+     * @param cadena Vector on s'escriu la cadena.
+     * @return Longitud de la cadena.
+     */
+    private static int cadena(String paraula, int tall, char[] cadena) {
+        int k = 0;
+        for (int i = tall - 1; i >= 0; i--) cadena[k++] = paraula.charAt(i);
+        if (tall < paraula.length()) {
+            cadena[k++] = SEPARADOR;
+            for (int i = tall; i < paraula.length(); i++) cadena[k++] = paraula.charAt(i);
+        }
+        return k;
+    }
+}
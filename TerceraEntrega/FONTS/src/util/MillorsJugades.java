@@ -0,0 +1,96 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Classe MillorsJugades.
+ * Consumidor de jugades que només conserva les K de més puntuació, en una llista acotada ordenada
+ * de més a menys puntuació. Amb puntuacions iguals es queda la que ha arribat abans, de manera que
+ * amb K = 1 el resultat és la primera jugada de puntuació màxima.
+ */
+public class MillorsJugades implements ConsumidorJugades {
+
+    // ---------- ATRIBUTS ----------
+    /** Nombre màxim de jugades que es conserven */
+    private final int maxim;
+    /** Millors jugades trobades, de més a menys puntuació */
+    private final List<Play> jugades;
+
+    // ---------- CONSTRUCTOR ----------
+    /**
+     * Constructora del consumidor.
+     *
+     * @param maxim Nombre de jugades a conservar (com a mínim 1).
+     * @throws IllegalArgumentException si el màxim és menor que 1.
+     */
+    public MillorsJugades(int maxim) {
+        if (maxim < 1) throw new IllegalArgumentException("Cal conservar com a mínim una jugada");
+        this.maxim = maxim;
+        this.jugades = new ArrayList<>(maxim + 1);
+    }
+
+    // ---------- MÈTODES ----------
+    /**
+     * Admet la puntuació si encara no hi ha K jugades o si supera la pitjor de les conservades.
+     *
+     * @param puntuacio Puntuació de la jugada candidata.
+     * @return Cert si la jugada entraria a la llista.
+     */
+    @Override
+    public boolean admet(int puntuacio) {
+        return jugades.size() < maxim || puntuacio > jugades.get(jugades.size() - 1).getScore();
+    }
+
+    /**
+     * Afegeix la jugada al seu lloc i descarta la pitjor si se supera el màxim.
+     *
+     * @param jugada Jugada trobada.
+     */
+    @Override
+    public void accepta(Play jugada) {
+        if (!admet(jugada.getScore())) return;
+        int i = jugades.size();
+        while (i > 0 && jugades.get(i - 1).getScore() < jugada.getScore()) i--;
+        jugades.add(i, jugada);
+        if (jugades.size() > maxim) jugades.remove(jugades.size() - 1);
+    }
+
+    /**
+     * Crea un consumidor parcial que també conserva només les K millors jugades de la seva part.
+     *
+     * @return Consumidor parcial buit.
+     */
+    @Override
+    public ConsumidorJugades parcial() {
+        return new MillorsJugades(maxim);
+    }
+
+    /**
+     * Afegeix les millors jugades d'un consumidor parcial, en ordre. Com que les jugades d'abans guanyen els
+     * empats, combinar els parcials en l'ordre de generació dona el mateix resultat que rebre-les una a una.
+     *
+     * @param parcial Consumidor creat amb {@link #parcial()}.
+     */
+    @Override
+    public void combina(ConsumidorJugades parcial) {
+        for (Play jugada : ((MillorsJugades) parcial).jugades) accepta(jugada);
+    }
+
+    /**
+     * Retorna la millor jugada trobada.
+     *
+     * @return La jugada de més puntuació, o null si no se n'ha trobat cap.
+     */
+    public Play getMillor() {
+        return jugades.isEmpty() ? null : jugades.get(0);
+    }
+
+    /**
+     * Retorna les jugades conservades, de més a menys puntuació.
+     *
+     * @return Llista de com a màxim K jugades (només lectura).
+     */
+    public List<Play> getJugades() {
+        return Collections.unmodifiableList(jugades);
+    }
+}
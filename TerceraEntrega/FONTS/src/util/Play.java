@@ -13,6 +13,7 @@ public class Play {
     private final int columna;
     private final boolean transposed;
     private final int score;
+    private final int comodins;
 
     // ---------- CONSTRUCTOR ----------
     /**
@@ -25,11 +26,26 @@ public class Play {
      * @param score      Puntuació calculada per aquesta jugada.
      */
     public Play(String word, int fila, int columna, boolean transposed, int score) {
+        this(word, fila, columna, transposed, score, 0);
+    }
+
+    /**
+     * Constructora de la classe Play indicant quines lletres es fan amb comodins.
+     *
+     * @param word       Paraula jugada.
+     * @param fila       Fila on comença la paraula.
+     * @param columna    Columna on comença la paraula.
+     * @param transposed Cert si és un moviment vertical (down), fals si horitzontal (across).
+     * @param score      Puntuació calculada per aquesta jugada.
+     * @param comodins   Màscara de bits de les posicions de la paraula que es col·loquen amb un comodí.
+     */
+    public Play(String word, int fila, int columna, boolean transposed, int score, int comodins) {
         this.word = word;
         this.fila = fila;
         this.columna = columna;
         this.transposed = transposed;
         this.score = score;
+        this.comodins = comodins;
     }
 
     // ---------- GETTERS ----------
@@ -65,6 +81,14 @@ public class Play {
         return word;
     }
 
+    /**
+     * Retorna les posicions de la paraula que es col·loquen amb un comodí.
+     * @return Màscara de bits (el bit i correspon a la lletra i de la paraula).
+     */
+    public int getComodins() {
+        return comodins;
+    }
+
     /**
      * Indica si la jugada és horitzontal.
      * @return Cert si és horitzontal, fals si és vertical.
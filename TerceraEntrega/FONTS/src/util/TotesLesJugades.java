@@ -0,0 +1,34 @@
+package util;
+
+import java.util.*;
+
+/**
+ * Classe TotesLesJugades.
+ * Consumidor de jugades que les guarda totes en l'ordre en què es generen, per analitzar-les.
+ */
+public class TotesLesJugades implements ConsumidorJugades {
+
+    // ---------- ATRIBUTS ----------
+    /** Jugades rebudes */
+    private final List<Play> jugades = new ArrayList<>();
+
+    // ---------- MÈTODES ----------
+    /**
+     * Guarda la jugada.
+     *
+     * @param jugada Jugada trobada.
+     */
+    @Override
+    public void accepta(Play jugada) {
+        jugades.add(jugada);
+    }
+
+    /**
+     * Retorna totes les jugades rebudes.
+     *
+     * @return Llista de jugades en ordre de generació (només lectura).
+     */
+    public List<Play> getJugades() {
+        return Collections.unmodifiableList(jugades);
+    }
+}
@@ -0,0 +1,206 @@
+package util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Classe ValorsResta.
+ * Taula precalculada del valor de les fitxes que es queda un jugador a l'atril després d'una jugada (la "resta"),
+ * en mitjos punts. La màquina la suma a la puntuació de cada jugada candidata per triar la de més valor a la llarga.
+ * <p>
+ * Hi ha una entrada per cada multiconjunt de com a màxim {@link #getMaxFitxes()} fitxes, sobre els codis de lletra
+ * del graf del diccionari més el comodí (l'últim símbol). L'índex d'un multiconjunt es calcula amb el sistema
+ * combinatori de numeració: les fitxes ordenades {@code c1 <= ... <= ck} es converteixen en la successió
+ * estrictament creixent {@code ci + i - 1}, i l'índex és el nombre de multiconjunts més petits més
+ * {@code sum C(ci + i - 1, i)}. Amb els coeficients binomials precalculats, la consulta no depèn de la mida
+ * de la taula ni fa cap cerca.
+ * <p>
+ * La taula es genera fora de línia a partir de partides de la màquina contra ella mateixa (vegeu
+ * {@code test.GeneradorValorsResta}) i es guarda en una imatge binària que es pot projectar a memòria.
+ */
+public class ValorsResta {
+
+    // ---------- CONSTANTS ----------
+    /** Número màgic de la imatge binària ("REST") */
+    private static final int MAGIC = 0x52455354;
+    /** Versió del format de la imatge binària */
+    private static final int VERSIO = 1;
+    /** Mida de la capçalera de la imatge: màgic, versió, símbols i màxim de fitxes */
+    private static final int MIDA_CAPCALERA = 4 * 4;
+
+    // ---------- ATRIBUTS ----------
+    /** Lletra de cada codi (sense el comodí), per comprovar que la taula correspon al graf del diccionari */
+    private final char[] lletres;
+    /** Nombre de símbols: les lletres més el comodí */
+    private final int numSimbols;
+    /** Nombre màxim de fitxes d'una resta */
+    private final int maxFitxes;
+    /** Coeficients binomials {@code C(n, k)} per {@code n < numSimbols + maxFitxes} i {@code k <= maxFitxes} */
+    private final int[][] binomis;
+    /** Per cada mida k, nombre de multiconjunts de mida més petita (primer índex de la mida k) */
+    private final int[] desplacaments;
+    /** Valor de cada resta en mitjos punts, per índex */
+    private final ByteBuffer valors;
+
+    // ---------- CONSTRUCTORS ----------
+    /**
+     * Constructora privada a partir dels valors ja omplerts.
+     * @param lletres Lletra de cada codi del graf.
+     * @param maxFitxes Nombre màxim de fitxes d'una resta.
+     * @param valors Valors en mitjos punts, un per multiconjunt, o null per crear una taula buida.
+     */
+    private ValorsResta(char[] lletres, int maxFitxes, ByteBuffer valors) {
+        this.lletres = lletres;
+        this.numSimbols = lletres.length + 1;
+        this.maxFitxes = maxFitxes;
+        this.binomis = new int[numSimbols + maxFitxes][maxFitxes + 1];
+        for (int n = 0; n < binomis.length; n++) {
+            binomis[n][0] = 1;
+            for (int k = 1; k <= Math.min(n, maxFitxes); k++) {
+                binomis[n][k] = binomis[n - 1][k - 1] + (k <= n - 1 ? binomis[n - 1][k] : 0);
+            }
+        }
+        this.desplacaments = new int[maxFitxes + 2];
+        for (int k = 0; k <= maxFitxes; k++) {
+            desplacaments[k + 1] = desplacaments[k] + binomis[numSimbols - 1 + k][k];
+        }
+        this.valors = valors != null ? valors : ByteBuffer.allocate(getNumEntrades());
+    }
+
+    /**
+     * Crea una taula buida (totes les restes valen 0) per a les lletres d'un graf.
+     * @param graf Graf del diccionari.
+     * @param maxFitxes Nombre màxim de fitxes d'una resta.
+     * @return Taula buida.
+     */
+    public static ValorsResta buida(DAWGCompacte graf, int maxFitxes) {
+        char[] lletres = new char[graf.getNumLletres()];
+        for (int codi = 0; codi < lletres.length; codi++) lletres[codi] = graf.getLletra(codi);
+        return new ValorsResta(lletres, maxFitxes, null);
+    }
+
+    /**
+     * Obre una taula directament sobre una imatge binària escrita amb {@link #escriureImatge}, sense copiar-la.
+     * @param imatge Buffer amb la imatge completa.
+     * @return La taula de la imatge.
+     * @throws IOException si la imatge no té el format esperat.
+     */
+    public static ValorsResta deImatge(ByteBuffer imatge) throws IOException {
+        ByteBuffer capcalera = imatge.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (capcalera.remaining() < MIDA_CAPCALERA || capcalera.getInt(0) != MAGIC) {
+            throw new IOException("La imatge no és una taula de valors de resta vàlida");
+        }
+        if (capcalera.getInt(4) != VERSIO) {
+            throw new IOException("Versió de taula de valors de resta no suportada: " + capcalera.getInt(4));
+        }
+        int numLletres = capcalera.getInt(8);
+        int maxFitxes = capcalera.getInt(12);
+        if (numLletres <= 0 || numLletres > DAWGCompacte.MAX_LLETRES || maxFitxes <= 0 || maxFitxes > 7
+                || capcalera.remaining() < MIDA_CAPCALERA + 4L * numLletres) {
+            throw new IOException("Taula de valors de resta truncada o corrupta");
+        }
+        char[] lletres = new char[numLletres];
+        for (int i = 0; i < numLletres; i++) lletres[i] = (char) capcalera.getInt(MIDA_CAPCALERA + 4 * i);
+        int posicio = MIDA_CAPCALERA + 4 * numLletres;
+
+        ValorsResta taula = new ValorsResta(lletres, maxFitxes, imatge.slice(posicio, capcalera.remaining() - posicio));
+        if (taula.valors.capacity() < taula.getNumEntrades()) {
+            throw new IOException("Taula de valors de resta truncada o corrupta");
+        }
+        return taula;
+    }
+
+    // ---------- CONSULTORS ----------
+    /**
+     * Indica si la taula correspon a les lletres d'un graf (mateixos codis per a les mateixes lletres).
+     * @param graf Graf del diccionari.
+     * @return Cert si la taula es pot fer servir amb el graf.
+     */
+    public boolean esCompatible(DAWGCompacte graf) {
+        if (graf.getNumLletres() != lletres.length) return false;
+        for (int codi = 0; codi < lletres.length; codi++) {
+            if (graf.getLletra(codi) != lletres[codi]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retorna el nombre màxim de fitxes d'una resta.
+     * @return Màxim de fitxes.
+     */
+    public int getMaxFitxes() {
+        return maxFitxes;
+    }
+
+    /**
+     * Retorna el nombre d'entrades de la taula (multiconjunts de com a màxim {@link #getMaxFitxes()} fitxes).
+     * @return Nombre d'entrades.
+     */
+    public int getNumEntrades() {
+        return desplacaments[maxFitxes + 1];
+    }
+
+    /**
+     * Retorna una estimació de la memòria que ocupa la taula.
+     * @return Bytes ocupats.
+     */
+    public long getMidaBytes() {
+        return getNumEntrades() + 4L * binomis.length * (maxFitxes + 1) + 2L * lletres.length;
+    }
+
+    /**
+     * Calcula l'índex d'una resta a la taula.
+     * @param resta Nombre de fitxes per codi de lletra del graf i, a l'última posició, nombre de comodins.
+     * @return Índex de la resta, o -1 si té més fitxes que el màxim de la taula.
+     */
+    public int index(int[] resta) {
+        int k = 0;
+        int index = 0;
+        for (int simbol = 0; simbol < numSimbols; simbol++) {
+            for (int i = 0; i < resta[simbol]; i++) {
+                if (++k > maxFitxes) return -1;
+                index += binomis[simbol + k - 1][k];
+            }
+        }
+        return desplacaments[k] + index;
+    }
+
+    /**
+     * Retorna el valor d'una resta.
+     * @param resta Nombre de fitxes per codi de lletra del graf i, a l'última posició, nombre de comodins.
+     * @return Valor en mitjos punts (0 si la resta té més fitxes que el màxim de la taula).
+     */
+    public int getValor(int[] resta) {
+        int index = index(resta);
+        return index < 0 ? 0 : valors.get(index);
+    }
+
+    // ---------- MODIFICADORS ----------
+    /**
+     * Assigna el valor d'una resta (només per a taules creades amb {@link #buida}).
+     * @param index Índex de la resta, calculat amb {@link #index(int[])}.
+     * @param mitjosPunts Valor en mitjos punts, que es limita al rang d'un byte.
+     */
+    public void setValor(int index, int mitjosPunts) {
+        valors.put(index, (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, mitjosPunts)));
+    }
+
+    // ---------- PERSISTÈNCIA ----------
+    /**
+     * Escriu la taula en format binari: capçalera, lletres de cada codi i un byte per entrada.
+     * @param canal Canal on s'escriu la imatge.
+     * @throws IOException si hi ha un error d'escriptura.
+     */
+    public void escriureImatge(WritableByteChannel canal) throws IOException {
+        ByteBuffer capcalera = ByteBuffer.allocate(MIDA_CAPCALERA + 4 * lletres.length).order(ByteOrder.LITTLE_ENDIAN);
+        capcalera.putInt(MAGIC).putInt(VERSIO).putInt(lletres.length).putInt(maxFitxes);
+        for (char c : lletres) capcalera.putInt(c);
+        capcalera.flip();
+        while (capcalera.hasRemaining()) canal.write(capcalera);
+        ByteBuffer dades = valors.duplicate();
+        dades.clear();
+        while (dades.hasRemaining()) canal.write(dades);
+    }
+}